@@ -1,20 +1,20 @@
 package com.parknav.common.fields.demo.model.marina;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.parknav.common.fields.FieldGraph;
-import com.parknav.common.fields.FieldUnavailableException;
+import com.parknav.common.fields.FieldAccessor;
+import com.parknav.common.fields.GenerateFieldAccessor;
 import com.parknav.common.fields.demo.model.DemoFieldsEntity;
 import com.parknav.common.fields.demo.model.berth.Berth;
 import com.parknav.common.fields.demo.model.person.Person;
 import com.parknav.common.fields.FieldEnum;
+import com.parknav.common.fields.FieldGraph;
 
 /** Place where boats sleep */
+@GenerateFieldAccessor
 public class Marina extends DemoFieldsEntity<String, Marina, Marina.Field> {
 
 	public enum Field implements FieldEnum {
@@ -77,15 +77,12 @@ public class Marina extends DemoFieldsEntity<String, Marina, Marina.Field> {
 
 	@Override
 	public Object pull(Field field, Marina other, FieldGraph<Field> graph) {
-		switch (field) {
-			case name:		return pull(other, other::getName,		this::setName);
-			case manager:	return pull(other, other::getManager,	this::setManager,	value -> value.clone(field, graph));
-			case latitude:	return pull(other, other::getLatitude,	this::setLatitude);
-			case longitude:	return pull(other, other::getLongitude,	this::setLongitude);
-			case berths:	return pull(other, other::getBerths,	this::setBerths,	value -> value.stream().map(object -> object.clone(field, graph)).collect(Collectors.toList()));
-			case depths:	return pull(other, other::getDepths,	this::setDepths,	value -> Arrays.stream(value).map(Integer[]::clone).toArray(Integer[][]::new));
-		}
-		throw new FieldUnavailableException(field);
+		return MarinaFieldAccessor.Instance.pull(field, this, other, graph);
+	}
+
+	@Override
+	public FieldAccessor<Marina, Field> fieldAccessor() {
+		return MarinaFieldAccessor.Instance;
 	}
 
 	@Override
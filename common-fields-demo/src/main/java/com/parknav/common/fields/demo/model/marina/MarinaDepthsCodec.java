@@ -0,0 +1,52 @@
+package com.parknav.common.fields.demo.model.marina;
+
+import java.nio.ByteBuffer;
+
+import com.parknav.common.fields.FieldCodec;
+
+/** Serializes {@link Marina#getDepths() marina's depths} as row count, followed by each row's length and depths */
+public class MarinaDepthsCodec implements FieldCodec<Integer[][]> {
+
+	public static final MarinaDepthsCodec Instance = new MarinaDepthsCodec();
+
+	@Override
+	public ByteBuffer encode(Integer[][] depths) {
+
+		int size = Integer.BYTES;
+		for (Integer[] row : depths)
+			size += Integer.BYTES * (1 + row.length);
+
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+
+		buffer.putInt(depths.length);
+		for (Integer[] row : depths) {
+			buffer.putInt(row.length);
+			for (Integer depth : row)
+				buffer.putInt(depth != null ? depth : NoDepth);
+		}
+
+		return buffer.flip();
+
+	}
+
+	@Override
+	public Integer[][] decode(ByteBuffer buffer) {
+
+		Integer[][] depths = new Integer[buffer.getInt()][];
+
+		for (int x = 0; x < depths.length; x++) {
+			depths[x] = new Integer[buffer.getInt()];
+			for (int y = 0; y < depths[x].length; y++) {
+				int depth = buffer.getInt();
+				depths[x][y] = depth != NoDepth ? depth : null;
+			}
+		}
+
+		return depths;
+
+	}
+
+	/** Marks unknown depth */
+	private static final int NoDepth = Integer.MIN_VALUE;
+
+}
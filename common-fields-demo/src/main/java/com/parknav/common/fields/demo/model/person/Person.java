@@ -2,9 +2,10 @@ package com.parknav.common.fields.demo.model.person;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import com.parknav.common.fields.FieldAccessor;
 import com.parknav.common.fields.FieldEnum;
 import com.parknav.common.fields.FieldGraph;
-import com.parknav.common.fields.FieldUnavailableException;
+import com.parknav.common.fields.GenerateFieldAccessor;
 import com.parknav.common.fields.demo.model.DemoFieldsEntity;
 import com.parknav.common.fields.demo.model.boat.Boat;
 
@@ -13,6 +14,7 @@ import java.util.Optional;
 import java.util.Set;
 
 /** Any person in app, may it be marina staff, boat crew, skippers, etc. */
+@GenerateFieldAccessor
 public class Person extends DemoFieldsEntity<String, Person, Person.Field> {
 
 	public enum Field implements FieldEnum {
@@ -63,13 +65,12 @@ public class Person extends DemoFieldsEntity<String, Person, Person.Field> {
 
 	@Override
 	public Object pull(Field field, Person other, FieldGraph<Field> graph) {
-		switch (field) {
-			case name:			return pull(other, other::getName,			this::setName);
-			case email:			return pull(other, other::getEmail,			this::setEmail);
-			case permissions:	return pull(other, other::getPermissions,	this::setPermissions,	HashSet::new);
-			case boat:			return pull(other, other::getBoat,			this::setBoat,			value -> value.clone(field, graph));
-		}
-		throw new FieldUnavailableException(field);
+		return PersonFieldAccessor.Instance.pull(field, this, other, graph);
+	}
+
+	@Override
+	public FieldAccessor<Person, Field> fieldAccessor() {
+		return PersonFieldAccessor.Instance;
 	}
 
 	@Override
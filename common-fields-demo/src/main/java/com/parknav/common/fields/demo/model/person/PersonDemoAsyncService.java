@@ -1,8 +1,11 @@
 package com.parknav.common.fields.demo.model.person;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import com.parknav.common.fields.FieldGraph;
 import com.parknav.common.fields.service.async.FieldsRequest;
@@ -19,6 +22,16 @@ public class PersonDemoAsyncService implements PersonAsyncService {
 
 	@Override
 	public FieldsRequest get(String id, FieldGraph<Person.Field> graph, FieldsServiceHandler<Person> handler) {
+		return request(() -> delegate.get(id, graph), handler);
+	}
+
+	@Override
+	public FieldsRequest getAll(Collection<String> ids, FieldGraph<Person.Field> graph, FieldsServiceHandler<Map<String, Person>> handler) {
+		return request(() -> delegate.getAll(ids, graph), handler);	// one remote request for all persons
+	}
+
+	/** Simulates remote request, performing given call */
+	private <T> FieldsRequest request(Supplier<T> call, FieldsServiceHandler<T> handler) {
 		
 		AtomicReference<FieldsRequest> requestRef = new AtomicReference<>();
 		
@@ -27,8 +40,8 @@ public class PersonDemoAsyncService implements PersonAsyncService {
 			@Override
 			public void run() {
 				try {
-					Person person = delegate.get(id, graph);
-					handler.onSuccess(person);
+					T result = call.get();
+					handler.onSuccess(result);
 				} catch (Exception e) {
 					handler.onFail();
 				} finally {
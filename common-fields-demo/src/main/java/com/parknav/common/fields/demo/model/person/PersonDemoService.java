@@ -1,7 +1,10 @@
 package com.parknav.common.fields.demo.model.person;
 
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
@@ -37,6 +40,24 @@ public class PersonDemoService implements PersonService {
 		
 	}
 
+	@Override
+	public Map<String, Person> getAll(Collection<String> ids, FieldGraph<Person.Field> graph) {
+
+		// NOTE: if this was SQL service, here we would build single SELECT statement with "WHERE id IN (...)"
+
+		Map<String, Record> recs = PersonDemoData.$().parallelStream().filter(r -> ids.contains(r.id)).collect(Collectors.toMap(r -> r.id, r -> r));
+
+		Map<String, Person> persons = new LinkedHashMap<>();
+		for (String id : ids) {
+			Record rec = recs.get(id);
+			if (rec != null)
+				persons.put(id, read(rec, graph));
+		}
+
+		return persons;
+
+	}
+
 	@Override
 	public void create(Person person, FieldGraph<Person.Field> graph) {
 		
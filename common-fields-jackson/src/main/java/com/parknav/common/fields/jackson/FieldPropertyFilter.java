@@ -1,10 +1,15 @@
 package com.parknav.common.fields.jackson;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.ser.PropertyWriter;
 import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
 
+import com.parknav.common.fields.FieldEnum;
+import com.parknav.common.fields.FieldMask;
 import com.parknav.common.fields.FieldUnavailableException;
 import com.parknav.common.fields.HasFields;
 
@@ -76,10 +81,31 @@ public class FieldPropertyFilter extends SimpleBeanPropertyFilter {
 		if (fieldProperty == null)
 			return true;
 
-		return ((HasFields<?, ?>) pojo).hasFieldsAsString(fieldProperty.value());
+		return include((HasFields<?, ?>) pojo, writer, fieldProperty.value());
 		
 	}
 
+	@SuppressWarnings("unchecked")
+	private <F extends Enum<F> & FieldEnum> boolean include(HasFields<?, F> pojo, PropertyWriter writer, String field) {
+		// field is parsed (into mask) only once per property and class (instead of HasFields.hasFieldsAsString which parses
+		// on each call), using (overridable) HasFields.parseField, same as hasFieldsAsString
+		ConcurrentMap<PropertyWriter, FieldMask<?>> classMasks = masks.get(pojo.getClass());
+		FieldMask<?> mask = classMasks.get(writer);
+		if (mask == null) {
+			mask = FieldMask.of(pojo.parseField(field));
+			classMasks.putIfAbsent(writer, mask);
+		}
+		return pojo.hasFields((FieldMask<F>) mask);
+	}
+
 	private boolean ignoreFieldUnavailableException = false;
 
+	// parsed @FieldProperty values by class and property (same property writer may be used for different classes)
+	private final ClassValue<ConcurrentMap<PropertyWriter, FieldMask<?>>> masks = new ClassValue<>() {
+		@Override
+		protected ConcurrentMap<PropertyWriter, FieldMask<?>> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
 }
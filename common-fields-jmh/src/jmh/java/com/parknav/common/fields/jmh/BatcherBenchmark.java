@@ -0,0 +1,70 @@
+package com.parknav.common.fields.jmh;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.parknav.common.fields.FieldGraph;
+import com.parknav.common.fields.demo.model.person.Person;
+import com.parknav.common.fields.demo.model.person.PersonAsyncService;
+import com.parknav.common.fields.service.async.Batcher;
+import com.parknav.common.fields.service.async.FieldsRequest;
+
+/**
+ * <p>Measures {@link Batcher#get} with concurrent producers, while batches are being executed.</p>
+ *
+ * <p>Backing service completes requests right away, so that benchmark measures queueing (and executing) of jobs only.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BatcherBenchmark {
+
+	@Setup(Level.Trial)
+	public void setup() {
+
+		PersonAsyncService service = (id, graph, handler) -> {
+			handler.onSuccess(Person.ref(id));
+			handler.onFinish();
+			handler.onDestroy();
+			return null;
+		};
+
+		batcher = new Batcher<>(service);
+		graph = FieldGraph.of(Person.Field.name);
+
+		ids = new String[1000];
+		for (int i = 0; i < ids.length; i++)
+			ids[i] = "person" + i;
+
+	}
+
+	@Benchmark
+	@Group("queue")
+	@GroupThreads(7)
+	public FieldsRequest get() {
+		return batcher.get(ids[ThreadLocalRandom.current().nextInt(ids.length)], graph, person -> {});
+	}
+
+	@Benchmark
+	@Group("queue")
+	@GroupThreads(1)
+	public void run() {
+		batcher.run();
+	}
+
+	private Batcher<String, Person, Person.Field> batcher;
+	private FieldGraph<Person.Field> graph;
+	private String[] ids;
+
+}
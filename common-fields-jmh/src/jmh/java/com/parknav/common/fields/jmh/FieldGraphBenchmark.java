@@ -0,0 +1,93 @@
+package com.parknav.common.fields.jmh;
+
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.parknav.common.fields.FieldGraph;
+import com.parknav.common.fields.FieldGraphCache;
+import com.parknav.common.fields.demo.model.boat.Boat;
+import com.parknav.common.fields.demo.model.person.Person;
+import com.parknav.common.fields.model.carrier.Carrier;
+
+/** Measures construction of {@link FieldGraph}s, both from strings and using {@link FieldGraph.Builder}. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FieldGraphBenchmark {
+
+	/** String representations of graphs of increasing complexity */
+	@Param({
+		"name",
+		"name,entity,list,set,map",
+		"name,entity{name,email},list{name,boat{name,type}},mapmap{name,email,permissions,boat{name,type,skipper{name}}}"
+	})
+	public String value;
+
+	@Setup
+	public void setup() {
+		personGraph = FieldGraph.of(Person.Field.name, Person.Field.email, Person.Field.boat);
+		boatGraph = FieldGraph.of(Boat.Field.name, Boat.Field.type);
+	}
+
+	@Benchmark
+	public FieldGraph<Carrier.Field> parse() throws ParseException {
+		return FieldGraph.of(value, Carrier.Field.class);
+	}
+
+	/** Parses using cache which can't hold any graph, so every call parses (and interns) value */
+	@Benchmark
+	public FieldGraph<Carrier.Field> parseUncached() throws ParseException {
+		return uncached.get(value, Carrier.Field.class);
+	}
+
+	@Benchmark
+	public FieldGraph<Carrier.Field> buildFlat() {
+		return FieldGraph.Builder.of(Carrier.Field.class)
+			.add(Carrier.Field.name)
+			.add(Carrier.Field.entity)
+			.add(Carrier.Field.list)
+			.add(Carrier.Field.set)
+			.add(Carrier.Field.map)
+			.build();
+	}
+
+	@Benchmark
+	public FieldGraph<Carrier.Field> buildHierarchical() {
+		return FieldGraph.Builder.of(Carrier.Field.class)
+			.add(Carrier.Field.name)
+			.add(Carrier.Field.entity, personGraph)
+			.add(Carrier.Field.list, FieldGraph.Builder.of(Person.Field.class)
+				.add(Person.Field.name)
+				.add(Person.Field.boat, boatGraph)
+				.build()
+			)
+			.add(Carrier.Field.mapmap, personGraph)
+			.build();
+	}
+
+	@Benchmark
+	public FieldGraph<Carrier.Field> buildMerging() {
+		// same fields added repeatedly with different sub-graphs forces merging of sub-graphs
+		return FieldGraph.Builder.of(Carrier.Field.class)
+			.add(Carrier.Field.entity, personGraph)
+			.add(Carrier.Field.entity, FieldGraph.Builder.of(Person.Field.class).add(Person.Field.boat, boatGraph).build())
+			.add(Carrier.Field.list, personGraph)
+			.add(Carrier.Field.list, FieldGraph.of(Person.Field.permissions))
+			.build();
+	}
+
+	private final FieldGraphCache uncached = new FieldGraphCache(0);
+
+	private FieldGraph<Person.Field> personGraph;
+	private FieldGraph<Boat.Field> boatGraph;
+
+}
@@ -0,0 +1,144 @@
+package com.parknav.common.fields.jmh;
+
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.parknav.common.fields.FieldGraph;
+import com.parknav.common.fields.FieldsEntityCache;
+import com.parknav.common.fields.demo.model.berth.Berth;
+import com.parknav.common.fields.demo.model.marina.Marina;
+import com.parknav.common.fields.demo.model.marina.MarinaDemoData;
+import com.parknav.common.fields.demo.model.marina.MarinaDemoService;
+import com.parknav.common.fields.demo.model.marina.MarinaDepthsCodec;
+import com.parknav.common.fields.demo.model.marina.MarinaService;
+import com.parknav.common.fields.demo.model.person.Person;
+import com.parknav.common.fields.demo.model.person.PersonDemoData;
+import com.parknav.common.fields.demo.model.person.PersonDemoService;
+import com.parknav.common.fields.demo.model.person.PersonService;
+
+/**
+ * <p>Measures {@link FieldsEntityCache#get(Object, FieldGraph, com.parknav.common.fields.service.FieldsService)} with
+ * concurrent readers.</p>
+ *
+ * <p>Cache is warmed up in setup, so {@code get*} benchmarks measure cache hits only (including copying of cached entity).
+ * {@code *OffHeap*} benchmarks use cache holding marina's depths off-heap (so that only requesting them deserializes them).
+ * {@code readWrite} group additionally runs writer that keeps merging entity into cache while readers read it.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FieldsEntityCacheBenchmark {
+
+	@Setup(Level.Trial)
+	public void setup() {
+
+		personService = new PersonDemoService();
+		marinaService = new MarinaDemoService();
+
+		personCache = new FieldsEntityCache<>(EnumSet.of(Person.Field.name, Person.Field.email, Person.Field.boat));
+		marinaCache = new FieldsEntityCache<>(EnumSet.of(Marina.Field.name, Marina.Field.manager, Marina.Field.berths, Marina.Field.depths));
+		marinaOffHeapCache = FieldsEntityCache.Builder.of(Marina.class, EnumSet.of(Marina.Field.name, Marina.Field.manager, Marina.Field.berths, Marina.Field.depths))
+			.offHeap(Marina.Field.depths, MarinaDepthsCodec.Instance)
+			.build();
+
+		personGraph = FieldGraph.of(Person.Field.name, Person.Field.email, Person.Field.boat);
+		marinaGraph = FieldGraph.Builder.of(Marina.Field.class)
+			.add(Marina.Field.name)
+			.add(Marina.Field.manager)
+			.add(Marina.Field.berths, FieldGraph.of(Berth.Field.boat))
+			.build();
+		marinaDepthsGraph = FieldGraph.of(Marina.Field.name, Marina.Field.depths);
+
+		// warm up
+		personCache.get(PersonDemoData.RonId, personGraph, personService);
+		marinaCache.get(MarinaDemoData.KornatiId, marinaGraph, marinaService);
+		marinaCache.get(MarinaDemoData.KornatiId, marinaDepthsGraph, marinaService);
+		marinaOffHeapCache.get(MarinaDemoData.KornatiId, marinaGraph, marinaService);
+		marinaOffHeapCache.get(MarinaDemoData.KornatiId, marinaDepthsGraph, marinaService);
+
+		personWrite = personService.get(PersonDemoData.RonId, personGraph);
+
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Person getPersonSingleReader() {
+		return personCache.get(PersonDemoData.RonId, personGraph, personService);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public Person getPersonConcurrentReaders() {
+		return personCache.get(PersonDemoData.RonId, personGraph, personService);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public Marina getMarinaConcurrentReaders() {
+		return marinaCache.get(MarinaDemoData.KornatiId, marinaGraph, marinaService);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public Marina getMarinaDepthsConcurrentReaders() {
+		return marinaCache.get(MarinaDemoData.KornatiId, marinaDepthsGraph, marinaService);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public Marina getMarinaDepthsReadOnlyConcurrentReaders() {
+		return marinaCache.getReadOnly(MarinaDemoData.KornatiId, marinaDepthsGraph, marinaService);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public Marina getMarinaOffHeapConcurrentReaders() {
+		return marinaOffHeapCache.get(MarinaDemoData.KornatiId, marinaGraph, marinaService);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public Marina getMarinaDepthsOffHeapConcurrentReaders() {
+		return marinaOffHeapCache.get(MarinaDemoData.KornatiId, marinaDepthsGraph, marinaService);
+	}
+
+	@Benchmark
+	@Group("readWrite")
+	@GroupThreads(7)
+	public Person readWriteReader() {
+		return personCache.get(PersonDemoData.RonId, personGraph, personService);
+	}
+
+	@Benchmark
+	@Group("readWrite")
+	@GroupThreads(1)
+	public void readWriteWriter() {
+		personCache.merge(personWrite);
+	}
+
+	private PersonService personService;
+	private MarinaService marinaService;
+
+	private FieldsEntityCache<String, Person, Person.Field> personCache;
+	private FieldsEntityCache<String, Marina, Marina.Field> marinaCache;
+	private FieldsEntityCache<String, Marina, Marina.Field> marinaOffHeapCache;		// holding depths off-heap
+
+	private FieldGraph<Person.Field> personGraph;
+	private FieldGraph<Marina.Field> marinaGraph;
+	private FieldGraph<Marina.Field> marinaDepthsGraph;
+
+	private Person personWrite;
+
+}
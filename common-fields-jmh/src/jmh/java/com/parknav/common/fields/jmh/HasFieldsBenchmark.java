@@ -0,0 +1,171 @@
+package com.parknav.common.fields.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.parknav.common.fields.FieldGraph;
+import com.parknav.common.fields.FieldMask;
+import com.parknav.common.fields.demo.model.berth.Berth;
+import com.parknav.common.fields.demo.model.boat.Boat;
+import com.parknav.common.fields.demo.model.marina.Marina;
+import com.parknav.common.fields.demo.model.marina.MarinaDemoData;
+import com.parknav.common.fields.demo.model.marina.MarinaDemoService;
+import com.parknav.common.fields.demo.model.person.Person;
+import com.parknav.common.fields.model.carrier.Carrier;
+import com.parknav.common.fields.model.carrier.CarrierDemoService;
+
+/**
+ * <p>Measures (deep) copy and graph operations on fields objects.</p>
+ *
+ * <p>Benchmarks that modify fixture ({@code intersect*}, {@code extend*}) operate on a fresh {@link Carrier#cloneAll()},
+ * so compare them against {@link #carrierCloneAll()}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HasFieldsBenchmark {
+
+	@Setup
+	public void setup() {
+
+		FieldGraph<Person.Field> personGraph = FieldGraph.Builder.of(Person.Field.class)
+			.add(Person.Field.name)
+			.add(Person.Field.email)
+			.add(Person.Field.permissions)
+			.add(Person.Field.boat, FieldGraph.of(Boat.Field.name, Boat.Field.type))
+			.build();
+
+		// NOTE: CarrierDemoService doesn't support Carrier.Field.name
+		carrierFullGraph = FieldGraph.Builder.of(Carrier.Field.class)
+			.add(Carrier.Field.entity, personGraph)
+			.add(Carrier.Field.list, personGraph)
+			.add(Carrier.Field.set, personGraph)
+			.add(Carrier.Field.map, personGraph)
+			.add(Carrier.Field.listlist, personGraph)
+			.add(Carrier.Field.setset, personGraph)
+			.add(Carrier.Field.maplist, personGraph)
+			.add(Carrier.Field.mapset, personGraph)
+			.add(Carrier.Field.mapmap, personGraph)
+			.add(Carrier.Field.mapentitylist, personGraph)
+			.build();
+
+		carrierNameGraph = FieldGraph.Builder.of(Carrier.Field.class)
+			.add(Carrier.Field.entity, FieldGraph.of(Person.Field.name))
+			.add(Carrier.Field.list, FieldGraph.of(Person.Field.name))
+			.add(Carrier.Field.mapmap, FieldGraph.of(Person.Field.name))
+			.add(Carrier.Field.mapentitylist, FieldGraph.of(Person.Field.name))
+			.build();
+
+		CarrierDemoService carrierService = new CarrierDemoService();
+
+		carrier = carrierService.get("enterprise", carrierFullGraph);
+		carrierPartial = carrierService.get("enterprise", carrierNameGraph);
+
+		marinaFullGraph = FieldGraph.Builder.of(Marina.Field.class)
+			.add(Marina.Field.name)
+			.add(Marina.Field.manager, personGraph)
+			.add(Marina.Field.latitude)
+			.add(Marina.Field.longitude)
+			.add(Marina.Field.berths, FieldGraph.Builder.of(Berth.Field.class)
+				.add(Berth.Field.boat, FieldGraph.of(Boat.Field.name, Boat.Field.type))
+				.build()
+			)
+			.add(Marina.Field.depths)
+			.build();
+
+		marina = new MarinaDemoService().get(MarinaDemoData.KornatiId, marinaFullGraph);
+
+	}
+
+	// clone
+
+	@Benchmark
+	public Carrier carrierCloneAll() {
+		return carrier.cloneAll();
+	}
+
+	@Benchmark
+	public Carrier carrierCloneGraph() {
+		return carrier.clone(carrierNameGraph);
+	}
+
+	@Benchmark
+	public Carrier carrierCloneFlat() {
+		return carrier.cloneFlat();
+	}
+
+	@Benchmark
+	public Marina marinaCloneAll() {
+		return marina.cloneAll();
+	}
+
+	// missing graph
+
+	@Benchmark
+	public FieldGraph<Carrier.Field> carrierGetMissingGraphNone() {
+		return carrier.getMissingGraph(carrierFullGraph);
+	}
+
+	@Benchmark
+	public FieldGraph<Carrier.Field> carrierGetMissingGraphPartial() {
+		return carrierPartial.getMissingGraph(carrierFullGraph);
+	}
+
+	@Benchmark
+	public FieldGraph<Marina.Field> marinaGetMissingGraph() {
+		return marina.getMissingGraph(marinaFullGraph);
+	}
+
+	// field checks
+
+	@Benchmark
+	public boolean marinaHasFields() {
+		return marina.hasFields(Marina.Field.name, Marina.Field.manager);
+	}
+
+	@Benchmark
+	public boolean marinaHasFieldsMask() {
+		return marina.hasFields(MarinaNameAndManager);
+	}
+
+	@Benchmark
+	public boolean marinaHasFieldsAsString() {
+		return marina.hasFieldsAsString("name", "manager");
+	}
+
+	// intersect
+
+	@Benchmark
+	public Carrier carrierIntersect() {
+		Carrier clone = carrier.cloneAll();
+		clone.intersect(carrierNameGraph);
+		return clone;
+	}
+
+	// extend
+
+	@Benchmark
+	public Carrier carrierExtend() {
+		Carrier clone = carrierPartial.cloneAll();
+		clone._extend(carrier, carrierFullGraph);
+		return clone;
+	}
+
+	private static final FieldMask<Marina.Field> MarinaNameAndManager = FieldMask.of(Marina.Field.name, Marina.Field.manager);
+
+	private FieldGraph<Carrier.Field> carrierFullGraph;
+	private FieldGraph<Carrier.Field> carrierNameGraph;
+	private FieldGraph<Marina.Field> marinaFullGraph;
+
+	private Carrier carrier;
+	private Carrier carrierPartial;
+	private Marina marina;
+
+}
@@ -0,0 +1,208 @@
+package com.parknav.common.fields.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * <p>Generates {@code FieldAccessor} for each class annotated with {@code GenerateFieldAccessor}.</p>
+ *
+ * <p>Field values are accessed through public getters and setters, matched to fields by name (case-insensitive), so
+ * generated accessor doesn't use reflection at all.</p>
+ */
+@SupportedAnnotationTypes(FieldAccessorProcessor.AnnotationName)
+public class FieldAccessorProcessor extends AbstractProcessor {
+
+	static final String AnnotationName = "com.parknav.common.fields.GenerateFieldAccessor";
+	static final String HasFieldsName = "com.parknav.common.fields.HasFields";
+
+	/** Suffix appended to class name to construct accessor's name */
+	static final String AccessorSuffix = "FieldAccessor";
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public synchronized void init(ProcessingEnvironment processingEnv) {
+		super.init(processingEnv);
+		elements = processingEnv.getElementUtils();
+		types = processingEnv.getTypeUtils();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+
+		for (TypeElement annotation : annotations) {
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				try {
+					generate(element);
+				} catch (GenerationException e) {
+					processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.getElement());
+				} catch (IOException e) {
+					processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write field accessor: " + e.getMessage(), element);
+				}
+			}
+		}
+
+		return true;
+
+	}
+
+	private void generate(Element element) throws GenerationException, IOException {
+
+		if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT))
+			throw new GenerationException("Field accessor can only be generated for concrete classes", element);
+
+		TypeElement clazz = (TypeElement) element;
+		TypeElement hasFieldsElement = elements.getTypeElement(HasFieldsName);
+
+		DeclaredType hasFieldsType = findSupertype(clazz.asType(), hasFieldsElement);
+		if (hasFieldsType == null || hasFieldsType.getTypeArguments().size() != 2)
+			throw new GenerationException("Class must implement " + HasFieldsName, clazz);
+
+		TypeMirror fieldsType = hasFieldsType.getTypeArguments().get(1);
+		if (fieldsType.getKind() != TypeKind.DECLARED || ((DeclaredType) fieldsType).asElement().getKind() != ElementKind.ENUM)
+			throw new GenerationException("Class must declare its fields as enum, but declares " + fieldsType, clazz);
+
+		TypeElement fieldsElement = (TypeElement) ((DeclaredType) fieldsType).asElement();
+		DeclaredType classType = (DeclaredType) clazz.asType();
+		List<ExecutableElement> methods = ElementFilter.methodsIn(elements.getAllMembers(clazz));
+
+		List<FieldAccessorWriter.Property> properties = new ArrayList<>();
+
+		for (Element constant : fieldsElement.getEnclosedElements()) {
+			if (constant.getKind() != ElementKind.ENUM_CONSTANT)
+				continue;
+			String name = constant.getSimpleName().toString();
+			ExecutableElement getter = findAccessor(methods, name, 0, null, clazz);
+			TypeMirror type = ((ExecutableType) types.asMemberOf(classType, getter)).getReturnType();
+			ExecutableElement setter = findAccessor(methods, name, 1, type, clazz);
+			properties.add(new FieldAccessorWriter.Property(name, getter.getSimpleName().toString(), setter.getSimpleName().toString(), type));
+		}
+
+		String packageName = elements.getPackageOf(clazz).getQualifiedName().toString();
+		String accessorName = accessorName(clazz);
+		String qualifiedAccessorName = packageName.isEmpty() ? accessorName : packageName + "." + accessorName;
+
+		String source = new FieldAccessorWriter(types, elements).write(
+			packageName,
+			accessorName,
+			clazz.getQualifiedName().toString(),
+			fieldsElement.getQualifiedName().toString(),
+			properties
+		);
+
+		try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedAccessorName, clazz).openWriter()) {
+			writer.write(source);
+		}
+
+	}
+
+	/**
+	 * Finds getter (if {@code paramCount == 0}) or setter (if {@code paramCount == 1}) for given field,
+	 * matching its name case-insensitively.
+	 */
+	private ExecutableElement findAccessor(List<ExecutableElement> methods, String field, int paramCount, TypeMirror type, TypeElement clazz) throws GenerationException {
+
+		String kind = paramCount == 0 ? "getter" : "setter";
+		DeclaredType classType = (DeclaredType) clazz.asType();
+		ExecutableElement found = null;
+
+		for (ExecutableElement method : methods) {
+
+			if (!method.getModifiers().contains(Modifier.PUBLIC) || method.getModifiers().contains(Modifier.STATIC))
+				continue;
+			if (method.getParameters().size() != paramCount)
+				continue;
+
+			String name = method.getSimpleName().toString();
+			ExecutableType methodType = (ExecutableType) types.asMemberOf(classType, method);
+
+			boolean matches;
+			if (paramCount == 0)
+				matches = name.equalsIgnoreCase("get" + field) && methodType.getReturnType().getKind() != TypeKind.VOID
+					|| name.equalsIgnoreCase("is" + field) && methodType.getReturnType().getKind() == TypeKind.BOOLEAN;
+			else
+				matches = name.equalsIgnoreCase("set" + field) && types.isSameType(methodType.getParameterTypes().get(0), type);
+
+			if (!matches)
+				continue;
+
+			if (found != null)
+				throw new GenerationException("Ambiguous " + kind + " for field " + field + ": " + found.getSimpleName() + " and " + name, clazz);
+
+			found = method;
+
+		}
+
+		if (found == null)
+			throw new GenerationException("Missing public " + kind + " for field " + field + (type != null ? " (of type " + type + ")" : ""), clazz);
+
+		return found;
+
+	}
+
+	private DeclaredType findSupertype(TypeMirror type, TypeElement supertype) {
+		if (type.getKind() != TypeKind.DECLARED)
+			return null;
+		if (((DeclaredType) type).asElement().equals(supertype))
+			return (DeclaredType) type;
+		for (TypeMirror directSupertype : types.directSupertypes(type)) {
+			DeclaredType found = findSupertype(directSupertype, supertype);
+			if (found != null)
+				return found;
+		}
+		return null;
+	}
+
+	/** Constructs accessor's name from class' name, including names of enclosing classes (if any) */
+	static String accessorName(TypeElement clazz) {
+		StringBuilder name = new StringBuilder(clazz.getSimpleName());
+		for (Element enclosing = clazz.getEnclosingElement(); enclosing instanceof TypeElement; enclosing = enclosing.getEnclosingElement())
+			name.insert(0, '_').insert(0, enclosing.getSimpleName());
+		return name.append(AccessorSuffix).toString();
+	}
+
+	/** Reports generation problem for given element */
+	private static class GenerationException extends Exception {
+
+		private GenerationException(String message, Element element) {
+			super(message);
+			this.element = element;
+		}
+
+		private Element getElement() { return element; }
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient Element element;
+
+	}
+
+	private Elements elements;
+	private Types types;
+
+}
@@ -0,0 +1,393 @@
+package com.parknav.common.fields.processor;
+
+import java.util.List;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * <p>Writes source of {@code FieldAccessor} implementation.</p>
+ *
+ * <p>Values are (deep) copied according to their type:</p>
+ * <ul>
+ *     <li>{@code HasFields} sub-objects are cloned to field's subgraph</li>
+ *     <li>collections and maps are copied (to {@code ArrayList}, {@code HashSet} or {@code HashMap} if declared
+ *     as interfaces, or to declared class otherwise), copying their elements (keys and values for maps) recursively</li>
+ *     <li>arrays are cloned, copying their elements recursively</li>
+ *     <li>all other values are considered immutable and are not copied</li>
+ * </ul>
+ */
+class FieldAccessorWriter {
+
+	/** Field described by accessor */
+	static class Property {
+
+		Property(String field, String getter, String setter, TypeMirror type) {
+			this.field = field;
+			this.getter = getter;
+			this.setter = setter;
+			this.type = type;
+		}
+
+		private final String field;
+		private final String getter;
+		private final String setter;
+		private final TypeMirror type;
+
+	}
+
+	FieldAccessorWriter(Types types, Elements elements) {
+		this.types = types;
+		this.elements = elements;
+		hasFieldsElement = elements.getTypeElement(FieldAccessorProcessor.HasFieldsName);
+		collectionElement = elements.getTypeElement("java.util.Collection");
+		mapElement = elements.getTypeElement("java.util.Map");
+	}
+
+	String write(String packageName, String accessorName, String className, String fieldsName, List<Property> properties) {
+
+		Code code = new Code();
+
+		if (!packageName.isEmpty()) {
+			code.line("package " + packageName + ";");
+			code.line();
+		}
+		code.line("import javax.annotation.processing.Generated;");
+		code.line();
+		code.line("import com.parknav.common.fields.FieldAccessor;");
+		code.line("import com.parknav.common.fields.FieldGraph;");
+		code.line("import com.parknav.common.fields.FieldUnavailableException;");
+		code.line();
+		code.line("/** {@link FieldAccessor} for {@link " + className + "} (generated, do not edit) */");
+		code.line("@Generated(\"" + FieldAccessorProcessor.class.getName() + "\")");
+		code.open("public final class " + accessorName + " implements FieldAccessor<" + className + ", " + fieldsName + "> {");
+		code.line();
+
+		code.line("/** Accessor instance */");
+		code.line("public static final " + accessorName + " Instance = new " + accessorName + "();");
+		code.line();
+		code.line("private " + accessorName + "() {}");
+		code.line();
+
+		// get
+		code.line("@Override");
+		code.open("public Object get(" + className + " object, " + fieldsName + " field) {");
+		code.open("switch (field) {");
+		for (Property property : properties)
+			code.line("case " + property.field + ": return object." + property.getter + "();");
+		code.close("}");
+		code.line("throw new FieldUnavailableException(field);");
+		code.close("}");
+		code.line();
+
+		// set
+		code.line("@Override");
+		code.line("@SuppressWarnings(\"unchecked\")");
+		code.open("public void set(" + className + " object, " + fieldsName + " field, Object value) {");
+		code.open("switch (field) {");
+		for (Property property : properties)
+			code.line("case " + property.field + ": object." + property.setter + "((" + boxedName(property.type) + ") value); return;");
+		code.close("}");
+		code.line("throw new FieldUnavailableException(field);");
+		code.close("}");
+		code.line();
+
+		// copy
+		code.line("@Override");
+		code.line("@SuppressWarnings(\"unchecked\")");
+		code.open("public Object copy(" + fieldsName + " field, Object value, FieldGraph<" + fieldsName + "> graph) {");
+		boolean anyCopied = false;
+		for (Property property : properties) {
+			if (!needsCopy(property.type))
+				continue;
+			if (!anyCopied) {
+				code.open("switch (field) {");
+				anyCopied = true;
+			}
+			code.line("case " + property.field + ": return " + copyMethodName(property) + "((" + typeName(property.type) + ") value, field, graph);");
+		}
+		if (anyCopied) {
+			code.line("default: return value;	// immutable value");
+			code.close("}");
+		} else {
+			code.line("return value;	// all values are immutable");
+		}
+		code.close("}");
+		code.line();
+
+		// clear
+		code.line("@Override");
+		code.open("public void clear(" + className + " object, " + fieldsName + " field) {");
+		code.open("switch (field) {");
+		for (Property property : properties)
+			code.line("case " + property.field + ": object." + property.setter + "(" + defaultValue(property.type) + "); return;");
+		code.close("}");
+		code.line("throw new FieldUnavailableException(field);");
+		code.close("}");
+
+		// copy helpers
+		for (Property property : properties) {
+			if (!needsCopy(property.type))
+				continue;
+			code.line();
+			code.open("private static " + typeName(property.type) + " " + copyMethodName(property) + "(" + typeName(property.type) + " value, " + fieldsName + " field, FieldGraph<" + fieldsName + "> graph) {");
+			String copy = copy(code, property.type, "value");
+			code.line("return " + copy + ";");
+			code.close("}");
+		}
+
+		code.line();
+		code.close("}");
+
+		return code.toString();
+
+	}
+
+	/**
+	 * Writes statements which copy value held in {@code source} variable.
+	 * @return expression holding copied value
+	 */
+	private String copy(Code code, TypeMirror type, String source) {
+
+		if (isHasFields(type)) {
+			String cast = isSelfTyped(type) ? "" : "(" + typeName(type) + ") ";
+			return source + " != null ? " + cast + source + ".clone(field, graph) : null";
+		}
+
+		if (type.getKind() == TypeKind.ARRAY) {
+			TypeMirror componentType = ((ArrayType) type).getComponentType();
+			String copy = code.variable("copy");
+			code.line(typeName(type) + " " + copy + " = " + source + " != null ? " + source + ".clone() : null;");
+			if (needsCopy(componentType)) {
+				String index = code.variable("i");
+				String item = code.variable("item");
+				code.open("if (" + copy + " != null) {");
+				code.open("for (int " + index + " = 0; " + index + " < " + copy + ".length; " + index + "++) {");
+				code.line(typeName(componentType) + " " + item + " = " + copy + "[" + index + "];");
+				String itemCopy = copy(code, componentType, item);
+				code.line(copy + "[" + index + "] = " + itemCopy + ";");
+				code.close("}");
+				code.close("}");
+			}
+			return copy;
+		}
+
+		DeclaredType mapType = findSupertype(type, mapElement);
+		if (mapType != null) {
+			TypeMirror keyType = typeArgument(mapType, 0);
+			TypeMirror valueType = typeArgument(mapType, 1);
+			String copy = code.variable("copy");
+			String entry = code.variable("entry");
+			code.line(containerName(type, "java.util.HashMap", keyType, valueType) + " " + copy + " = null;");
+			code.open("if (" + source + " != null) {");
+			code.line(copy + " = " + containerConstructor(type, "java.util.HashMap", source) + ";");
+			code.open("for (java.util.Map.Entry<" + typeArgumentName(mapType, 0) + ", " + typeArgumentName(mapType, 1) + "> " + entry + " : " + source + ".entrySet()) {");
+			String keyCopy = entry + ".getKey()";
+			if (needsCopy(keyType)) {
+				String key = code.variable("key");
+				code.line(typeName(keyType) + " " + key + " = " + keyCopy + ";");
+				keyCopy = copy(code, keyType, key);
+			}
+			String valueCopy = entry + ".getValue()";
+			if (needsCopy(valueType)) {
+				String value = code.variable("value");
+				code.line(typeName(valueType) + " " + value + " = " + valueCopy + ";");
+				valueCopy = copy(code, valueType, value);
+			}
+			code.line(copy + ".put(" + keyCopy + ", " + valueCopy + ");");
+			code.close("}");
+			code.close("}");
+			return copy;
+		}
+
+		DeclaredType collectionType = findSupertype(type, collectionElement);
+		if (collectionType != null) {
+			TypeMirror itemType = typeArgument(collectionType, 0);
+			String defaultContainer = isSet(type) ? "java.util.HashSet" : "java.util.ArrayList";
+			String copy = code.variable("copy");
+			String item = code.variable("item");
+			code.line(containerName(type, defaultContainer, itemType) + " " + copy + " = null;");
+			code.open("if (" + source + " != null) {");
+			code.line(copy + " = " + containerConstructor(type, defaultContainer, source) + ";");
+			code.open("for (" + typeName(itemType) + " " + item + " : " + source + ") {");
+			String itemCopy = copy(code, itemType, item);
+			code.line(copy + ".add(" + itemCopy + ");");
+			code.close("}");
+			code.close("}");
+			return copy;
+		}
+
+		return source;	// immutable value
+
+	}
+
+	private boolean needsCopy(TypeMirror type) {
+		return type.getKind() == TypeKind.ARRAY
+			|| isHasFields(type)
+			|| findSupertype(type, mapElement) != null
+			|| findSupertype(type, collectionElement) != null;
+	}
+
+	private boolean isHasFields(TypeMirror type) {
+		return findSupertype(type, hasFieldsElement) != null;
+	}
+
+	/** Checks if {@code type}'s {@code clone} methods return {@code type} itself */
+	private boolean isSelfTyped(TypeMirror type) {
+		DeclaredType hasFieldsType = findSupertype(type, hasFieldsElement);
+		return hasFieldsType != null && !hasFieldsType.getTypeArguments().isEmpty() && types.isSameType(hasFieldsType.getTypeArguments().get(0), type);
+	}
+
+	private boolean isSet(TypeMirror type) {
+		return findSupertype(type, elements.getTypeElement("java.util.Set")) != null;
+	}
+
+	/** Declared container type for copy: declared type for concrete classes, default container otherwise */
+	private String containerName(TypeMirror type, String defaultContainer, TypeMirror... typeArguments) {
+		if (isConcrete(type))
+			return typeName(type);
+		StringBuilder name = new StringBuilder(defaultContainer).append('<');
+		for (int i = 0; i < typeArguments.length; i++) {
+			if (i > 0)
+				name.append(", ");
+			name.append(typeName(typeArguments[i]));
+		}
+		return name.append('>').toString();
+	}
+
+	private String containerConstructor(TypeMirror type, String defaultContainer, String source) {
+		if (isConcrete(type))
+			return "new " + types.erasure(type) + "<>()";
+		if (defaultContainer.equals("java.util.ArrayList"))
+			return "new " + defaultContainer + "<>(" + source + ".size())";
+		return "new " + defaultContainer + "<>(" + source + ".size() * 4 / 3 + 1)";	// sized to avoid rehashing
+	}
+
+	/** Checks if type is a concrete class with public no-arg constructor */
+	private boolean isConcrete(TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED)
+			return false;
+		TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+		if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT))
+			return false;
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(element.getEnclosedElements()))
+			if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC))
+				return true;
+		return false;
+	}
+
+	/** Retrieves type argument, replacing wildcards with their bounds */
+	private TypeMirror typeArgument(DeclaredType type, int index) {
+		if (type.getTypeArguments().size() <= index)
+			return elements.getTypeElement("java.lang.Object").asType();
+		TypeMirror argument = type.getTypeArguments().get(index);
+		if (argument.getKind() == TypeKind.WILDCARD) {
+			TypeMirror bound = ((WildcardType) argument).getExtendsBound();
+			return bound != null ? bound : elements.getTypeElement("java.lang.Object").asType();
+		}
+		return argument;
+	}
+
+	/** Retrieves type argument's name, as declared (including wildcards) */
+	private String typeArgumentName(DeclaredType type, int index) {
+		if (type.getTypeArguments().size() <= index)
+			return "java.lang.Object";
+		return type.getTypeArguments().get(index).toString();
+	}
+
+	private String typeName(TypeMirror type) {
+		return type.toString();
+	}
+
+	private String boxedName(TypeMirror type) {
+		if (type.getKind().isPrimitive())
+			return types.boxedClass(types.getPrimitiveType(type.getKind())).getQualifiedName().toString();
+		return typeName(type);
+	}
+
+	private String defaultValue(TypeMirror type) {
+		switch (type.getKind()) {
+			case BOOLEAN:	return "false";
+			case BYTE:		return "(byte) 0";
+			case SHORT:		return "(short) 0";
+			case CHAR:		return "(char) 0";
+			case INT:		return "0";
+			case LONG:		return "0L";
+			case FLOAT:		return "0f";
+			case DOUBLE:	return "0d";
+			default:		return "(" + typeName(type) + ") null";
+		}
+	}
+
+	private static String copyMethodName(Property property) {
+		return "copy" + Character.toUpperCase(property.field.charAt(0)) + property.field.substring(1);
+	}
+
+	private DeclaredType findSupertype(TypeMirror type, TypeElement supertype) {
+		if (type.getKind() != TypeKind.DECLARED)
+			return null;
+		if (((DeclaredType) type).asElement().equals(supertype))
+			return (DeclaredType) type;
+		for (TypeMirror directSupertype : types.directSupertypes(type)) {
+			DeclaredType found = findSupertype(directSupertype, supertype);
+			if (found != null)
+				return found;
+		}
+		return null;
+	}
+
+	/** Source code builder, tracking indentation and unique local variable names */
+	private static class Code {
+
+		void line() {
+			builder.append('\n');
+		}
+
+		void line(String line) {
+			for (int i = 0; i < indent; i++)
+				builder.append('\t');
+			builder.append(line).append('\n');
+		}
+
+		void open(String line) {
+			line(line);
+			++indent;
+		}
+
+		void close(String line) {
+			--indent;
+			line(line);
+		}
+
+		String variable(String prefix) {
+			return prefix + (variables++);
+		}
+
+		@Override
+		public String toString() {
+			return builder.toString();
+		}
+
+		private final StringBuilder builder = new StringBuilder();
+		private int indent = 0;
+		private int variables = 0;
+
+	}
+
+	private final Types types;
+	private final Elements elements;
+	private final TypeElement hasFieldsElement;
+	private final TypeElement collectionElement;
+	private final TypeElement mapElement;
+
+}
@@ -0,0 +1,75 @@
+package com.parknav.common.fields;
+
+/**
+ * <p>Reflection-free, per-class access to field values, usually generated (for classes annotated with
+ * {@link GenerateFieldAccessor}) by {@code common-fields-processor} annotation processor.</p>
+ *
+ * <p>Accessor implements {@link HasFields#pull(Enum, HasFields, FieldGraph)} (and therefore cloning) without capturing
+ * lambdas, and lets {@link HasFields#clearFields} and {@link HasFields#flatten()} work without temporary objects.</p>
+ *
+ * @param <C> concrete implementation of {@link HasFields}
+ * @param <F> field type
+ */
+public interface FieldAccessor<C extends HasFields<C, F>, F extends Enum<F> & FieldEnum> {
+
+	/**
+	 * Retrieves value of given field (using object's getter).
+	 *
+	 * @param object object to retrieve value from
+	 * @param field field to retrieve
+	 *
+	 * @return field's value
+	 *
+	 * @throws FieldUnavailableException if field is not initialized
+	 */
+	Object get(C object, F field);
+
+	/**
+	 * Sets value of given field (using object's setter, so field gets initialized).
+	 *
+	 * @param object object to set value to
+	 * @param field field to set
+	 * @param value value to set (must be of field's type)
+	 */
+	void set(C object, F field, Object value);
+
+	/**
+	 * (Deep) copies field's value, cloning all sub-objects (including ones held in collections, maps and arrays) to
+	 * {@code field}'s subgraph. Collections, maps and arrays are always copied, other values are returned as they are.
+	 *
+	 * @param field field describing value
+	 * @param value value to copy (may be {@code null})
+	 * @param graph graph from which to extract subgraph for sub-objects (if {@code null}, sub-objects are cloned completely)
+	 *
+	 * @return value's copy
+	 */
+	Object copy(F field, Object value, FieldGraph<F> graph);
+
+	/**
+	 * Sets field's value to {@code null} (or default value for primitives), using object's setter.
+	 *
+	 * @param object object whose field to clear
+	 * @param field field to clear
+	 */
+	void clear(C object, F field);
+
+	/**
+	 * Implements {@link HasFields#pull(Enum, HasFields, FieldGraph)}.
+	 *
+	 * @param field field to pull from {@code source}
+	 * @param target object to pull value into
+	 * @param source object to pull value from
+	 * @param graph field's graph of {@code target} object that may or may not hold subgraph to pull
+	 *
+	 * @return new field value
+	 */
+	default Object pull(F field, C target, C source, FieldGraph<F> graph) {
+		Object value = get(source, field);
+		if (source != target) {
+			value = copy(field, value, graph);
+			set(target, field, value);
+		}
+		return value;
+	}
+
+}
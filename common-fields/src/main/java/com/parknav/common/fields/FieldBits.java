@@ -0,0 +1,138 @@
+package com.parknav.common.fields;
+
+/**
+ * <p>Bit operations on field bitmasks, shared by {@link FieldSet}, {@link FieldMask} and {@link FieldGraph}.</p>
+ *
+ * <p>Bitmask is an array of words, with bit {@code i} (field's ordinal) stored in word {@code i / 64} (single word for
+ * field enums with up to 64 fields). Bitmasks being compared or combined must be of the same field class (and therefore
+ * of the same length).</p>
+ */
+final class FieldBits {
+
+	/**
+	 * @param size number of fields
+	 * @return empty bitmask able to hold {@code size} fields
+	 */
+	static long[] create(int size) {
+		return new long[(size + Long.SIZE - 1) / Long.SIZE];
+	}
+
+	/**
+	 * @param words bitmask
+	 * @param index bit index
+	 * @return {@code true} if bit is set
+	 */
+	static boolean get(long[] words, int index) {
+		return (words[index >>> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * @param words bitmask
+	 * @param index bit index
+	 * @return {@code true} if bit wasn't already set
+	 */
+	static boolean set(long[] words, int index) {
+		long old = words[index >>> 6];
+		words[index >>> 6] = old | (1L << index);
+		return words[index >>> 6] != old;
+	}
+
+	/**
+	 * @param words bitmask
+	 * @param index bit index
+	 * @return {@code true} if bit was set
+	 */
+	static boolean clear(long[] words, int index) {
+		long old = words[index >>> 6];
+		words[index >>> 6] = old & ~(1L << index);
+		return words[index >>> 6] != old;
+	}
+
+	/**
+	 * @param words bitmask
+	 * @param from bit index to start from (inclusive)
+	 * @return index of first set bit at or after {@code from}, or {@code -1} if there is none
+	 */
+	static int nextSetBit(long[] words, int from) {
+		int index = from >>> 6;
+		if (index >= words.length)
+			return -1;
+		long word = words[index] & (-1L << from);
+		while (true) {
+			if (word != 0)
+				return index * Long.SIZE + Long.numberOfTrailingZeros(word);
+			if (++index == words.length)
+				return -1;
+			word = words[index];
+		}
+	}
+
+	/**
+	 * @param words bitmask
+	 * @return number of set bits
+	 */
+	static int cardinality(long[] words) {
+		int count = 0;
+		for (long word : words)
+			count += Long.bitCount(word);
+		return count;
+	}
+
+	/**
+	 * @param words bitmask
+	 * @return {@code true} if no bit is set
+	 */
+	static boolean isEmpty(long[] words) {
+		for (long word : words)
+			if (word != 0)
+				return false;
+		return true;
+	}
+
+	/**
+	 * @param words bitmask
+	 * @param other bitmask to check
+	 * @return {@code true} if all bits set in {@code other} are set in {@code words}
+	 */
+	static boolean containsAll(long[] words, long[] other) {
+		for (int i = 0; i < words.length; i++)
+			if ((other[i] & ~words[i]) != 0)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Sets all bits set in {@code other}.
+	 * @param words bitmask to modify
+	 * @param other bits to set
+	 * @return {@code true} if {@code words} changed
+	 */
+	static boolean addAll(long[] words, long[] other) {
+		boolean changed = false;
+		for (int i = 0; i < words.length; i++) {
+			long old = words[i];
+			words[i] |= other[i];
+			changed |= words[i] != old;
+		}
+		return changed;
+	}
+
+	/**
+	 * Clears all bits set in {@code other}.
+	 * @param words bitmask to modify
+	 * @param other bits to clear
+	 * @return {@code true} if {@code words} changed
+	 */
+	static boolean removeAll(long[] words, long[] other) {
+		boolean changed = false;
+		for (int i = 0; i < words.length; i++) {
+			long old = words[i];
+			words[i] &= ~other[i];
+			changed |= words[i] != old;
+		}
+		return changed;
+	}
+
+	private FieldBits() {}
+
+}
@@ -0,0 +1,33 @@
+package com.parknav.common.fields;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Serializes values of a single field, so that they can be stored outside of Java heap (see
+ * {@link FieldsEntityCache.Builder#offHeap(Enum, FieldCodec)}).</p>
+ *
+ * <p>Codec never sees {@code null} values (they are stored without serialization), and must be thread-safe.</p>
+ *
+ * @param <T> field's value type
+ */
+public interface FieldCodec<T> {
+
+	/**
+	 * Serializes given value.
+	 *
+	 * @param value (non-null) value to serialize
+	 *
+	 * @return buffer holding serialized value (between its position and limit)
+	 */
+	ByteBuffer encode(T value);
+
+	/**
+	 * Deserializes value.
+	 *
+	 * @param buffer (read-only) buffer holding serialized value (between its position and limit), as returned by {@link #encode}
+	 *
+	 * @return deserialized value
+	 */
+	T decode(ByteBuffer buffer);
+
+}
@@ -0,0 +1,216 @@
+package com.parknav.common.fields;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * <p>Holds metadata of {@link FieldEnum} class, computed once per class:</p>
+ * <ul>
+ *     <li>enum constants by ordinal (without copying them as {@link Class#getEnumConstants()} does)</li>
+ *     <li>name-to-constant lookup table (without throwing exceptions on misses as {@link Enum#valueOf(Class, String)} does)</li>
+ *     <li>subobjects' field classes (as returned by {@link FieldEnum#getFieldsClass()}) by ordinal</li>
+ *     <li>fields which describe subobjects (i.e. may have subgraphs)</li>
+ *     <li>all field classes reachable from this one</li>
+ * </ul>
+ *
+ * @param <F> Field enum
+ */
+public final class FieldEnumRegistry<F extends Enum<F> & FieldEnum> {
+
+	/**
+	 * Retrieves (shared) registry of given field class.
+	 * @param clazz field class
+	 * @param <F> field type
+	 * @return registry of {@code clazz}
+	 */
+	@SuppressWarnings("unchecked")
+	public static <F extends Enum<F> & FieldEnum> FieldEnumRegistry<F> of(Class<F> clazz) {
+		return (FieldEnumRegistry<F>) Registries.get(clazz);
+	}
+
+	private FieldEnumRegistry(Class<F> clazz) {
+
+		this.clazz = clazz;
+		constants = clazz.getEnumConstants();
+		fieldsClasses = new Class<?>[constants.length];
+		slots = new int[constants.length];
+
+		EnumSet<F> subgraphFields = EnumSet.noneOf(clazz);
+		int count = 0;
+		for (F constant : constants) {
+			Class<?> fieldsClass = constant.getFieldsClass();
+			fieldsClasses[constant.ordinal()] = fieldsClass;
+			if (fieldsClass != null) {
+				slots[constant.ordinal()] = count++;
+				subgraphFields.add(constant);
+			} else {
+				slots[constant.ordinal()] = -1;
+			}
+		}
+		slotCount = count;
+		this.subgraphFields = Collections.unmodifiableSet(subgraphFields);
+
+		// open-addressing hash table (at most half full) of ordinals + 1 (0 marks empty bucket)
+		names = new int[Integer.highestOneBit(Math.max(constants.length, 1) * 2 - 1) << 1];
+		for (F constant : constants) {
+			int index = spread(constant.name().hashCode()) & (names.length - 1);
+			while (names[index] != 0)
+				index = (index + 1) & (names.length - 1);
+			names[index] = constant.ordinal() + 1;
+		}
+
+	}
+
+	/**
+	 * @return field class described by this registry
+	 */
+	public Class<F> getFieldsClass() {
+		return clazz;
+	}
+
+	/**
+	 * @return number of fields in field class
+	 */
+	public int size() {
+		return constants.length;
+	}
+
+	/**
+	 * Retrieves field by its ordinal.
+	 * @param ordinal field's ordinal
+	 * @return field with given ordinal
+	 * @throws ArrayIndexOutOfBoundsException if there's no field with given ordinal
+	 */
+	public F get(int ordinal) {
+		return constants[ordinal];
+	}
+
+	/**
+	 * Looks up field by its name.
+	 * @param name field name
+	 * @return field with given name, or {@code null} if there's no such field
+	 */
+	public F lookup(CharSequence name) {
+		return lookup(name, 0, name.length());
+	}
+
+	/**
+	 * Looks up field by its name, given as region of {@code value} (without allocating substring).
+	 * @param value string holding field name
+	 * @param start start of field name (inclusive)
+	 * @param end end of field name (exclusive)
+	 * @return field with given name, or {@code null} if there's no such field
+	 */
+	public F lookup(CharSequence value, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++)
+			hash = 31 * hash + value.charAt(i);	// same as String.hashCode()
+		for (int index = spread(hash) & (names.length - 1); names[index] != 0; index = (index + 1) & (names.length - 1)) {
+			F constant = constants[names[index] - 1];
+			if (regionEquals(constant.name(), value, start, end))
+				return constant;
+		}
+		return null;
+	}
+
+	/**
+	 * Parses field by its name, same as {@link Enum#valueOf(Class, String)} would.
+	 * @param name field name
+	 * @return field with given name
+	 * @throws IllegalArgumentException if there's no field with given name
+	 */
+	public F parse(String name) {
+		F field = lookup(Objects.requireNonNull(name, "Name is null"));
+		if (field == null)
+			throw new IllegalArgumentException("No enum constant " + clazz.getCanonicalName() + "." + name);
+		return field;
+	}
+
+	/**
+	 * Retrieves field class of subobject described by given field (same as {@link FieldEnum#getFieldsClass()}, without virtual call).
+	 * @param field field
+	 * @param <X> subobject's field type
+	 * @return subobject's field class, or {@code null} if field doesn't describe subobject
+	 */
+	@SuppressWarnings("unchecked")
+	public <X extends Enum<X> & FieldEnum> Class<X> getFieldsClass(F field) {
+		return (Class<X>) fieldsClasses[field.ordinal()];
+	}
+
+	/**
+	 * @return (unmodifiable) fields which describe subobjects (and therefore may have subgraphs)
+	 */
+	public Set<F> getSubgraphFields() {
+		return subgraphFields;
+	}
+
+	/**
+	 * @return (unmodifiable) all field classes reachable from this one (via subobjects, transitively), including this one
+	 */
+	public Set<Class<?>> getReachableClasses() {
+		Set<Class<?>> reachable = reachableClasses;
+		if (reachable == null) {
+			// computed lazily, since field classes may reference each other
+			reachable = new LinkedHashSet<>();
+			Deque<Class<?>> pending = new ArrayDeque<>();
+			pending.add(clazz);
+			while (!pending.isEmpty()) {
+				Class<?> current = pending.poll();
+				if (reachable.add(current))
+					for (Class<?> fieldsClass : Registries.get(current).fieldsClasses)
+						if (fieldsClass != null && !reachable.contains(fieldsClass))
+							pending.add(fieldsClass);
+			}
+			reachableClasses = reachable = Collections.unmodifiableSet(reachable);
+		}
+		return reachable;
+	}
+
+	/** <b>INTERNAL</b>: index of field with given ordinal among fields which describe subobjects, -1 for other fields */
+	int slot(int ordinal) {
+		return slots[ordinal];
+	}
+
+	/** <b>INTERNAL</b>: number of fields which describe subobjects */
+	int slotCount() {
+		return slotCount;
+	}
+
+	private static boolean regionEquals(String name, CharSequence value, int start, int end) {
+		if (name.length() != end - start)
+			return false;
+		for (int i = 0; i < name.length(); i++)
+			if (name.charAt(i) != value.charAt(start + i))
+				return false;
+		return true;
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	private static final ClassValue<FieldEnumRegistry<?>> Registries = new ClassValue<>() {
+		@Override
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		protected FieldEnumRegistry<?> computeValue(Class<?> type) {
+			if (!type.isEnum() || !FieldEnum.class.isAssignableFrom(type))
+				throw new IllegalArgumentException(type + " is not a field enum");
+			return new FieldEnumRegistry(type);
+		}
+	};
+
+	private final Class<F> clazz;
+	private final F[] constants;
+	private final Class<?>[] fieldsClasses;			// subobjects' field classes by ordinal (null for fields without subobjects)
+	private final int[] slots;						// index among fields with subobjects by ordinal (-1 for fields without subobjects)
+	private final int slotCount;
+	private final Set<F> subgraphFields;
+	private final int[] names;						// lookup table of names (ordinal + 1 in each bucket, 0 for empty)
+	private volatile Set<Class<?>> reachableClasses;	// computed lazily
+
+}
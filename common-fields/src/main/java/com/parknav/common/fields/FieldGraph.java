@@ -2,20 +2,25 @@ package com.parknav.common.fields;
 
 import java.text.ParseException;
 import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.Set;
 
-import com.google.common.collect.Iterators;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 
 /**
  * <p>Defines complete object's field graph with exact subfields for each fields-enabled subobject.</p>
- * <p>Implements {@link Set} interface for first-level fields.</p>
+ * <p>Implements {@link Set} interface for first-level fields. Fields are stored as a bitmask (a single {@code long} word
+ * for field enums with up to 64 fields), and subgraphs only for fields which declare them, so set operations are cheap.</p>
+ * <p>Instances are immutable (and therefore thread-safe), so they can be freely shared. Use {@link #intern()} to obtain
+ * canonical instance of any graph.</p>
  *
  * @param <F> Field enum (first-level fields)
  */
@@ -110,7 +115,7 @@ public class FieldGraph<F extends Enum<F> & FieldEnum> extends AbstractSet<F> {
 
 		private static <F extends Enum<F> & FieldEnum> void extend(Map<F, FieldGraph<?>> data, FieldGraph<F> extension) {
 			for (F field : extension) {
-				FieldGraph<?> extensionSubset = extension.data.get(field);
+				FieldGraph<?> extensionSubset = extension.getGraph(field);
 				extend(data, field, extensionSubset);
 			}
 		}
@@ -122,12 +127,14 @@ public class FieldGraph<F extends Enum<F> & FieldEnum> extends AbstractSet<F> {
 			FieldGraph<F2> thisSubGraph = (FieldGraph<F2>) data.get(field);
 			FieldGraph<F2> mergedSubGraph;
 			if (thisSubGraph == null)
-				mergedSubGraph = subgraph != null ? subgraph.clone() : null;
+				mergedSubGraph = subgraph;	// graphs are immutable, so it's safe to share them
 			else if (subgraph == null)
 				mergedSubGraph = thisSubGraph;
 			else {
-				extend(thisSubGraph.data, subgraph);
-				mergedSubGraph = thisSubGraph;
+				// never modify existing subgraph (it may be shared with other graphs), merge into a copy instead
+				Map<F2, FieldGraph<?>> mergedData = thisSubGraph.toMap();
+				extend(mergedData, subgraph);
+				mergedSubGraph = fromMap(thisSubGraph.clazz, mergedData);
 			}
 			data.put(field, mergedSubGraph);
 		}
@@ -137,7 +144,7 @@ public class FieldGraph<F extends Enum<F> & FieldEnum> extends AbstractSet<F> {
 		 * @return {@link FieldGraph}
 		 */
 		public FieldGraph<F> build() {
-			return new FieldGraph<>(clazz, data);
+			return fromMap(clazz, data);	// graph copies data, so further changes to builder don't affect built graph
 		}
 
 		private final Class<F> clazz;
@@ -148,13 +155,15 @@ public class FieldGraph<F extends Enum<F> & FieldEnum> extends AbstractSet<F> {
 	// enum-style factories
 
 	/**
-	 * Constructs empty {@link FieldGraph} of {@code F} first-level fields.
+	 * Retrieves empty {@link FieldGraph} of {@code F} first-level fields. Since graphs are immutable, same (shared)
+	 * instance is returned for each class.
 	 * @param clazz class describing first-level field type
 	 * @param <F> first-level field type
 	 * @return empty {@link FieldGraph}
 	 */
+	@SuppressWarnings("unchecked")
 	public static <F extends Enum<F> & FieldEnum> FieldGraph<F> noneOf(Class<F> clazz) {
-		return new FieldGraph<>(clazz);
+		return (FieldGraph<F>) Empty.get(clazz);
 	}
 
 	/**
@@ -188,13 +197,13 @@ public class FieldGraph<F extends Enum<F> & FieldEnum> extends AbstractSet<F> {
 	public static <F extends Enum<F> & FieldEnum> FieldGraph<F> of(Collection<F> fields) {
 		if (fields.isEmpty())
 			throw new IllegalArgumentException("fields param can not be empty");
-		FieldGraph<F> graph = null;
+		Draft<F> draft = null;
 		for (F field : fields) {
-			if (graph == null)
-				graph = new FieldGraph<>(field.getDeclaringClass());
-			graph.data.put(field, null);
+			if (draft == null)
+				draft = new Draft<>(field.getDeclaringClass());
+			draft.put(field, null);
 		}
-		return graph;
+		return draft.build(false);
 	}
 
 	/**
@@ -206,10 +215,10 @@ public class FieldGraph<F extends Enum<F> & FieldEnum> extends AbstractSet<F> {
 	 */
 	public static <F extends Enum<F> & FieldEnum> FieldGraph<F> of(F first, Object... rest) {
 		Class<F> clazz = first.getDeclaringClass();
-		FieldGraph<F> graph = new FieldGraph<>(clazz);
-		graph.data.put(first, null);
-		add(clazz, graph, rest);
-		return graph;
+		Draft<F> draft = new Draft<>(clazz);
+		draft.put(first, null);
+		add(clazz, draft, rest);
+		return draft.build(false);
 	}
 
 	// string-style factories
@@ -221,6 +230,8 @@ public class FieldGraph<F extends Enum<F> & FieldEnum> extends AbstractSet<F> {
 	 *     <li>fields are represented bay their enum names separated by commas: {@code foo,bar,baz}</li>
 	 *     <li>each field's subfields are sourounded by curley braces (hierarchy may go as deep as needed): {@code foo,bar{b1,b2},baz{c1{c11,c12},c2}}</li>
 	 * </ul>
+	 * <p>Parsed graphs are cached (see {@link FieldGraphCache#getDefault()}), so returned graph is shared and
+	 * {@link #intern() interned}.</p>
 	 * @param value string to parse
 	 * @param clazz class representing first-level field type
 	 * @param <F> first-level field type
@@ -228,71 +239,190 @@ public class FieldGraph<F extends Enum<F> & FieldEnum> extends AbstractSet<F> {
 	 * @throws ParseException is value cannot be parsed
 	 */
 	public static <F extends Enum<F> & FieldEnum> FieldGraph<F> of(String value, Class<F> clazz) throws ParseException {
-		return parse(RecursiveStringMap.of(value), clazz);
+		return FieldGraphCache.getDefault().get(value, clazz);
+	}
+
+	/** Parses {@code value} without caching (see {@link #of(String, Class)}) */
+	static <F extends Enum<F> & FieldEnum> FieldGraph<F> parse(CharSequence value, Class<F> clazz) throws ParseException {
+
+		Draft<F> draft = new Draft<>(clazz);
+
+		if (value == null || isBlank(value))
+			return draft.build(false);
+
+		// recursively parse (in single pass) directly to graph hierarchy
+		parse(draft, value, 0, false);
+
+		return draft.build(false);
+
 	}
 
 	@SuppressWarnings("unchecked")
-	private static <F extends Enum<F> & FieldEnum> void add(Class<F> clazz, FieldGraph<F> graph, Object... objects) {
+	private static <F extends Enum<F> & FieldEnum> void add(Class<F> clazz, Draft<F> draft, Object... objects) {
 		for (Object object : objects) {
 			if (!clazz.equals(object.getClass()))
 				throw new IllegalArgumentException("Expected " + clazz + ", but got " + object.getClass());
-			graph.data.put((F) object, null);
+			draft.put((F) object, null);
 		}
 	}
 
-	// recursive
+	// recursive, returns offset at which parsing of (sub)fields stopped
 	@SuppressWarnings("unchecked")
-	private static <F extends Enum<F> & FieldEnum> FieldGraph<F> parse(RecursiveStringMap raw, Class<F> clazz) throws UnknownFieldException {
-		
-		if (raw == null)
-			return null;
-		
-		FieldGraph<F> graph = new FieldGraph<>(clazz);
-
-		for (Map.Entry<RecursiveStringMap.Key, RecursiveStringMap> entry : raw.entrySet()) {
-			F field;
-			try {
-				field = Enum.valueOf(clazz, entry.getKey().name);
-			} catch (IllegalArgumentException e) {
-				throw new UnknownFieldException(entry.getKey().name, clazz, entry.getKey().offset);
+	private static <F extends Enum<F> & FieldEnum> int parse(Draft<F> draft, CharSequence value, int start, boolean subfields) throws ParseException {
+
+		int length = value.length();
+		int end;
+
+		while (true) {
+
+			// parse field name
+			end = start;
+			char c = 0;
+			while (end < length) {
+				c = value.charAt(end);
+				if (start == end && !isFieldIdentifierStart(c) || !isFieldIdentifierPart(c))
+					break;
+				++end;
 			}
-			// NOTE this cast if WRONG, but Java complains otherwise (we need to recurse with parse using different type in each step)
-			// Works OK due to type erasure, but beware...
-			graph.data.put(field, parse(entry.getValue(), (Class<F>) field.getFieldsClass()));
+
+			if (start == end)
+				throw new ParseException("Zero-length field name", start);
+
+			F field = draft.registry.lookup(value, start, end);
+			if (field == null)
+				throw new UnknownFieldException(value.subSequence(start, end).toString(), draft.clazz, start);
+
+			// parse (optional) subfields
+			if (c == '{' && end < length) {
+				// NOTE this cast if WRONG, but Java complains otherwise (we need to recurse with parse using different type in each step)
+				// Works OK due to type erasure, but beware...
+				Class<F> subfieldsClass = draft.registry.getFieldsClass(field);
+				if (subfieldsClass == null)
+					throw new ParseException("Field " + field + " doesn't declare subfields", end);
+				Draft<F> subgraph = new Draft<>(subfieldsClass);
+				end = parse(subgraph, value, end + 1, true);
+				if (end == length)
+					throw new ParseException("Reached end-of-line before subfields declaration ended (start was at " + start + ")", end);
+				else if (value.charAt(end) != '}')
+					throw new ParseException("Unterminated subfields declaration (start was at " + start + ")", end);
+				++end;
+				if (end < length)
+					c = value.charAt(end);
+				draft.merge(field, subgraph.build(false));
+			} else {
+				draft.merge(field, null);
+			}
+
+			if (end == length)
+				break;	// reached end of value
+			else if (c == ',')
+				start = end + 1;	// reached end of field (WITHOUT subfields)
+			else if (subfields && c == '}')
+				break;	// reached end of subfields
+			else
+				throw new ParseException("Illegal character: '" + c + "'", end);
+
 		}
-		
-		return graph;
-		
+
+		return end;
+
 	}
-	
-	private FieldGraph(Class<F> clazz) {
-		this(clazz, new EnumMap<>(clazz));
+
+	private static boolean isBlank(CharSequence value) {
+		for (int i = 0; i < value.length(); i++)
+			if (value.charAt(i) > ' ')	// same as String.trim()
+				return false;
+		return true;
 	}
-	
-	private FieldGraph(Class<F> clazz, Map<F, FieldGraph<?>> data) {
-		this.clazz = clazz;
-		this.data = data;
+
+	private static boolean isFieldIdentifierStart(char c) {
+		return Character.isLetter(c) || c == '$' || c == '_';
+	}
+
+	private static boolean isFieldIdentifierPart(char c) {
+		return isFieldIdentifierStart(c) || Character.isDigit(c);
+	}
+
+	private static <F extends Enum<F> & FieldEnum> FieldGraph<F> fromMap(Class<F> clazz, Map<F, FieldGraph<?>> data) {
+		Draft<F> draft = new Draft<>(clazz);
+		for (Map.Entry<F, FieldGraph<?>> entry : data.entrySet())
+			draft.put(entry.getKey(), entry.getValue());
+		return draft.build(false);
+	}
+
+	/** Takes over draft's fields (draft must not be used afterwards) */
+	private FieldGraph(Draft<F> draft, boolean interned) {
+		clazz = draft.clazz;
+		registry = draft.registry;
+		words = draft.words;
+		children = draft.children;
+		this.interned = interned;
+		hash = hash();
+	}
+
+	/** Copies {@code graph} (sharing its subgraphs, since they are immutable) */
+	private FieldGraph(FieldGraph<F> graph) {
+		clazz = graph.clazz;
+		registry = graph.registry;
+		words = graph.words.clone();
+		children = graph.children;
+		interned = false;
+		hash = graph.hash;
+	}
+
+	private Map<F, FieldGraph<?>> toMap() {
+		Map<F, FieldGraph<?>> map = new EnumMap<>(clazz);
+		for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1))
+			map.put(registry.get(i), child(i));
+		return map;
+	}
+
+	private boolean has(int ordinal) {
+		return FieldBits.get(words, ordinal);
+	}
+
+	private int nextSetBit(int from) {
+		return FieldBits.nextSetBit(words, from);
+	}
+
+	private FieldGraph<?> child(int ordinal) {
+		int slot = registry.slot(ordinal);
+		return slot >= 0 && children != null ? children[slot] : null;
 	}
 
 	// (Immutable)Set interface
 	@Override
-	public int size() { return data.size(); }
+	public int size() { return FieldBits.cardinality(words); }
 	@Override
-	public boolean isEmpty() { return data.isEmpty(); }
+	public boolean isEmpty() { return FieldBits.isEmpty(words); }
 	@Override
-	public boolean contains(Object o) { return data.containsKey(o); }
+	public boolean contains(Object o) { return o instanceof Enum && ((Enum<?>) o).getDeclaringClass() == clazz && has(((Enum<?>) o).ordinal()); }
 	@Override
-	public Iterator<F> iterator() { return Iterators.unmodifiableIterator(data.keySet().iterator()); }
-	@Override
-	public Object[] toArray() { return data.keySet().toArray(); }
-	@Override
-	public <X> X[] toArray(X[] a) { return data.keySet().toArray(a); }
+	public Iterator<F> iterator() {
+		return new Iterator<>() {
+			@Override
+			public boolean hasNext() { return next >= 0; }
+			@Override
+			public F next() {
+				if (next < 0)
+					throw new NoSuchElementException();
+				F field = registry.get(next);
+				next = nextSetBit(next + 1);
+				return field;
+			}
+			private int next = nextSetBit(0);
+		};
+	}
 	@Override
 	public boolean add(F field) { throw new UnsupportedOperationException(); }
 	@Override
 	public boolean remove(Object o) { throw new UnsupportedOperationException(); }
 	@Override
-	public boolean containsAll(Collection<?> c) { return data.keySet().containsAll(c); }
+	public boolean containsAll(Collection<?> c) {
+		if (c instanceof FieldGraph && ((FieldGraph<?>) c).clazz == clazz)
+			return FieldBits.containsAll(words, ((FieldGraph<?>) c).words);
+		return super.containsAll(c);
+	}
 	@Override
 	public boolean addAll(Collection<? extends F> c) { throw new UnsupportedOperationException(); }
 	@Override
@@ -303,12 +433,12 @@ public class FieldGraph<F extends Enum<F> & FieldEnum> extends AbstractSet<F> {
 	public void clear() { throw new UnsupportedOperationException(); }
 
 	/**
-	 * Clones this field graph with all subgraphs.
+	 * Clones this field graph. Since graphs are immutable, subgraphs are shared with the clone.
 	 * @return new {@link FieldGraph} clone
 	 */
 	//@Override	// GWT complains
 	public FieldGraph<F> clone() {
-		return new FieldGraph<>(clazz, data.isEmpty() ? new EnumMap<>(clazz) : new EnumMap<>(data));
+		return new FieldGraph<>(this);
 	}
 
 	/**
@@ -327,20 +457,65 @@ public class FieldGraph<F extends Enum<F> & FieldEnum> extends AbstractSet<F> {
 		FieldGraph<?> other = (FieldGraph<?>) obj;
 		if (clazz != other.clazz)
 			return false;
-		if (data.size() != other.data.size())
+		if (!Arrays.equals(words, other.words))
 			return false;
-		for (Map.Entry<F, FieldGraph<?>> entry : data.entrySet()) {
-			if (!other.data.containsKey(entry.getKey()))
-				return false;
+		if (children == null && other.children == null)
+			return true;
+		for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+			FieldGraph<?> child = child(i);
+			FieldGraph<?> otherChild = other.child(i);
+			if (child == otherChild)
+				continue;
+			// empty subgraph is equal to no subgraph at all
 			if (!Objects.equals(
-				Optional.ofNullable(entry.getValue()).filter(subfields -> !subfields.isEmpty()).orElse(null),
-				Optional.ofNullable(other.data.get(entry.getKey())).filter(subfields -> !subfields.isEmpty()).orElse(null)
+				child != null && !child.isEmpty() ? child : null,
+				otherChild != null && !otherChild.isEmpty() ? otherChild : null
 			))
-				return false;	
+				return false;
 		}
 		return true;
 	}
 
+	/**
+	 * (deep) Calculates hash code of this {@link FieldGraph} in a way consistent with {@link #equals(Object)}.
+	 * Value is calculated once graph is constructed, since graph is immutable.
+	 * @return hash code of this field graph
+	 */
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	private int hash() {
+		int h = 0;
+		for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+			FieldGraph<?> child = child(i);
+			h += registry.get(i).hashCode() ^ (child != null ? child.hashCode() : 0);
+		}
+		return h;
+	}
+
+	/**
+	 * <p>Returns canonical representation of this field graph, much like {@link String#intern()} does for strings.</p>
+	 * <p>For any two graphs {@code g1} and {@code g2}, {@code g1.intern() == g2.intern()} is {@code true} if and only if
+	 * {@code g1.equals(g2)} is {@code true}. Subgraphs of canonical graph are canonical, too, so equal subgraphs are shared
+	 * among all interned graphs.</p>
+	 * <p>Canonical instances are only weakly referenced by intern pool, so they are garbage collected once they are not used anymore.</p>
+	 * @return canonical representation of this field graph
+	 */
+	@SuppressWarnings("unchecked")
+	public FieldGraph<F> intern() {
+		if (interned)
+			return this;
+		Draft<F> candidate = new Draft<>(clazz);
+		for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+			FieldGraph<?> subgraph = child(i);
+			// empty subgraph is equal to no subgraph at all, so normalize it to null
+			candidate.put(registry.get(i), subgraph == null || subgraph.isEmpty() ? null : subgraph.intern());
+		}
+		return (FieldGraph<F>) InternPool.intern(candidate.build(true));
+	}
+
 	/**
 	 * Converts this field graph to its string representation.
 	 * @return String representation of this field graph
@@ -355,15 +530,16 @@ public class FieldGraph<F extends Enum<F> & FieldEnum> extends AbstractSet<F> {
 	// recursive
 	private void toString(FieldGraph<?> graph, StringBuilder builder) {
 		boolean first = true;
-		for (Map.Entry<?, FieldGraph<?>> entry : graph.data.entrySet()) {
+		for (int i = graph.nextSetBit(0); i >= 0; i = graph.nextSetBit(i + 1)) {
 			if (first)
 				first = false;
 			else
 				builder.append(',');
-			builder.append(entry.getKey());
-			if (entry.getValue() != null && !entry.getValue().isEmpty()) {
+			builder.append(graph.registry.get(i));
+			FieldGraph<?> subgraph = graph.child(i);
+			if (subgraph != null && !subgraph.isEmpty()) {
 				builder.append('{');
-				toString(entry.getValue(), builder);
+				toString(subgraph, builder);
 				builder.append('}');
 			}
 		}
@@ -387,7 +563,7 @@ public class FieldGraph<F extends Enum<F> & FieldEnum> extends AbstractSet<F> {
 	 * @see #getGraph(Enum, Class)
 	 */
 	public FieldGraph<?> getGraph(F field) {
-		return data.get(field);
+		return has(field.ordinal()) ? child(field.ordinal()) : null;
 	}
 
 	/**
@@ -404,24 +580,90 @@ public class FieldGraph<F extends Enum<F> & FieldEnum> extends AbstractSet<F> {
 	@SuppressWarnings("unchecked")
 	public <X extends Enum<X> & FieldEnum> FieldGraph<X> getGraph(F field, Class<X> clazz) {
 
-		if (!clazz.equals(field.getFieldsClass()))
-			throw new IllegalArgumentException("Requested sub-graph for field " + field + " of type " + clazz + " but field declares sub-graph of type " + field.getFieldsClass());
+		if (clazz != registry.getFieldsClass(field))
+			throw new IllegalArgumentException("Requested sub-graph for field " + field + " of type " + clazz + " but field declares sub-graph of type " + registry.getFieldsClass(field));
 
 		FieldGraph<?> subGraphRaw = getGraph(field);
 
 		if (subGraphRaw == null)
-			return new FieldGraph<>(clazz);
+			return noneOf(clazz);
 
 		Class<?> subGraphDeclaringClass = subGraphRaw.getDeclaringClass();
 
-		if (!subGraphDeclaringClass.equals(clazz))
+		if (subGraphDeclaringClass != clazz)
 			throw new IllegalArgumentException("Requested sub-graph for field " + field + " of type " + clazz + " but stored sub-graph was of type " + subGraphDeclaringClass);
 		
 		return (FieldGraph<X>) subGraphRaw;
 
 	}
 
+	private static final ClassValue<FieldGraph<?>> Empty = new ClassValue<>() {
+		@Override
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		protected FieldGraph<?> computeValue(Class<?> type) {
+			return new Draft(type).build(false);
+		}
+	};
+
+	/**
+	 * Fields (and subgraphs) of graph under construction, so that graph itself is never modified once constructed (and
+	 * can therefore hold them in final fields).
+	 */
+	private static class Draft<F extends Enum<F> & FieldEnum> {
+
+		private Draft(Class<F> clazz) {
+			this.clazz = clazz;
+			registry = FieldEnumRegistry.of(clazz);
+			words = FieldBits.create(registry.size());
+		}
+
+		private void put(F field, FieldGraph<?> subgraph) {
+			int ordinal = field.ordinal();
+			FieldBits.set(words, ordinal);
+			int slot = registry.slot(ordinal);
+			if (slot >= 0) {
+				if (subgraph != null && children == null)
+					children = new FieldGraph<?>[registry.slotCount()];
+				if (children != null)
+					children[slot] = subgraph;
+			}
+		}
+
+		/** Merges {@code subgraph} with existing one (if field is already present) */
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private void merge(F field, FieldGraph<?> subgraph) {
+			int ordinal = field.ordinal();
+			int slot = registry.slot(ordinal);
+			FieldGraph<?> existing = FieldBits.get(words, ordinal) && slot >= 0 && children != null ? children[slot] : null;
+			if (existing != null && subgraph != null)
+				subgraph = Builder.of((FieldGraph) existing).add((Set) subgraph).build();
+			else if (existing != null)
+				subgraph = existing;
+			put(field, subgraph);
+		}
+
+		/**
+		 * @param interned whether graph is canonical (see {@link #intern()})
+		 * @return graph holding drafted fields (draft must not be used afterwards)
+		 */
+		private FieldGraph<F> build(boolean interned) {
+			return new FieldGraph<>(this, interned);
+		}
+
+		private final Class<F> clazz;
+		private final FieldEnumRegistry<F> registry;
+		private final long[] words;
+		private FieldGraph<?>[] children = null;
+
+	}
+
+	private static final Interner<FieldGraph<?>> InternPool = Interners.newWeakInterner();
+
 	private final Class<F> clazz;
-	private final Map<F, FieldGraph<?>> data;
+	private final FieldEnumRegistry<F> registry;
+	private final long[] words;				// fields (see FieldBits)
+	private final FieldGraph<?>[] children;	// subgraphs of fields which declare them, indexed by slot (null if there are none)
+	private final int hash;
+	private final boolean interned;		// canonical (see intern()), only ever published through intern pool
 
 }
@@ -0,0 +1,134 @@
+package com.parknav.common.fields;
+
+import java.text.ParseException;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * <p>Bounded, thread-safe cache of {@link FieldGraph}s parsed from their string representations.</p>
+ *
+ * <p>Parsed graphs are {@link FieldGraph#intern() interned}, so graphs parsed from different (but equivalent) strings
+ * share their instances.</p>
+ *
+ * <p>{@link FieldGraph#of(String, Class)} uses {@link #getDefault() default} cache.</p>
+ */
+public class FieldGraphCache {
+
+	/** Maximum number of graphs held by {@link #getDefault() default} cache */
+	public static final long DefaultMaximumSize = 1024;
+
+	/**
+	 * @return default cache, used by {@link FieldGraph#of(String, Class)}
+	 */
+	public static FieldGraphCache getDefault() {
+		return Default;
+	}
+
+	/**
+	 * Constructs cache holding at most {@code maximumSize} graphs (least recently used graphs are evicted first).
+	 * @param maximumSize maximum number of graphs to hold
+	 */
+	public FieldGraphCache(long maximumSize) {
+		cache = CacheBuilder.newBuilder()
+			.maximumSize(maximumSize)
+			.recordStats()
+			.build();
+	}
+
+	/**
+	 * Retrieves graph parsed from {@code value}, parsing it if it wasn't already cached.
+	 * @param value string to parse (see {@link FieldGraph#of(String, Class)} for syntax)
+	 * @param clazz class representing first-level field type
+	 * @param <F> first-level field type
+	 * @return (shared) {@link FieldGraph} of type {@code F} parsed from {@code value}
+	 * @throws ParseException is value cannot be parsed
+	 */
+	@SuppressWarnings("unchecked")
+	public <F extends Enum<F> & FieldEnum> FieldGraph<F> get(String value, Class<F> clazz) throws ParseException {
+
+		if (value == null)
+			return FieldGraph.parse(null, clazz);
+
+		try {
+			return (FieldGraph<F>) cache.get(new Key(value, clazz), () -> FieldGraph.parse(value, clazz).intern());
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ParseException)
+				throw (ParseException) e.getCause();
+			throw new IllegalStateException("Failed to parse fields " + value, e.getCause());
+		} catch (UncheckedExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw e;
+		}
+
+	}
+
+	/** Removes all graphs from cache (statistics are preserved). */
+	public void clear() {
+		cache.invalidateAll();
+	}
+
+	/**
+	 * @return number of graphs currently held in cache
+	 */
+	public long size() {
+		return cache.size();
+	}
+
+	/**
+	 * @return number of times requested graph was found in cache
+	 */
+	public long getHitCount() {
+		return cache.stats().hitCount();
+	}
+
+	/**
+	 * @return number of times requested graph had to be parsed (including failed attempts)
+	 */
+	public long getMissCount() {
+		return cache.stats().missCount();
+	}
+
+	/**
+	 * @return number of graphs evicted from cache due to its size limit
+	 */
+	public long getEvictionCount() {
+		return cache.stats().evictionCount();
+	}
+
+	private static class Key {
+
+		private Key(String value, Class<?> clazz) {
+			this.value = value;
+			this.clazz = clazz;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return clazz == other.clazz && value.equals(other.value);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(value, clazz);
+		}
+
+		private final String value;
+		private final Class<?> clazz;
+
+	}
+
+	private static final FieldGraphCache Default = new FieldGraphCache(DefaultMaximumSize);
+
+	private final Cache<Key, FieldGraph<?>> cache;
+
+}
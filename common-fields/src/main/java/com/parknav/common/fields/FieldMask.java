@@ -0,0 +1,151 @@
+package com.parknav.common.fields;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * <p>Precomputed, immutable set of fields, stored as a bitmask (a single {@code long} word for field enums with up to
+ * 64 fields). Intended to be constructed once (e.g. as a constant) and then checked against object's fields via
+ * {@link HasFields#hasFields(FieldMask)}, which (for fields held in {@link FieldSet}) boils down to a single AND/compare,
+ * without varargs, collections or string parsing.</p>
+ *
+ * <blockquote><pre>
+ * private static final FieldMask&lt;Person.Field&gt; NameAndEmail = FieldMask.of(Person.Field.name, Person.Field.email);
+ * ...
+ * if (person.hasFields(NameAndEmail))
+ * 	...
+ * </pre></blockquote>
+ *
+ * @param <F> Field enum
+ */
+public final class FieldMask<F extends Enum<F> & FieldEnum> {
+
+	/**
+	 * Constructs mask of given fields.
+	 * @param first first field
+	 * @param rest other fields
+	 * @param <F> field type
+	 * @return mask of given fields
+	 */
+	@SafeVarargs
+	public static <F extends Enum<F> & FieldEnum> FieldMask<F> of(F first, F... rest) {
+		FieldMask<F> mask = new FieldMask<>(first.getDeclaringClass());
+		mask.set(first.ordinal());
+		for (F field : rest)
+			mask.set(field.ordinal());
+		return mask;
+	}
+
+	/**
+	 * Constructs mask of given fields.
+	 * @param clazz field class
+	 * @param fields fields
+	 * @param <F> field type
+	 * @return mask of given fields
+	 */
+	public static <F extends Enum<F> & FieldEnum> FieldMask<F> of(Class<F> clazz, Collection<F> fields) {
+		FieldMask<F> mask = new FieldMask<>(clazz);
+		for (F field : fields)
+			mask.set(field.ordinal());
+		return mask;
+	}
+
+	/**
+	 * Constructs mask of given fields, in string form.
+	 * @param clazz field class
+	 * @param fields field names
+	 * @param <F> field type
+	 * @return mask of given fields
+	 * @throws IllegalArgumentException if any of given names is not a field of {@code clazz}
+	 */
+	public static <F extends Enum<F> & FieldEnum> FieldMask<F> parse(Class<F> clazz, String... fields) {
+		FieldEnumRegistry<F> registry = FieldEnumRegistry.of(clazz);
+		FieldMask<F> mask = new FieldMask<>(clazz);
+		for (String field : fields)
+			mask.set(registry.parse(field).ordinal());
+		return mask;
+	}
+
+	private FieldMask(Class<F> clazz) {
+		this.clazz = clazz;
+		registry = FieldEnumRegistry.of(clazz);
+		words = FieldBits.create(registry.size());
+	}
+
+	/**
+	 * @return field class of this mask
+	 */
+	public Class<F> getFieldsClass() {
+		return clazz;
+	}
+
+	/**
+	 * @param field field to check
+	 * @return {@code true} if mask contains given field
+	 */
+	public boolean contains(F field) {
+		return FieldBits.get(words, field.ordinal());
+	}
+
+	/**
+	 * Checks if all fields of this mask are contained in given set. Uses bitmask comparison for {@link FieldSet}, and
+	 * (non-allocating) {@link Set#contains} checks for any other set.
+	 * @param fields fields to check against
+	 * @return {@code true} if {@code fields} contain all fields of this mask
+	 */
+	public boolean isContainedIn(Set<F> fields) {
+		if (fields instanceof FieldSet)
+			return ((FieldSet<F>) fields).containsAll(this);
+		for (int i = FieldBits.nextSetBit(words, 0); i >= 0; i = FieldBits.nextSetBit(words, i + 1))
+			if (!fields.contains(registry.get(i)))
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return {@code true} if mask contains no fields
+	 */
+	public boolean isEmpty() {
+		return FieldBits.isEmpty(words);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof FieldMask))
+			return false;
+		FieldMask<?> other = (FieldMask<?>) o;
+		return clazz == other.clazz && Arrays.equals(words, other.words);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(clazz, Arrays.hashCode(words));
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = FieldBits.nextSetBit(words, 0); i >= 0; i = FieldBits.nextSetBit(words, i + 1)) {
+			if (sb.length() > 1)
+				sb.append(", ");
+			sb.append(registry.get(i));
+		}
+		return sb.append(']').toString();
+	}
+
+	private void set(int ordinal) {
+		FieldBits.set(words, ordinal);
+	}
+
+	/** <b>INTERNAL</b>: fields (see {@link FieldBits}) */
+	long[] words() { return words; }
+
+	private final Class<F> clazz;
+	private final FieldEnumRegistry<F> registry;
+	private final long[] words;		// fields (see FieldBits), never modified once mask is constructed
+
+}
@@ -0,0 +1,227 @@
+package com.parknav.common.fields;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Mutable {@link java.util.Set} of fields, stored as a bitmask (a single {@code long} word for field enums with up to
+ * 64 fields, see {@link FieldBits}), same as {@link java.util.EnumSet}, but sharing its representation with
+ * {@link FieldMask} so that {@link HasFields#hasFields(FieldMask)} boils down to a single AND/compare.</p>
+ *
+ * <p>Used by {@link FieldsObject} to hold initialized fields. Set can be {@link #freeze() frozen}, making it (and
+ * therefore object holding it, see {@link HasFields#freeze()}) read-only. Not thread-safe, unless frozen.</p>
+ *
+ * @param <F> Field enum
+ */
+public final class FieldSet<F extends Enum<F> & FieldEnum> extends AbstractSet<F> implements Cloneable {
+
+	/**
+	 * Constructs empty set of given field class.
+	 * @param clazz field class
+	 * @param <F> field type
+	 * @return empty set
+	 */
+	public static <F extends Enum<F> & FieldEnum> FieldSet<F> noneOf(Class<F> clazz) {
+		return new FieldSet<>(clazz);
+	}
+
+	/**
+	 * Constructs set of given field class, holding given fields.
+	 * @param clazz field class
+	 * @param fields fields to add
+	 * @param <F> field type
+	 * @return set holding {@code fields}
+	 */
+	public static <F extends Enum<F> & FieldEnum> FieldSet<F> of(Class<F> clazz, Collection<F> fields) {
+		FieldSet<F> set = new FieldSet<>(clazz);
+		set.addAll(fields);
+		return set;
+	}
+
+	private FieldSet(Class<F> clazz) {
+		this.clazz = clazz;
+		registry = FieldEnumRegistry.of(clazz);
+		words = FieldBits.create(registry.size());
+	}
+
+	/**
+	 * @return field class of this set
+	 */
+	public Class<F> getFieldsClass() {
+		return clazz;
+	}
+
+	/**
+	 * Makes this set read-only: any subsequent modification throws {@link UnsupportedOperationException}.
+	 * @return this
+	 */
+	public FieldSet<F> freeze() {
+		frozen = true;
+		return this;
+	}
+
+	/**
+	 * @return {@code true} if this set is read-only
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	/**
+	 * Checks if this set contains all fields of given mask (without iterating over fields).
+	 * @param mask mask to check
+	 * @return {@code true} if this set contains all fields of {@code mask}
+	 */
+	public boolean containsAll(FieldMask<F> mask) {
+		return FieldBits.containsAll(words, mask.words());
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return isField(o) && FieldBits.get(words, ((Enum<?>) o).ordinal());
+	}
+
+	@Override
+	public boolean add(F field) {
+		checkNotFrozen();
+		return FieldBits.set(words, clazz.cast(field).ordinal());
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		checkNotFrozen();
+		return isField(o) && FieldBits.clear(words, ((Enum<?>) o).ordinal());
+	}
+
+	@Override
+	public boolean containsAll(Collection<?> c) {
+		if (!(c instanceof FieldSet))
+			return super.containsAll(c);
+		FieldSet<?> other = (FieldSet<?>) c;
+		if (other.clazz != clazz)
+			return other.isEmpty();
+		return FieldBits.containsAll(words, other.words);
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends F> c) {
+		checkNotFrozen();
+		if (!(c instanceof FieldSet))
+			return super.addAll(c);
+		FieldSet<?> other = (FieldSet<?>) c;
+		if (other.clazz != clazz) {
+			if (other.isEmpty())
+				return false;
+			throw new ClassCastException(other.clazz + " != " + clazz);
+		}
+		return FieldBits.addAll(words, other.words);
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		checkNotFrozen();
+		if (!(c instanceof FieldSet))
+			return super.removeAll(c);
+		FieldSet<?> other = (FieldSet<?>) c;
+		if (other.clazz != clazz)
+			return false;
+		return FieldBits.removeAll(words, other.words);
+	}
+
+	@Override
+	public void clear() {
+		checkNotFrozen();
+		Arrays.fill(words, 0);
+	}
+
+	@Override
+	public int size() {
+		return FieldBits.cardinality(words);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return FieldBits.isEmpty(words);
+	}
+
+	@Override
+	public Iterator<F> iterator() {
+		return new Iterator<F>() {
+
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			@Override
+			public F next() {
+				if (next < 0)
+					throw new NoSuchElementException();
+				last = next;
+				next = FieldBits.nextSetBit(words, next + 1);
+				return registry.get(last);
+			}
+
+			@Override
+			public void remove() {
+				if (last < 0)
+					throw new IllegalStateException();
+				FieldSet.this.remove(registry.get(last));
+				last = -1;
+			}
+
+			private int next = FieldBits.nextSetBit(words, 0);
+			private int last = -1;
+
+		};
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof FieldSet))
+			return super.equals(o);
+		FieldSet<?> other = (FieldSet<?>) o;
+		if (other.clazz != clazz)
+			return isEmpty() && other.isEmpty();
+		return Arrays.equals(words, other.words);
+	}
+
+	@Override
+	public int hashCode() {
+		return super.hashCode();	// must match hash code of any other set holding the same fields
+	}
+
+	/**
+	 * @return (modifiable, even if this set is frozen) copy of this set
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public FieldSet<F> clone() {
+		try {
+			FieldSet<F> clone = (FieldSet<F>) super.clone();
+			clone.words = words.clone();
+			clone.frozen = false;
+			return clone;
+		} catch (CloneNotSupportedException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private void checkNotFrozen() {
+		if (frozen)
+			throw new UnsupportedOperationException("Fields are frozen (read-only)");
+	}
+
+	private boolean isField(Object o) {
+		return o instanceof Enum && ((Enum<?>) o).getDeclaringClass() == clazz;
+	}
+
+	private final Class<F> clazz;
+	private final FieldEnumRegistry<F> registry;
+	private long[] words;		// fields (see FieldBits)
+	private boolean frozen = false;
+
+}
@@ -1,14 +1,28 @@
 package com.parknav.common.fields;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 import java.util.function.Predicate;
+import java.util.function.ToIntBiFunction;
 
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Sets;
 
 import com.parknav.common.fields.service.FieldsService;
@@ -20,7 +34,21 @@ import com.parknav.common.fields.service.FieldsService;
  * 
  * <p>Entities will be stored incrementally, as additional fields are requested.</p>
  * 
- * <p>Thread-safe.</p>
+ * <p>Unbounded by default, but can be bounded (see {@link Builder}) by number of entities and/or their total weight,
+ * in which case least recently used entities are evicted first.</p>
+ *
+ * <p>Fields may also be configured (per field) to expire or to be refreshed after given time since they were written
+ * to cache. Expired fields are cleared from cached entity (rest of the entity stays cached), so that
+ * {@link #get(Object, FieldGraph, FieldsService)} re-fetches only them.</p>
+ *
+ * <p>Thread-safe. Cached entities are {@link HasFields#freeze() frozen} and never modified in place, but replaced (per
+ * entity, atomically) with modified copies, so readers never block and writers only contend on the same entity. Readers
+ * which don't modify retrieved entities can use {@link #getReadOnly(Object)} (and
+ * {@link #getReadOnly(Object, FieldGraph, FieldsService)}) to avoid copying altogether. Concurrent fetches of the
+ * same entity can be coalesced into one (see {@link Builder#singleFlight()}).</p>
+ *
+ * <p>Cache statistics (hits, misses, fetched fields, time spent loading...) can be recorded (see
+ * {@link Builder#recordStats()}) and retrieved via {@link #getStats()} or observed via {@link StatsListener}.</p>
 
  * @param <I> ID type
  * @param <C> concrete implementation of class implementing this {@code HasFields}
@@ -28,6 +56,362 @@ import com.parknav.common.fields.service.FieldsService;
  */
 public class FieldsEntityCache<I, C extends HasEntityFields<I, C, F>, F extends Enum<F> & FieldEnum> {
 
+	/** Builder for constructing (bounded) {@link FieldsEntityCache} */
+	public static class Builder<I, C extends HasEntityFields<I, C, F>, F extends Enum<F> & FieldEnum> {
+
+		/**
+		 * Constructs builder of cache which will incrementally cache requested entity fields.
+		 * @param entityClass class of cached entities
+		 * @param cacheableFields fields to cache
+		 * @param <I> ID type
+		 * @param <C> entity type
+		 * @param <F> field type
+		 * @return builder of unbounded cache
+		 */
+		public static <I, C extends HasEntityFields<I, C, F>, F extends Enum<F> & FieldEnum> Builder<I, C, F> of(Class<C> entityClass, Set<F> cacheableFields) {
+			return new Builder<>(cacheableFields);
+		}
+
+		private Builder(Set<F> cacheableFields) {
+			this.cacheableFields = cacheableFields;
+		}
+
+		/**
+		 * Sets fields to cache on initial fetch (see {@link FieldsEntityCache#FieldsEntityCache(Set, Set)}).
+		 * @param precachedFields fields to cache on initial fetch
+		 * @return this
+		 */
+		public Builder<I, C, F> precachedFields(Set<F> precachedFields) {
+			this.precachedFields = precachedFields;
+			return this;
+		}
+
+		/**
+		 * Limits number of cached entities.
+		 * @param maximumSize maximum number of cached entities
+		 * @return this
+		 */
+		public Builder<I, C, F> maximumSize(long maximumSize) {
+			if (maximumSize < 0)
+				throw new IllegalArgumentException("maximumSize is negative: " + maximumSize);
+			this.maximumSize = maximumSize;
+			return this;
+		}
+
+		/**
+		 * Limits total weight of cached entities. Weight of each entity is recalculated whenever it's modified (e.g. merged).
+		 * Can't be combined with {@link #maximumSize(long)}. Writes to weight-bounded cache are serialized (reads are
+		 * still non-blocking), so that weight is accounted for cache as a whole.
+		 * @param maximumWeight maximum total weight of cached entities
+		 * @param weigher calculates weight of each entity (see {@link Weigher#perField(int, ToIntBiFunction)})
+		 * @return this
+		 */
+		public Builder<I, C, F> maximumWeight(long maximumWeight, Weigher<? super C> weigher) {
+			if (maximumWeight < 0)
+				throw new IllegalArgumentException("maximumWeight is negative: " + maximumWeight);
+			this.maximumWeight = maximumWeight;
+			this.weigher = weigher;
+			return this;
+		}
+
+		/**
+		 * <p>Expires given field after given time since it was written to cache (i.e. since entity holding it was
+		 * {@link FieldsEntityCache#put put} or {@link FieldsEntityCache#merge merged}).</p>
+		 *
+		 * <p>Expired field is cleared from cached entity (via {@link HasFields#clearFields}), rest of entity stays cached.</p>
+		 *
+		 * @param field cacheable field to expire
+		 * @param duration time after which field expires
+		 * @param unit unit of {@code duration}
+		 * @return this
+		 */
+		public Builder<I, C, F> expireAfterWrite(F field, long duration, TimeUnit unit) {
+			expireAfterWrite.put(field, toNanos(duration, unit));
+			return this;
+		}
+
+		/**
+		 * <p>Refreshes given field after given time since it was written to cache.</p>
+		 *
+		 * <p>Field due for refresh is still returned by {@link FieldsEntityCache#get(Object, FieldGraph, FieldsService)},
+		 * but (if requested) it is also re-fetched (asynchronously, using {@link #refreshExecutor(Executor) refresh executor})
+		 * from service used in that call.</p>
+		 *
+		 * @param field cacheable field to refresh
+		 * @param duration time after which field is refreshed
+		 * @param unit unit of {@code duration}
+		 * @return this
+		 */
+		public Builder<I, C, F> refreshAfterWrite(F field, long duration, TimeUnit unit) {
+			refreshAfterWrite.put(field, toNanos(duration, unit));
+			return this;
+		}
+
+		/**
+		 * Sets executor used to refresh fields (see {@link #refreshAfterWrite(Enum, long, TimeUnit)}). Defaults to
+		 * {@link ForkJoinPool#commonPool()}.
+		 * @param refreshExecutor executor to refresh fields with
+		 * @return this
+		 */
+		public Builder<I, C, F> refreshExecutor(Executor refreshExecutor) {
+			this.refreshExecutor = refreshExecutor;
+			return this;
+		}
+
+		/**
+		 * Sets source of time used to expire and refresh fields. Defaults to {@link System#nanoTime()}.
+		 * @param nanoClock source of time (in nanoseconds, from arbitrary origin)
+		 * @return this
+		 */
+		public Builder<I, C, F> nanoClock(LongSupplier nanoClock) {
+			this.nanoClock = nanoClock;
+			return this;
+		}
+
+		/**
+		 * Sets listener notified whenever entity is removed (or replaced) from cache.
+		 * @param removalListener listener to notify
+		 * @return this
+		 */
+		public Builder<I, C, F> removalListener(RemovalListener<? super I, ? super C> removalListener) {
+			this.removalListener = removalListener;
+			return this;
+		}
+
+		/**
+		 * <p>Stores given field serialized (using given codec) outside of Java heap, in direct {@link ByteBuffer}s, so that
+		 * large (and rarely requested) field values don't burden garbage collector.</p>
+		 *
+		 * <p>Off-heap field is deserialized (into copy of cached entity) only when requested, and isn't visible to
+		 * {@link #index(String, Function) index key extractors}, {@link #maximumWeight weighers}, {@link #removalListener
+		 * removal listeners} or {@link FieldsEntityCache#clearMatching filters}. Retrieving cached entity as a whole (via
+		 * {@link FieldsEntityCache#get(Object)} or {@link FieldsEntityCache#getReadOnly(Object)}) deserializes all of its
+		 * off-heap fields. Requires entities to provide {@link HasFields#fieldAccessor() field accessor}.</p>
+		 *
+		 * <p>Off-heap memory is released once entry holding it is garbage-collected, so it's bounded only by
+		 * {@code -XX:MaxDirectMemorySize}.</p>
+		 *
+		 * @param field cacheable field to store off-heap
+		 * @param codec codec to (de)serialize field's values with
+		 * @return this
+		 */
+		public Builder<I, C, F> offHeap(F field, FieldCodec<?> codec) {
+			offHeap.put(field, codec);
+			return this;
+		}
+
+		/**
+		 * <p>Declares secondary index of cached entities, so that entities with given key can be cleared (see
+		 * {@link FieldsEntityCache#clearByIndex(String, Object, Set)}) without scanning whole cache (as
+		 * {@link FieldsEntityCache#clearMatching(Predicate, Set)} does).</p>
+		 *
+		 * <p>Key is extracted from each cached entity whenever it's stored (or modified) in cache, so extractor should be
+		 * fast. Entity may miss any of non-precached fields, in which case extractor should return {@code null} (such
+		 * entity isn't indexed).</p>
+		 *
+		 * <blockquote><pre>
+		 * Builder.of(Person.class, cacheableFields)
+		 * 	.index("boat", person -&gt; person.hasFields(Person.Field.boat) ? person.getBoat().getId() : null)
+		 * 	...
+		 * cache.clearByIndex("boat", boatId, EnumSet.of(Person.Field.boat));
+		 * </pre></blockquote>
+		 *
+		 * @param name name of index
+		 * @param keyExtractor extracts key from cached entity (returning {@code null} if entity shouldn't be indexed)
+		 * @return this
+		 */
+		public Builder<I, C, F> index(String name, Function<? super C, ?> keyExtractor) {
+			if (indexes.putIfAbsent(name, keyExtractor) != null)
+				throw new IllegalArgumentException("Duplicate index: " + name);
+			return this;
+		}
+
+		/**
+		 * <p>Enables single-flight mode, in which concurrent {@link FieldsEntityCache#get(Object, FieldGraph, FieldsService)
+		 * gets} of the same entity share one fetch of all fields they are missing (instead of each of them fetching them
+		 * from service), so that popular entity missing from cache doesn't multiply load on service.</p>
+		 *
+		 * <p>Callers arriving while fetch is in progress (and needing fields it doesn't fetch) queue another fetch, which
+		 * starts once the one in progress completes, fetching fields missing to all callers queued in the meantime.</p>
+		 *
+		 * @return this
+		 */
+		public Builder<I, C, F> singleFlight() {
+			this.singleFlight = true;
+			return this;
+		}
+
+		/**
+		 * Enables recording of cache statistics (see {@link FieldsEntityCache#getStats()}). Disabled by default, since it
+		 * adds (small) overhead to every cache access.
+		 * @return this
+		 */
+		public Builder<I, C, F> recordStats() {
+			this.recordStats = true;
+			return this;
+		}
+
+		/**
+		 * Sets listener notified of cache accesses and modifications (e.g. to export them as metrics). Implies
+		 * {@link #recordStats()}.
+		 * @param statsListener listener to notify
+		 * @return this
+		 */
+		public Builder<I, C, F> statsListener(StatsListener<? super I> statsListener) {
+			this.statsListener = statsListener;
+			this.recordStats = true;
+			return this;
+		}
+
+		/**
+		 * @return new cache
+		 */
+		public FieldsEntityCache<I, C, F> build() {
+			if (maximumSize >= 0 && weigher != null)
+				throw new IllegalStateException("maximumSize can't be combined with maximumWeight");
+			return new FieldsEntityCache<>(this);
+		}
+
+		private static long toNanos(long duration, TimeUnit unit) {
+			if (duration <= 0)
+				throw new IllegalArgumentException("duration must be positive: " + duration);
+			return unit.toNanos(duration);
+		}
+
+		private final Set<F> cacheableFields;
+		private Set<F> precachedFields = null;
+		private long maximumSize = -1;				// unlimited
+		private long maximumWeight = -1;			// unlimited
+		private Weigher<? super C> weigher = null;
+		private RemovalListener<? super I, ? super C> removalListener = null;
+		private final Map<String, Function<? super C, ?>> indexes = new LinkedHashMap<>();
+		private final Map<F, FieldCodec<?>> offHeap = new HashMap<>();
+		private boolean singleFlight = false;
+		private boolean recordStats = false;
+		private StatsListener<? super I> statsListener = null;
+		private final Map<F, Long> expireAfterWrite = new HashMap<>();		// nanos by field
+		private final Map<F, Long> refreshAfterWrite = new HashMap<>();		// nanos by field
+		private Executor refreshExecutor = ForkJoinPool.commonPool();
+		private LongSupplier nanoClock = System::nanoTime;
+
+	}
+
+	/**
+	 * Calculates weight of cached entity (used to bound cache by total weight).
+	 * @param <C> entity type
+	 */
+	@FunctionalInterface
+	public interface Weigher<C> {
+
+		/**
+		 * Constructs weigher that sums weights of entity's (cached) fields.
+		 * @param baseWeight weight of entity without fields
+		 * @param fieldWeigher calculates weight of given field's value of given entity (called only for initialized fields)
+		 * @param <C> entity type
+		 * @param <F> field type
+		 * @return weigher summing {@code baseWeight} and weights of all initialized fields
+		 */
+		static <C extends HasFields<C, F>, F extends Enum<F> & FieldEnum> Weigher<C> perField(int baseWeight, ToIntBiFunction<? super C, F> fieldWeigher) {
+			return entity -> {
+				int weight = baseWeight;
+				for (F field : entity.getFields())
+					weight += fieldWeigher.applyAsInt(entity, field);
+				return weight;
+			};
+		}
+
+		/**
+		 * @param entity entity to weigh
+		 * @return (non-negative) weight of {@code entity}
+		 */
+		int weigh(C entity);
+
+	}
+
+	/** Reason why entity was removed from cache */
+	public enum RemovalCause {
+
+		/** Removed explicitly (e.g. via {@link FieldsEntityCache#clear(Object)}) */
+		EXPLICIT,
+		/** Replaced by modified copy (e.g. via {@link FieldsEntityCache#merge(HasEntityFields)}) */
+		REPLACED,
+		/** Evicted because cache exceeded its maximum size or weight */
+		SIZE;
+
+		/** @return {@code true} if entity was evicted (rather than removed or replaced by cache's user) */
+		public boolean wasEvicted() { return this == SIZE; }
+
+	}
+
+	/**
+	 * Listener notified whenever entity is removed from cache. Notified synchronously (by thread which modified cache),
+	 * so it should be fast.
+	 * @param <I> ID type
+	 * @param <C> entity type
+	 */
+	@FunctionalInterface
+	public interface RemovalListener<I, C> {
+
+		/**
+		 * @param id ID of removed entity
+		 * @param entity removed entity (<b>not</b> a copy, so it must not be modified)
+		 * @param cause reason for removal
+		 */
+		void onRemoval(I id, C entity, RemovalCause cause);
+
+	}
+
+	/**
+	 * <p>Listener notified of cache accesses and modifications (see {@link Builder#statsListener(StatsListener)}), all
+	 * methods do nothing by default.</p>
+	 *
+	 * <p>Notified synchronously (by thread which accessed or modified cache), so it should be fast.</p>
+	 *
+	 * @param <I> ID type
+	 */
+	public interface StatsListener<I> {
+
+		/**
+		 * Requested entity was found in cache, holding all requested fields.
+		 * @param id entity's ID
+		 */
+		default void onHit(I id) { }
+
+		/**
+		 * Requested entity was found in cache, but some of requested fields had to be fetched.
+		 * @param id entity's ID
+		 * @param loadTime time (in nanoseconds) spent fetching missing fields
+		 */
+		default void onPartialHit(I id, long loadTime) { }
+
+		/**
+		 * Requested entity wasn't found in cache.
+		 * @param id entity's ID
+		 * @param loadTime time (in nanoseconds) spent fetching entity ({@code 0} if it wasn't fetched)
+		 */
+		default void onMiss(I id, long loadTime) { }
+
+		/**
+		 * Entity was stored (put or merged) to cache.
+		 * @param id entity's ID
+		 * @param writeTime time (in nanoseconds) spent (atomically) updating cached entity
+		 */
+		default void onMerge(I id, long writeTime) { }
+
+		/**
+		 * Entity (or some of its fields) was cleared from cache.
+		 * @param id entity's ID
+		 */
+		default void onClear(I id) { }
+
+		/**
+		 * Entity was evicted from cache due to its size (or weight) limit.
+		 * @param id entity's ID
+		 */
+		default void onEviction(I id) { }
+
+	}
+
 	/**
 	 * Constructs cache which will incrementally cache requested entity fields.
 	 *
@@ -53,19 +437,82 @@ public class FieldsEntityCache<I, C extends HasEntityFields<I, C, F>, F extends
 	 *
 	 * @param precachedFields fields to cache on initial fetch
 	 */
-	@SuppressWarnings("unchecked")
 	public FieldsEntityCache(Set<F> cacheableFields, Set<F> precachedFields) {
+		this(new Builder<I, C, F>(cacheableFields).precachedFields(precachedFields));
+	}
+
+	@SuppressWarnings("unchecked")
+	private FieldsEntityCache(Builder<I, C, F> builder) {
+
+		Set<F> cacheableFields = builder.cacheableFields;
+		Set<F> precachedFields = builder.precachedFields;
 
 		if (cacheableFields.isEmpty())
 			throw new IllegalArgumentException("cacheableFields is empty");
 
+		Class<F> fieldsClass = cacheableFields.iterator().next().getDeclaringClass();
+
 		if (precachedFields == null)
-			precachedFields = EnumSet.noneOf((Class<F>) cacheableFields.iterator().next().getClass());
+			precachedFields = EnumSet.noneOf(fieldsClass);
 		else if (!cacheableFields.containsAll(precachedFields))
 			throw new IllegalArgumentException("precachedFields not present in cacheableFields: " + Sets.difference(precachedFields, cacheableFields));
 
+		if (!cacheableFields.containsAll(builder.expireAfterWrite.keySet()))
+			throw new IllegalArgumentException("expiring fields not present in cacheableFields: " + Sets.difference(builder.expireAfterWrite.keySet(), cacheableFields));
+		if (!cacheableFields.containsAll(builder.refreshAfterWrite.keySet()))
+			throw new IllegalArgumentException("refreshing fields not present in cacheableFields: " + Sets.difference(builder.refreshAfterWrite.keySet(), cacheableFields));
+		if (!cacheableFields.containsAll(builder.offHeap.keySet()))
+			throw new IllegalArgumentException("off-heap fields not present in cacheableFields: " + Sets.difference(builder.offHeap.keySet(), cacheableFields));
+
 		this.cacheableFields = cacheableFields;
 		this.precachedFields = precachedFields;
+		expireAfterWrite = toNanosByOrdinal(fieldsClass, builder.expireAfterWrite);
+		refreshAfterWrite = toNanosByOrdinal(fieldsClass, builder.refreshAfterWrite);
+		refreshExecutor = builder.refreshExecutor;
+		nanoClock = builder.nanoClock;
+		offHeap = builder.offHeap.isEmpty() ? null : new FieldsEntityCacheOffHeap<>(fieldsClass, builder.offHeap);
+		Map<String, FieldsEntityCacheIndex<I, C>> indexes = new LinkedHashMap<>();
+		builder.indexes.forEach((name, keyExtractor) -> indexes.put(name, new FieldsEntityCacheIndex<>(keyExtractor)));
+		this.indexes = indexes.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(indexes);
+		flights = builder.singleFlight ? new FieldsEntityCacheFlights<>() : null;
+		stats = builder.recordStats ? new FieldsEntityCacheStatsCounter<>(fieldsClass, cacheableFields, builder.statsListener) : null;
+
+		if (builder.maximumSize < 0 && builder.weigher == null && builder.removalListener == null) {
+			cache = new ConcurrentHashMap<>();
+			return;
+		}
+
+		// cache is split into (independently locked and bounded) segments, but with weights of single entities varying
+		// widely, heavy entities wouldn't fit into any (small) segment
+		CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder()
+			.concurrencyLevel(builder.weigher == null ? Runtime.getRuntime().availableProcessors() : 1);
+
+		if (builder.maximumSize >= 0)
+			cacheBuilder.maximumSize(builder.maximumSize);
+
+		if (builder.weigher != null) {
+			Weigher<? super C> weigher = builder.weigher;
+			cacheBuilder.maximumWeight(builder.maximumWeight).weigher((id, entry) -> weigher.weigh(((FieldsEntityCacheEntry<C>) entry).entity));
+		}
+
+		RemovalListener<? super I, ? super C> removalListener = builder.removalListener;
+
+		cache = cacheBuilder.<I, FieldsEntityCacheEntry<C>>removalListener(notification -> {
+			RemovalCause cause;
+			switch (notification.getCause()) {
+				case EXPLICIT:	cause = RemovalCause.EXPLICIT;	break;
+				case REPLACED:	cause = RemovalCause.REPLACED;	break;
+				default:		cause = RemovalCause.SIZE;		break;
+			}
+			if (cause.wasEvicted()) {
+				evictions.increment();
+				reindex(notification.getKey(), notification.getValue(), null);
+				if (stats != null)
+					stats.recordEviction(notification.getKey());
+			}
+			if (removalListener != null)
+				removalListener.onRemoval(notification.getKey(), notification.getValue().entity, cause);
+		}).build().asMap();
 
 	}
 
@@ -100,29 +547,24 @@ public class FieldsEntityCache<I, C extends HasEntityFields<I, C, F>, F extends
 	 */
 	public C get(I id, FieldGraph<F> graph, FieldsService<I, C, F> service) {
 
-		C entity = get(id);
-
-		// refresh cache for sure if we didn't had entity cached at all
-		boolean refreshCache = entity == null;
-
+		FieldsEntityCacheEntry<C> entry = getEntry(id);
 		FieldGraph<F> extendedGraph = FieldGraph.Builder.of(graph).add(precachedFields).build();
 
+		C entity = entry != null ? materialize(entry, extendedGraph) : null;	// clone stored value for safe future modifications
+
 		if (entity == null) {
 			// we don't have this entity cached, delegate to service
-			entity = service.get(id, extendedGraph);
+			long start = stats != null ? nanoClock.getAsLong() : 0;
+			entity = fetch(id, extendedGraph, service);
+			if (stats != null)
+				stats.recordMiss(id, graph, entity, nanoClock.getAsLong() - start);
 			if (entity == null)
 				return null;    // entity doesn't exist
 		} else {
 			// we found (something) stored
-			Set<F> cachedFields = entity.getFields().isEmpty() ? EnumSet.noneOf(entity.getFieldsClass()) : EnumSet.copyOf(entity.getFields());
-			entity.extend(extendedGraph, service);
-			// refresh cache if we now (after extend) have more cacheable fields than was present in cache
-			refreshCache = !cachedFields.containsAll(Sets.intersection(entity.getFields(), cacheableFields));
+			extendCached(id, entry, entity, graph, extendedGraph, missingGraph -> fetch(id, missingGraph, service), service, 0);
 		}
 
-		if (refreshCache)
-			merge(entity);
-			
 		// strip to only fields caller requested
 		entity.intersect(graph);
 
@@ -130,6 +572,144 @@ public class FieldsEntityCache<I, C extends HasEntityFields<I, C, F>, F extends
 		
 	}
 
+	/**
+	 * <p>Returns entities using any stored data that may be available, same as {@link #get(Object, FieldGraph, FieldsService)},
+	 * but fetching missing entities and fields in bulk (see {@link FieldsService#getAll(Collection, FieldGraph)}).</p>
+	 * <p>Entities which aren't cached are fetched using a single call, and cached entities which miss some of requested
+	 * fields are grouped by missing fields and fetched using a single call per group.</p>
+	 *
+	 * @param ids IDs of entities to retrieve
+	 * @param graph fields to retrieve
+	 * @param service {@link FieldsService} implementation to use when ID is not found in cache (or some fields are missing)
+	 *
+	 * @return entities by their IDs (in order of {@code ids}) with (sub)fields initialized as specified by {@code graph},
+	 * without entities which don't exist
+	 */
+	public Map<I, C> getAll(Collection<I> ids, FieldGraph<F> graph, FieldsService<I, C, F> service) {
+
+		FieldGraph<F> extendedGraph = FieldGraph.Builder.of(graph).add(precachedFields).build();
+
+		Map<I, C> entities = new LinkedHashMap<>();		// in order of ids (null for entities which aren't cached)
+		List<I> missingIds = new ArrayList<>();
+		Map<FieldGraph<F>, Map<I, FieldsEntityCacheEntry<C>>> partialEntries = new HashMap<>();		// cached entries, by fields they miss
+
+		for (I id : ids) {
+
+			if (entities.containsKey(id))
+				continue;
+
+			FieldsEntityCacheEntry<C> entry = getEntry(id);
+
+			if (entry == null) {
+				entities.put(id, null);
+				missingIds.add(id);
+				continue;
+			}
+
+			C entity = materialize(entry, extendedGraph);	// clone stored value for safe future modifications
+			entities.put(id, entity);
+
+			FieldGraph<F> missingGraph = entity.getMissingGraph(extendedGraph);
+
+			if (missingGraph.isEmpty())
+				extendCached(id, entry, entity, graph, extendedGraph, null, service, 0);	// nothing to fetch
+			else
+				partialEntries.computeIfAbsent(missingGraph, key -> new LinkedHashMap<>()).put(id, entry);
+
+		}
+
+		if (!missingIds.isEmpty()) {
+			// we don't have these entities cached, delegate to service
+			long start = stats != null ? nanoClock.getAsLong() : 0;
+			Map<I, C> fetched = service.getAll(missingIds, extendedGraph);
+			long loadTime = stats != null ? (nanoClock.getAsLong() - start) / missingIds.size() : 0;
+			for (I id : missingIds) {
+				C entity = fetched.get(id);
+				if (stats != null)
+					stats.recordMiss(id, graph, entity, loadTime);
+				if (entity == null) {
+					entities.remove(id);	// entity doesn't exist
+					continue;
+				}
+				entities.put(id, entity);
+				merge(entity);
+			}
+		}
+
+		partialEntries.forEach((missingGraph, entries) -> {
+			long start = stats != null ? nanoClock.getAsLong() : 0;
+			Map<I, C> fetched = service.getAll(entries.keySet(), missingGraph);
+			long loadTime = stats != null ? (nanoClock.getAsLong() - start) / entries.size() : 0;
+			fetched.values().forEach(this::merge);
+			entries.forEach((id, entry) -> {
+				if (fetched.get(id) == null) {
+					// entity was cached, but doesn't exist anymore
+					entities.remove(id);
+					clear(id);
+					if (stats != null)
+						stats.recordMiss(id, graph, null, loadTime);
+					return;
+				}
+				extendCached(id, entry, entities.get(id), graph, extendedGraph, missing -> fetched.get(id), service, loadTime);
+			});
+		});
+
+		// strip to only fields caller requested
+		entities.values().forEach(entity -> entity.intersect(graph));
+
+		return entities;
+
+	}
+
+	/**
+	 * <p>Returns entity using any stored data that may be available, same as {@link #get(Object, FieldGraph, FieldsService)},
+	 * but without copying cached entity if it already holds all requested fields.</p>
+	 * <p>Entity is {@link HasFields#freeze() frozen} (read-only, use {@link HasFields#mutable()} to modify it), and
+	 * may hold more fields than requested.</p>
+	 *
+	 * @param id ID of entity to retrieve
+	 * @param graph fields to retrieve
+	 * @param service {@link FieldsService} implementation to use when ID is not found in cache (or some fields are missing)
+	 *
+	 * @return (frozen) entity with (at least) (sub)fields initialized as specified by {@code graph} or {@code null} if entity doesn't exist
+	 */
+	public C getReadOnly(I id, FieldGraph<F> graph, FieldsService<I, C, F> service) {
+
+		FieldsEntityCacheEntry<C> entry = getEntry(id);
+
+		if (entry == null || !entry.entity.hasGraph(graph) || !entry.entity.getFields().containsAll(precachedFields)) {
+			C entity = get(id, graph, service);
+			return entity != null ? entity.freeze() : null;
+		}
+
+		if (stats != null)
+			stats.recordHit(id, graph, entry.entity.getFields(), null, 0);
+
+		if (refreshAfterWrite != null)
+			refresh(id, entry, graph, service);
+
+		return entry.entity;
+
+	}
+
+	/**
+	 * <p>Returns cached entity, returning {@code null} if entity doesn't exist in cache.</p>
+	 * <p>Entity is shared (cached) value, {@link HasFields#freeze() frozen} so it can't be modified (use
+	 * {@link HasFields#mutable()} to obtain modifiable copy).</p>
+	 *
+	 * @param id ID of entity to retrieve
+	 *
+	 * @return (frozen) entity with cached fields initialized or {@code null} if entity isn't cached
+	 */
+	public C getReadOnly(I id) {
+		FieldsEntityCacheEntry<C> entry = getEntry(id);
+		if (stats != null)
+			stats.recordLookup(id, entry != null);
+		if (entry == null)
+			return null;
+		return entry.serialized == null ? entry.entity : materialize(entry, null).freeze();
+	}
+
 	/**
 	 * <p>Returns cached entity, returning {@code null} if entity doesn't exist in cache.</p>
 	 * <p>Entity represents <u>copy</u> of cached value, so it's safe to further modify it.</p>
@@ -139,15 +719,10 @@ public class FieldsEntityCache<I, C extends HasEntityFields<I, C, F>, F extends
 	 * @return entity with cached fields initialized or {@code null} if entity isn't cached
 	 */
 	public C get(I id) {
-		lock.readLock().lock();
-		try {
-			C entity = cache.get(id);
-			if (entity != null)
-				entity = entity.cloneAll();	// clone stored value for safe future modifications
-			return entity;
-		} finally {
-			lock.readLock().unlock();
-		}
+		FieldsEntityCacheEntry<C> entry = getEntry(id);
+		if (stats != null)
+			stats.recordLookup(id, entry != null);
+		return entry != null ? materialize(entry, null) : null;	// clone stored value for safe future modifications
 	}
 
 	/**
@@ -163,13 +738,18 @@ public class FieldsEntityCache<I, C extends HasEntityFields<I, C, F>, F extends
 		if (entityToCache.getFields().isEmpty())
 			return;	// nothing to cache
 		
-		lock.writeLock().lock();
-		try {
-			cache.put(entityToCache.getId(), entityToCache);
-		} finally {
-			lock.writeLock().unlock();
-		}
-		
+		long start = stats != null ? nanoClock.getAsLong() : 0;
+
+		FieldsEntityCacheEntry<C> entry = newEntry(entityToCache, null, nanoTime());
+		cache.compute(entityToCache.getId(), (id, previous) -> {
+			reindex(id, previous, entry);	// atomically with replacement, see reindex
+			return entry;
+		});
+		changed(entityToCache.getId());
+
+		if (stats != null)
+			stats.recordMerge(entityToCache.getId(), nanoClock.getAsLong() - start);
+
 	}
 
 	/**
@@ -178,48 +758,86 @@ public class FieldsEntityCache<I, C extends HasEntityFields<I, C, F>, F extends
 	 * @param entity entity to store
 	 */
 	public void merge(C entity) {
+		merge(entity, entity.getFields(), true);
+	}
 
-		C entityToCache = toCacheableEntity(entity);
+	/**
+	 * Stores given fields of given entity in cache, merging them with any previously cached value if it existed.
+	 *
+	 * @param entity entity to store
+	 * @param fields fields of {@code entity} to store
+	 * @param track whether to track the change (see {@link #trackChanges()})
+	 */
+	private void merge(C entity, Set<F> fields, boolean track) {
+
+		C entityToCache = toCacheableEntity(entity, fields);
 
 		if (entityToCache.getFields().isEmpty())
 			return;	// nothing to cache
-		
-		lock.readLock().lock();
-		
-		try {
-		
-			C cached = cache.get(entityToCache.getId());
-			
-			lock.readLock().unlock();
-			lock.writeLock().lock();
-			
-			try {
-
-				if (cached == null)
-					cache.put(entityToCache.getId(), entityToCache);
-				else
-					cached.pull(entityToCache);
-
-				lock.readLock().lock();
-				
-			} finally {
-				lock.writeLock().unlock();
+
+		long now = nanoTime();
+		long start = stats != null ? nanoClock.getAsLong() : 0;
+
+		FieldsEntityCacheEntry<C> entry = newEntry(entityToCache, null, now);
+
+		cache.compute(entityToCache.getId(), (id, cached) -> {
+			if (cached == null) {
+				reindex(id, null, entry);	// atomically with insertion, see reindex
+				return entry;
 			}
+			C merged = shallowCopy(cached.entity);	// copy-on-write, since readers may be using cached value
+			merged.pull(entry.entity);	// copies only pulled fields
+			FieldsEntityCacheEntry<C> mergedEntry = newEntry(merged, cached, FieldsEntityCacheOffHeap.overlay(cached.serialized, entry.serialized), fieldsOf(entry), now);
+			reindex(id, cached, mergedEntry);
+			return mergedEntry;
+		});
 
-		} finally {
-			lock.readLock().unlock();
-		}
+		if (track)
+			changed(entityToCache.getId());
+
+		if (stats != null)
+			stats.recordMerge(entityToCache.getId(), nanoClock.getAsLong() - start);
+
+	}
+
+	/**
+	 * @return (approximate) number of cached entities
+	 */
+	public int size() {
+		return cache.size();
+	}
+
+	/**
+	 * @return number of entities evicted from cache due to its size (or weight) limit
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Returns snapshot of cache statistics. Unless enabled via {@link Builder#recordStats()}, all counters except
+	 * {@link FieldsEntityCacheStats#getEvictionCount() evictions} are {@code 0}.
+	 *
+	 * @return current statistics
+	 */
+	public FieldsEntityCacheStats<F> getStats() {
+
+		Class<F> fieldsClass = cacheableFields.iterator().next().getDeclaringClass();
+		int size = FieldEnumRegistry.of(fieldsClass).size();
+
+		if (stats == null)
+			return new FieldsEntityCacheStats<>(fieldsClass, 0, 0, 0, 0, 0, 0, 0, 0, evictions.sum(), 0, new long[size], new long[size]);
+
+		return stats.snapshot(evictions.sum());
 
 	}
 
 	/** Removes all cached entities. */
 	public void clear() {
-		lock.writeLock().lock();
-		try {
+		if (stats == null && indexes.isEmpty() && changes == null)
 			cache.clear();
-		} finally {
-			lock.writeLock().unlock();
-		}
+		else
+			cache.keySet().forEach(this::clear);	// to record (unindex and track) each cleared entity
 	}
 
 	/**
@@ -237,12 +855,7 @@ public class FieldsEntityCache<I, C extends HasEntityFields<I, C, F>, F extends
 	 * @param id entity's ID
 	 */
 	public void clear(I id) {
-		lock.writeLock().lock();
-		try {
-			cache.remove(id);
-		} finally {
-			lock.writeLock().unlock();
-		}
+		clear(id, null, null);
 	}
 
 	/**
@@ -262,53 +875,68 @@ public class FieldsEntityCache<I, C extends HasEntityFields<I, C, F>, F extends
 	 * @param fields fields to clear
 	 */
 	public void clear(I id, Set<F> fields) {
-		lock.readLock().lock();
-		try {
-			C cached = cache.get(id);
-			if (cached == null)
-				return;
-			lock.readLock().unlock();
-			lock.writeLock().lock();
-			try {
-				cached.clearFields(fields);
-				lock.readLock().lock();
-			} finally {
-				lock.writeLock().unlock();
-			}
-		} finally {
-			lock.readLock().unlock();
-		}
+		clear(id, fields, null);
 	}
 
 	/**
-	 * Removes from cache entities matched by given filter.
+	 * Removes from cache entities matched by given filter. Scans all cached entities, so if entities are matched by
+	 * some key (e.g. by value of one of their fields), consider {@link #clearByIndex(String, Object) indexing} them by it.
 	 *
 	 * @param filter filter to select entities to clear
 	 */
 	public void clearMatching(Predicate<C> filter) {
-		lock.writeLock().lock();
-		try {
-			cache.values().removeIf(filter);
-		} finally {
-			lock.writeLock().unlock();
-		}
+		cache.keySet().forEach(id -> clear(id, null, filter));
 	}
 
 	/**
-	 * Clears requested fields from entities matched by given filter.
+	 * Clears requested fields from entities matched by given filter. Scans all cached entities, so if entities are
+	 * matched by some key (e.g. by value of one of their fields), consider {@link #clearByIndex(String, Object, Set) indexing}
+	 * them by it.
 	 *
 	 * @param filter filter to select entities which fields should be cleared
 	 * @param fields fields to clear
 	 */
 	public void clearMatching(Predicate<C> filter, Set<F> fields) {
-		lock.writeLock().lock();
-		try {
-			for (C cached : cache.values())
-				if (!Sets.intersection(cached.getFields(), fields).isEmpty() && filter.test(cached))
-					cached.clearFields(fields);
-		} finally {
-			lock.writeLock().unlock();
-		}
+		cache.keySet().forEach(id -> clear(id, fields, filter));
+	}
+
+	/**
+	 * Removes from cache entities with given key in given index (see {@link Builder#index(String, Function)}). Visits
+	 * only matching entities, so its cost doesn't depend on number of cached entities.
+	 *
+	 * @param index name of index
+	 * @param key key of entities to remove
+	 *
+	 * @throws IllegalArgumentException if there is no such index
+	 */
+	public void clearByIndex(String index, Object key) {
+		clearByIndex(index, key, null);
+	}
+
+	/**
+	 * Clears requested fields from entities with given key in given index (see {@link Builder#index(String, Function)}).
+	 * Visits only matching entities, so its cost doesn't depend on number of cached entities.
+	 *
+	 * @param index name of index
+	 * @param key key of entities whose fields to clear
+	 * @param fields fields to clear ({@code null} to remove entities altogether)
+	 *
+	 * @throws IllegalArgumentException if there is no such index
+	 */
+	public void clearByIndex(String index, Object key, Set<F> fields) {
+
+		FieldsEntityCacheIndex<I, C> keyIndex = indexes.get(index);
+
+		if (keyIndex == null)
+			throw new IllegalArgumentException("Unknown index: " + index);
+
+		keyIndex.get(key).forEach((indexed, id) -> {
+			// cached entry may have been modified in the meantime, so match it by key once again
+			clear(id, fields, entity -> key.equals(keyIndex.key(entity)));
+			if (cache.get(id) != indexed)
+				keyIndex.remove(key, indexed);	// entry is not cached anymore (unless it's being concurrently unindexed)
+		});
+
 	}
 
 	/**
@@ -317,12 +945,8 @@ public class FieldsEntityCache<I, C extends HasEntityFields<I, C, F>, F extends
 	 * @param entities entities to remove from cache
 	 */
 	public void clearEntities(Collection<C> entities) {
-		lock.writeLock().lock();
-		try {
-			cache.values().removeAll(entities);
-		} finally {
-			lock.writeLock().unlock();
-		}
+		for (C entity : entities)
+			clear(entity.getId());
 	}
 
 	/**
@@ -341,12 +965,7 @@ public class FieldsEntityCache<I, C extends HasEntityFields<I, C, F>, F extends
 	 * @param ids IDs of entities to remove from cache
 	 */
 	public void clearAll(Collection<I> ids) {
-		lock.writeLock().lock();
-		try {
-			cache.keySet().removeAll(ids);
-		} finally {
-			lock.writeLock().unlock();
-		}
+		ids.forEach(this::clear);
 	}
 
 	/**
@@ -359,6 +978,218 @@ public class FieldsEntityCache<I, C extends HasEntityFields<I, C, F>, F extends
 		ids.forEach(id -> clear(id, fields));
 	}
 
+	/**
+	 * Starts tracking IDs of changed (stored, modified or removed, but not evicted) entities, for
+	 * {@link FieldsEntityCacheSnapshot#checkpoint()}. All currently cached entities count as changed.
+	 *
+	 * @return (concurrent) map to which IDs of changed entities are put (with {@code true} if their last change was
+	 * explicit removal), until they are removed from it
+	 *
+	 * @throws IllegalStateException if changes are already tracked
+	 */
+	synchronized ConcurrentMap<I, Boolean> trackChanges() {
+		if (changes != null)
+			throw new IllegalStateException("Changes are already tracked");
+		ConcurrentMap<I, Boolean> changes = new ConcurrentHashMap<>();
+		this.changes = changes;
+		cache.keySet().forEach(id -> changes.putIfAbsent(id, false));	// after publishing map, so that no concurrent change gets lost
+		return changes;
+	}
+
+	/**
+	 * @return (live) IDs of cached entities
+	 */
+	Set<I> ids() {
+		return Collections.unmodifiableSet(cache.keySet());
+	}
+
+	/**
+	 * @param index name of index
+	 * @return number of entries held by given index
+	 */
+	int indexSize(String index) {
+		return indexes.get(index).size();
+	}
+
+	/**
+	 * Returns cached entity (including its off-heap fields), without recording the lookup in stats.
+	 *
+	 * @param id ID of entity to retrieve
+	 *
+	 * @return (frozen) entity with cached fields initialized or {@code null} if entity isn't cached
+	 */
+	C peek(I id) {
+		FieldsEntityCacheEntry<C> entry = getEntry(id);
+		if (entry == null)
+			return null;
+		return entry.serialized == null ? entry.entity : materialize(entry, null).freeze();
+	}
+
+	/**
+	 * Merges entity restored from {@link FieldsEntityCacheSnapshot snapshot}, without tracking it as changed.
+	 *
+	 * @param entity entity to store
+	 */
+	void restore(C entity) {
+		merge(entity, entity.getFields(), false);
+	}
+
+	/**
+	 * Tracks change of cached entity, if changes are tracked (see {@link #trackChanges()}).
+	 */
+	private void changed(I id) {
+		changed(id, false);
+	}
+
+	/**
+	 * Tracks change (or explicit removal) of cached entity, if changes are tracked (see {@link #trackChanges()}).
+	 */
+	private void changed(I id, boolean removed) {
+		ConcurrentMap<I, Boolean> changes = this.changes;
+		if (changes != null)
+			changes.put(id, removed);
+	}
+
+	/**
+	 * <p>Fetches entity from service, storing it to cache.</p>
+	 *
+	 * <p>In single-flight mode (see {@link Builder#singleFlight()}), concurrent fetches of the same entity are coalesced:
+	 * callers join a pending fetch (extending its graph), or wait for fetch in progress if it fetches all fields they
+	 * need. Otherwise, they queue new fetch, which starts once fetch in progress completes.</p>
+	 *
+	 * @param id entity's ID
+	 * @param graph fields to fetch
+	 * @param service service to fetch entity from
+	 *
+	 * @return (modifiable) entity holding (at least) requested fields or {@code null} if entity doesn't exist
+	 */
+	private C fetch(I id, FieldGraph<F> graph, FieldsService<I, C, F> service) {
+
+		Function<FieldGraph<F>, C> fetcher = fetchedGraph -> {
+			C entity = service.get(id, fetchedGraph);
+			if (entity != null)
+				merge(entity);
+			return entity;
+		};
+
+		return flights != null ? flights.fetch(id, graph, fetcher) : fetcher.apply(graph);
+
+	}
+
+	/**
+	 * Extends (copy of) cached entity to hold requested fields (resolver is expected to store fetched fields to cache).
+	 *
+	 * @param id entity's ID
+	 * @param entry cached entry
+	 * @param entity (modifiable) copy of cached entity
+	 * @param graph requested fields
+	 * @param extendedGraph requested and precached fields
+	 * @param resolver resolves entity holding (at least) given missing fields
+	 * @param service service to refresh fields from
+	 * @param loadTime time already spent fetching missing fields (in bulk)
+	 */
+	private void extendCached(I id, FieldsEntityCacheEntry<C> entry, C entity, FieldGraph<F> graph, FieldGraph<F> extendedGraph, Function<FieldGraph<F>, C> resolver, FieldsService<I, C, F> service, long loadTime) {
+
+		if (stats == null) {
+			entity.extend(extendedGraph, resolver);
+		} else {
+			Set<F> cachedFields = entity.getFields().isEmpty() ? EnumSet.noneOf(entity.getFieldsClass()) : EnumSet.copyOf(entity.getFields());
+			long start = nanoClock.getAsLong();
+			boolean extended = entity.extend(extendedGraph, resolver);
+			Set<F> fetchedFields = Sets.difference(Sets.intersection(entity.getFields(), cacheableFields), cachedFields);
+			stats.recordHit(id, graph, cachedFields, extended ? fetchedFields : null, extended ? loadTime + nanoClock.getAsLong() - start : 0);
+		}
+
+		if (refreshAfterWrite != null)
+			refresh(id, entry, graph, service);
+
+	}
+
+	/**
+	 * Removes cached entry or clears given fields from it, if it's matched by given filter.
+	 *
+	 * @param id entity's ID
+	 * @param fields fields to clear ({@code null} to remove entry altogether)
+	 * @param filter filter to select entity ({@code null} to select any entity)
+	 */
+	private void clear(I id, Set<F> fields, Predicate<C> filter) {
+
+		if (fields == null && filter == null) {
+			FieldsEntityCacheEntry<C> removed = cache.remove(id);
+			if (removed != null) {
+				reindex(id, removed, null);
+				changed(id, true);
+				if (stats != null)
+					stats.recordClear(id);
+			}
+			return;
+		}
+
+		while (true) {
+			FieldsEntityCacheEntry<C> cached = cache.get(id);
+			if (cached == null)
+				return;
+			FieldsEntityCacheEntry<C> cleared = fields != null ? withoutFields(cached, fields) : null;
+			if (cleared == cached || filter != null && !filter.test(cached.entity))
+				return;	// nothing to clear
+			// unless it was (concurrently) modified in the meantime
+			if (cleared != null ? replace(id, cached, cleared) : cache.remove(id, cached)) {
+				if (cleared == null)
+					reindex(id, cached, null);
+				changed(id, cleared == null);
+				if (stats != null)
+					stats.recordClear(id);
+				return;
+			}
+		}
+
+	}
+
+	/**
+	 * Replaces cached entry (and updates indexes), unless it was (concurrently) modified in the meantime.
+	 *
+	 * @param id entity's ID
+	 * @param cached cached entry
+	 * @param replacement entry to replace {@code cached} with
+	 *
+	 * @return {@code true} if entry was replaced
+	 */
+	private boolean replace(I id, FieldsEntityCacheEntry<C> cached, FieldsEntityCacheEntry<C> replacement) {
+		if (indexes.isEmpty())
+			return cache.replace(id, cached, replacement);
+		return cache.computeIfPresent(id, (key, current) -> {
+			if (current != cached)
+				return current;
+			reindex(id, cached, replacement);	// atomically with replacement, see reindex
+			return replacement;
+		}) == replacement;
+	}
+
+	/**
+	 * <p>Updates indexes after cached entry was replaced.</p>
+	 *
+	 * <p>Entries must be indexed atomically with storing them (within map operation on their ID), otherwise concurrent
+	 * writer of the same entity could unindex replaced entry before it's indexed, leaving stale entry in index. Removed
+	 * entries may be unindexed afterwards.</p>
+	 *
+	 * @param id entity's ID
+	 * @param previous previously cached entry ({@code null} if there was none)
+	 * @param current currently cached entry ({@code null} if entry was removed)
+	 */
+	private void reindex(I id, FieldsEntityCacheEntry<C> previous, FieldsEntityCacheEntry<C> current) {
+
+		if (indexes.isEmpty())
+			return;
+
+		for (FieldsEntityCacheIndex<I, C> index : indexes.values()) {
+			if (current != null)
+				index.add(id, current);
+			if (previous != null)
+				index.remove(previous);
+		}
+
+	}
+
 	/**
 	 * Clone and strip {@code entity} to only interested fields.
 	 *
@@ -367,17 +1198,240 @@ public class FieldsEntityCache<I, C extends HasEntityFields<I, C, F>, F extends
 	 * @return {@code entity}'s clone suitable to store in cace
 	 */
 	private C toCacheableEntity(C entity) {
+		return toCacheableEntity(entity, entity.getFields());
+	}
+
+	/**
+	 * Clone and strip {@code entity} to only interested fields among given ones.
+	 *
+	 * @param entity entity to convert
+	 * @param fields fields of {@code entity} to keep (if cacheable)
+	 *
+	 * @return {@code entity}'s clone suitable to store in cace
+	 */
+	private C toCacheableEntity(C entity, Set<F> fields) {
 		
-		Set<F> fieldsIntersection = Sets.intersection(entity.getFields(), cacheableFields);
+		Set<F> fieldsIntersection = Sets.intersection(Sets.intersection(entity.getFields(), fields), cacheableFields);
 		FieldGraph<F> graph = !fieldsIntersection.isEmpty() ? FieldGraph.of(fieldsIntersection) : FieldGraph.noneOf(entity.getFieldsClass());
 		
 		return entity.clone(graph);
 		
 	}
 
+	/**
+	 * Returns copy of {@code cached} entry without given fields (or {@code cached} itself if it has none of them).
+	 *
+	 * @param cached cached entry
+	 * @param fields fields to clear
+	 *
+	 * @return entry to store in cache instead of {@code cached}
+	 */
+	private FieldsEntityCacheEntry<C> withoutFields(FieldsEntityCacheEntry<C> cached, Set<F> fields) {
+
+		boolean clearsEntity = !Sets.intersection(cached.entity.getFields(), fields).isEmpty();
+		ByteBuffer[] serialized = offHeap != null ? offHeap.without(cached.serialized, fields) : null;
+
+		if (!clearsEntity && serialized == cached.serialized)
+			return cached;	// nothing to clear
+
+		C cleared = cached.entity;
+
+		if (clearsEntity) {
+			cleared = shallowCopy(cached.entity);	// copy-on-write, since readers may be using cached value
+			cleared.clearFields(fields);
+			cleared.freeze();
+		}
+
+		return new FieldsEntityCacheEntry<>(cleared, cached.writeTimes, cached.refreshing, serialized);
+
+	}
+
+	/**
+	 * Copies cached entity for copy-on-write, sharing its field values (which are frozen, so they are never modified)
+	 * instead of (deep) copying them. Falls back to {@link HasFields#cloneAll()} if entity has no field accessor.
+	 *
+	 * @param entity cached (frozen) entity
+	 *
+	 * @return (modifiable) copy of {@code entity}, with same field values
+	 */
+	private static <C extends HasFields<C, F>, F extends Enum<F> & FieldEnum> C shallowCopy(C entity) {
+		FieldAccessor<C, F> accessor = entity.fieldAccessor();
+		if (accessor == null)
+			return entity.cloneAll();
+		C copy = entity.ref();
+		for (F field : entity.getFields())
+			accessor.set(copy, field, accessor.get(entity, field));
+		return copy;
+	}
+
+	/**
+	 * Copies cached entity (for safe future modifications), deserializing its off-heap fields.
+	 *
+	 * @param entry cached entry
+	 * @param fields off-heap fields to deserialize ({@code null} to deserialize all of them)
+	 *
+	 * @return (modifiable) copy of cached entity
+	 */
+	private C materialize(FieldsEntityCacheEntry<C> entry, Set<F> fields) {
+
+		C entity = entry.entity.cloneAll();
+
+		if (entry.serialized != null)
+			offHeap.deserialize(entity, entry.serialized, fields);
+
+		return entity;
+
+	}
+
+	/**
+	 * @return fields held by cached entry (including off-heap ones)
+	 */
+	private Set<F> fieldsOf(FieldsEntityCacheEntry<C> entry) {
+		if (entry.serialized == null)
+			return entry.entity.getFields();
+		return offHeap.fieldsOf(entry.entity, entry.serialized);
+	}
+
+	/**
+	 * Retrieves cached entry, clearing its expired fields (if any).
+	 *
+	 * @param id entity's ID
+	 *
+	 * @return cached entry (without expired fields) or {@code null} if entity isn't cached
+	 */
+	private FieldsEntityCacheEntry<C> getEntry(I id) {
+
+		FieldsEntityCacheEntry<C> entry = cache.get(id);
+
+		if (entry == null || expireAfterWrite == null)
+			return entry;
+
+		Set<F> expiredFields = dueFields(entry, expireAfterWrite, nanoTime());
+
+		if (expiredFields.isEmpty())
+			return entry;
+
+		FieldsEntityCacheEntry<C> cleared = withoutFields(entry, expiredFields);
+		if (replace(id, entry, cleared))	// unless it was (concurrently) modified in the meantime
+			changed(id);
+
+		return cleared;
+
+	}
+
+	/**
+	 * Re-fetches (asynchronously) requested fields of cached entry which are due for refresh, unless entry is already
+	 * being refreshed.
+	 *
+	 * @param id entity's ID
+	 * @param entry cached entry
+	 * @param graph requested fields
+	 * @param service service to re-fetch fields from
+	 */
+	private void refresh(I id, FieldsEntityCacheEntry<C> entry, FieldGraph<F> graph, FieldsService<I, C, F> service) {
+
+		Set<F> refreshFields = dueFields(entry, refreshAfterWrite, nanoTime());
+		refreshFields.retainAll(graph);
+
+		if (refreshFields.isEmpty() || !entry.refreshing.compareAndSet(false, true))
+			return;
+
+		try {
+			refreshExecutor.execute(() -> {
+				try {
+					C fresh = service.get(id, FieldGraph.of(refreshFields));
+					if (fresh == null)
+						clear(id);	// entity doesn't exist anymore
+					else
+						merge(fresh, refreshFields, true);
+				} finally {
+					entry.refreshing.set(false);
+				}
+			});
+		} catch (RuntimeException e) {
+			entry.refreshing.set(false);
+			throw e;
+		}
+
+	}
+
+	/**
+	 * Collects fields of cached entry which were written at least given time ago.
+	 *
+	 * @param entry cached entry
+	 * @param nanosByOrdinal time (by field ordinal, 0 for fields which never get due)
+	 * @param now current time
+	 *
+	 * @return (modifiable) set of fields due
+	 */
+	private Set<F> dueFields(FieldsEntityCacheEntry<C> entry, long[] nanosByOrdinal, long now) {
+		Set<F> due = FieldSet.noneOf(entry.entity.getFieldsClass());
+		for (F field : fieldsOf(entry)) {
+			long nanos = nanosByOrdinal[field.ordinal()];
+			if (nanos > 0 && now - entry.writeTimes[field.ordinal()] >= nanos)
+				due.add(field);
+		}
+		return due;
+	}
+
+	/**
+	 * Constructs new entry, with all of its fields written at {@code now}.
+	 */
+	private FieldsEntityCacheEntry<C> newEntry(C entity, FieldsEntityCacheEntry<C> previous, long now) {
+		Set<F> writtenFields = offHeap != null ? FieldSet.of(entity.getFieldsClass(), entity.getFields()) : entity.getFields();	// before off-heap fields are cleared
+		return newEntry(entity, previous, null, writtenFields, now);
+	}
+
+	/**
+	 * Constructs new entry, with given fields written at {@code now} (and write times of other fields taken from {@code previous}).
+	 * Off-heap fields of {@code entity} are serialized (in addition to already {@code serialized} ones).
+	 */
+	private FieldsEntityCacheEntry<C> newEntry(C entity, FieldsEntityCacheEntry<C> previous, ByteBuffer[] serialized, Set<F> writtenFields, long now) {
+
+		long[] writeTimes = null;
+
+		if (expireAfterWrite != null || refreshAfterWrite != null) {
+			writeTimes = previous != null ? previous.writeTimes.clone() : new long[expireAfterWrite != null ? expireAfterWrite.length : refreshAfterWrite.length];
+			for (F field : writtenFields)
+				writeTimes[field.ordinal()] = now;
+		}
+
+		if (offHeap != null)
+			serialized = offHeap.serialize(entity, serialized);
+
+		return new FieldsEntityCacheEntry<>(entity.freeze(), writeTimes, previous != null ? previous.refreshing : new AtomicBoolean(), serialized);
+
+	}
+
+	private long nanoTime() {
+		return expireAfterWrite != null || refreshAfterWrite != null ? nanoClock.getAsLong() : 0;
+	}
+
+	/**
+	 * Converts durations to array indexed by field ordinal.
+	 *
+	 * @return durations (0 for fields without duration) or {@code null} if there are none
+	 */
+	private static <F extends Enum<F> & FieldEnum> long[] toNanosByOrdinal(Class<F> fieldsClass, Map<F, Long> nanos) {
+		if (nanos.isEmpty())
+			return null;
+		long[] nanosByOrdinal = new long[FieldEnumRegistry.of(fieldsClass).size()];
+		nanos.forEach((field, value) -> nanosByOrdinal[field.ordinal()] = value);
+		return nanosByOrdinal;
+	}
+
 	private final Set<F> cacheableFields;
 	private final Set<F> precachedFields;
-	private final Map<I, C> cache = new HashMap<>();
-	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final long[] expireAfterWrite;		// nanos by field ordinal (0 if field doesn't expire), null if no field expires
+	private final long[] refreshAfterWrite;		// nanos by field ordinal (0 if field isn't refreshed), null if no field is refreshed
+	private final Executor refreshExecutor;
+	private final FieldsEntityCacheOffHeap<C, F> offHeap;	// null if no field is stored off-heap
+	private final LongSupplier nanoClock;
+	private final ConcurrentMap<I, FieldsEntityCacheEntry<C>> cache;
+	private final Map<String, FieldsEntityCacheIndex<I, C>> indexes;		// secondary indexes by name
+	private final FieldsEntityCacheFlights<I, C, F> flights;		// null unless in single-flight mode
+	private final FieldsEntityCacheStatsCounter<I, C, F> stats;		// null unless stats are recorded
+	private volatile ConcurrentMap<I, Boolean> changes = null;		// whether entity was removed, by IDs of entities changed since last checkpoint, null unless tracked (see FieldsEntityCacheSnapshot)
+	private final LongAdder evictions = new LongAdder();
 
 }
@@ -0,0 +1,26 @@
+package com.parknav.common.fields;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Entity cached by {@link FieldsEntityCache}, together with write times of its fields and its off-heap fields (see
+ * {@link FieldsEntityCacheOffHeap}). Never modified, but replaced (atomically) with modified copy.
+ *
+ * @param <C> entity type
+ */
+final class FieldsEntityCacheEntry<C> {
+
+	FieldsEntityCacheEntry(C entity, long[] writeTimes, AtomicBoolean refreshing, ByteBuffer[] serialized) {
+		this.entity = entity;
+		this.writeTimes = writeTimes;
+		this.refreshing = refreshing;
+		this.serialized = serialized;
+	}
+
+	final C entity;						// frozen, without off-heap fields
+	final long[] writeTimes;			// write times by field ordinal (null if no field expires or refreshes), never modified
+	final AtomicBoolean refreshing;		// shared among all entries of same entity
+	final ByteBuffer[] serialized;		// off-heap fields by field ordinal (null if entry holds none), never modified
+
+}
@@ -0,0 +1,107 @@
+package com.parknav.common.fields;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * <p>Coalesces concurrent fetches of the same entity for {@link FieldsEntityCache} in single-flight mode (see
+ * {@link FieldsEntityCache.Builder#singleFlight()}).</p>
+ *
+ * <p>Callers join a pending fetch (extending its graph), or wait for fetch in progress if it fetches all fields they
+ * need. Otherwise, they queue new fetch, which starts once fetch in progress completes.</p>
+ *
+ * @param <I> ID type
+ * @param <C> entity type
+ * @param <F> field type
+ */
+final class FieldsEntityCacheFlights<I, C extends HasEntityFields<I, C, F>, F extends Enum<F> & FieldEnum> {
+
+	/**
+	 * Fetches entity, sharing the fetch with concurrent callers.
+	 *
+	 * @param id entity's ID
+	 * @param graph fields to fetch
+	 * @param fetcher fetches (and caches) entity holding (at least) given fields, returning {@code null} if entity doesn't exist
+	 *
+	 * @return (modifiable) entity holding (at least) requested fields or {@code null} if entity doesn't exist
+	 */
+	C fetch(I id, FieldGraph<F> graph, Function<FieldGraph<F>, C> fetcher) {
+
+		Flight<C, F> flight;
+		boolean leader = false;
+
+		while (true) {
+			flight = flights.get(id);
+			if (flight == null) {
+				flight = new Flight<>(null, graph);
+				if (flights.putIfAbsent(id, flight) == null) {
+					leader = true;
+					break;
+				}
+				continue;
+			}
+			synchronized (flight) {
+				if (flight.graph == null) {
+					flight.graphBuilder.add(graph);	// not started yet, join it
+					break;
+				}
+				if (FieldGraph.Builder.of(flight.graph).add(graph).build().equals(flight.graph))
+					break;	// in progress, but fetching all we need
+			}
+			Flight<C, F> next = new Flight<>(flight, graph);
+			if (flights.replace(id, flight, next)) {
+				flight = next;
+				leader = true;
+				break;
+			}
+		}
+
+		if (!leader) {
+			try {
+				C entity = flight.result.join();
+				return entity != null ? entity.cloneAll() : null;	// fetched entity is shared among all callers
+			} catch (CompletionException e) {
+				throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+			}
+		}
+
+		try {
+			if (flight.previous != null)
+				flight.previous.result.handle((entity, e) -> null).join();	// wait for previous fetch, whatever its outcome
+			FieldGraph<F> flightGraph;
+			synchronized (flight) {
+				flightGraph = flight.graph = flight.graphBuilder.build();
+			}
+			C entity = fetcher.apply(flightGraph);
+			flight.result.complete(entity);
+			return entity != null ? entity.cloneAll() : null;	// fetched entity is shared among all callers
+		} catch (RuntimeException | Error e) {
+			flight.result.completeExceptionally(e);
+			throw e;
+		} finally {
+			flights.remove(id, flight);	// unless next fetch is already queued
+		}
+
+	}
+
+	/** Fetch of single entity, shared by concurrent callers */
+	private static class Flight<C, F extends Enum<F> & FieldEnum> {
+
+		private Flight(Flight<C, F> previous, FieldGraph<F> graph) {
+			this.previous = previous;
+			graphBuilder = FieldGraph.Builder.of(graph);
+		}
+
+		private final Flight<C, F> previous;				// fetch to wait for before starting (null if none)
+		private final FieldGraph.Builder<F> graphBuilder;	// union of graphs requested by callers (guarded by this)
+		private FieldGraph<F> graph = null;					// fetched graph, once fetch started (guarded by this)
+		private final CompletableFuture<C> result = new CompletableFuture<>();
+
+	}
+
+	private final ConcurrentMap<I, Flight<C, F>> flights = new ConcurrentHashMap<>();		// pending or in-progress fetches by entity ID
+
+}
@@ -0,0 +1,91 @@
+package com.parknav.common.fields;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * <p>Secondary index of {@link FieldsEntityCache} entries, by key extracted from their entities (see
+ * {@link FieldsEntityCache.Builder#index(String, Function)}).</p>
+ *
+ * <p>Holds each indexed entry (rather than just its entity's ID), so that unindexing removed entry never unindexes
+ * entry which replaced it. Entries are indexed (and replaced entries unindexed) atomically with storing them to cache,
+ * so index holds only cached entries (and removed entries, until their remover unindexes them).</p>
+ *
+ * @param <I> ID type
+ * @param <C> entity type
+ */
+final class FieldsEntityCacheIndex<I, C> {
+
+	FieldsEntityCacheIndex(Function<? super C, ?> keyExtractor) {
+		this.keyExtractor = keyExtractor;
+	}
+
+	/**
+	 * @param entity entity to extract key from
+	 * @return entity's key ({@code null} if entity isn't indexed)
+	 */
+	Object key(C entity) {
+		return keyExtractor.apply(entity);
+	}
+
+	/**
+	 * Indexes given entry (unless its key is {@code null}).
+	 * @param id entity's ID
+	 * @param entry entry to index
+	 */
+	void add(I id, FieldsEntityCacheEntry<C> entry) {
+		Object key = key(entry.entity);
+		if (key != null) {
+			entries.compute(key, (k, indexed) -> {
+				if (indexed == null)
+					indexed = new ConcurrentHashMap<>();
+				indexed.put(entry, id);
+				return indexed;
+			});
+		}
+	}
+
+	/**
+	 * Unindexes given entry.
+	 * @param entry entry to unindex
+	 */
+	void remove(FieldsEntityCacheEntry<C> entry) {
+		Object key = key(entry.entity);
+		if (key != null)
+			remove(key, entry);
+	}
+
+	/**
+	 * Unindexes given entry from given key.
+	 * @param key key entry is indexed by
+	 * @param entry entry to unindex
+	 */
+	void remove(Object key, FieldsEntityCacheEntry<C> entry) {
+		entries.computeIfPresent(key, (k, indexed) -> {
+			indexed.remove(entry);
+			return indexed.isEmpty() ? null : indexed;
+		});
+	}
+
+	/**
+	 * @param key key to look up
+	 * @return (live) IDs of entries indexed by given key, by entry
+	 */
+	Map<FieldsEntityCacheEntry<C>, I> get(Object key) {
+		return entries.getOrDefault(key, Collections.emptyMap());
+	}
+
+	/**
+	 * @return number of indexed entries
+	 */
+	int size() {
+		return entries.values().stream().mapToInt(Map::size).sum();
+	}
+
+	private final Function<? super C, ?> keyExtractor;
+	private final ConcurrentMap<Object, Map<FieldsEntityCacheEntry<C>, I>> entries = new ConcurrentHashMap<>();		// IDs of indexed entries, by key
+
+}
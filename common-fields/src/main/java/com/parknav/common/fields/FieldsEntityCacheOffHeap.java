@@ -0,0 +1,161 @@
+package com.parknav.common.fields;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Serializes fields which {@link FieldsEntityCache} stores off-heap (see
+ * {@link FieldsEntityCache.Builder#offHeap(Enum, FieldCodec)}) into (direct) buffers, held by ordinal of their fields.
+ *
+ * @param <C> entity type
+ * @param <F> field type
+ */
+final class FieldsEntityCacheOffHeap<C extends HasFields<C, F>, F extends Enum<F> & FieldEnum> {
+
+	/**
+	 * @param fieldsClass field class
+	 * @param codecs codecs of off-heap fields (must not be empty)
+	 */
+	@SuppressWarnings("unchecked")
+	FieldsEntityCacheOffHeap(Class<F> fieldsClass, Map<F, FieldCodec<?>> codecs) {
+		fields = FieldSet.of(fieldsClass, codecs.keySet()).freeze();
+		this.codecs = newCodecs(FieldEnumRegistry.of(fieldsClass).size());
+		codecs.forEach((field, codec) -> this.codecs[field.ordinal()] = (FieldCodec<Object>) codec);
+	}
+
+	/**
+	 * @return fields stored off-heap
+	 */
+	Set<F> fields() {
+		return fields;
+	}
+
+	/**
+	 * Serializes off-heap fields of given entity, clearing them from it.
+	 *
+	 * @param entity entity whose fields to serialize
+	 * @param serialized previously serialized fields (by ordinal) to add to ({@code null} if there are none)
+	 *
+	 * @return serialized fields (by ordinal) or {@code null} if there are none
+	 */
+	ByteBuffer[] serialize(C entity, ByteBuffer[] serialized) {
+
+		if (Sets.intersection(entity.getFields(), fields).isEmpty())
+			return serialized;
+
+		if (entity.fieldAccessor() == null)
+			throw new IllegalStateException("Off-heap fields require field accessor, which " + entity.getClass() + " doesn't provide");
+
+		serialized = serialized != null ? serialized.clone() : new ByteBuffer[codecs.length];
+
+		for (F field : fields) {
+			if (!entity.getFields().contains(field))
+				continue;
+			Object value = entity.getFieldValue(field);
+			if (value == null) {
+				serialized[field.ordinal()] = NullValue;
+				continue;
+			}
+			ByteBuffer encoded = codecs[field.ordinal()].encode(value);
+			ByteBuffer buffer = ByteBuffer.allocateDirect(encoded.remaining());
+			buffer.put(encoded).flip();
+			serialized[field.ordinal()] = buffer.asReadOnlyBuffer();
+		}
+
+		entity.clearFields(fields);
+
+		return serialized;
+
+	}
+
+	/**
+	 * Deserializes given off-heap fields into given entity.
+	 *
+	 * @param entity (modifiable) entity to deserialize fields into
+	 * @param serialized serialized fields (by ordinal)
+	 * @param fields fields to deserialize ({@code null} to deserialize all of them)
+	 */
+	void deserialize(C entity, ByteBuffer[] serialized, Set<F> fields) {
+
+		FieldAccessor<C, F> accessor = entity.fieldAccessor();
+
+		for (F field : this.fields) {
+			ByteBuffer buffer = serialized[field.ordinal()];
+			if (buffer != null && (fields == null || fields.contains(field)))
+				accessor.set(entity, field, buffer != NullValue ? codecs[field.ordinal()].decode(buffer.duplicate()) : null);
+		}
+
+	}
+
+	/**
+	 * @param serialized serialized fields (by ordinal), may be {@code null}
+	 * @param fields fields to clear
+	 * @return {@code serialized} without given fields ({@code serialized} itself if it holds none of them, {@code null} if it would be empty)
+	 */
+	ByteBuffer[] without(ByteBuffer[] serialized, Set<F> fields) {
+
+		if (serialized == null)
+			return null;
+
+		ByteBuffer[] cleared = serialized;
+		boolean empty = true;
+
+		for (F field : this.fields) {
+			if (serialized[field.ordinal()] == null)
+				continue;
+			if (fields.contains(field)) {
+				if (cleared == serialized)
+					cleared = serialized.clone();
+				cleared[field.ordinal()] = null;
+			} else {
+				empty = false;
+			}
+		}
+
+		return empty ? null : cleared;
+
+	}
+
+	/**
+	 * @param entity entity (without off-heap fields)
+	 * @param serialized its serialized fields (by ordinal), must not be {@code null}
+	 * @return (modifiable) fields of entity, including serialized ones
+	 */
+	Set<F> fieldsOf(C entity, ByteBuffer[] serialized) {
+		Set<F> fields = FieldSet.of(entity.getFieldsClass(), entity.getFields());
+		for (F field : this.fields)
+			if (serialized[field.ordinal()] != null)
+				fields.add(field);
+		return fields;
+	}
+
+	/**
+	 * @param base serialized fields, may be {@code null}
+	 * @param overlay serialized fields to overwrite {@code base} with, may be {@code null}
+	 * @return serialized fields of {@code base}, overwritten by serialized fields of {@code overlay}
+	 */
+	static ByteBuffer[] overlay(ByteBuffer[] base, ByteBuffer[] overlay) {
+		if (base == null || overlay == null)
+			return base != null ? base : overlay;
+		ByteBuffer[] merged = base.clone();
+		for (int i = 0; i < overlay.length; i++)
+			if (overlay[i] != null)
+				merged[i] = overlay[i];
+		return merged;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> FieldCodec<T>[] newCodecs(int size) {
+		return (FieldCodec<T>[]) new FieldCodec<?>[size];
+	}
+
+	/** Marks {@code null} value of off-heap field */
+	private static final ByteBuffer NullValue = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
+	private final Set<F> fields;
+	private final FieldCodec<Object>[] codecs;	// by field ordinal (null for fields stored on-heap)
+
+}
@@ -0,0 +1,489 @@
+package com.parknav.common.fields;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+import com.google.common.collect.Sets;
+
+/**
+ * <p>Persists content of {@link FieldsEntityCache} to local file, so that cache can be warmed up (see {@link #restore()})
+ * after restart, instead of re-fetching all of its entities from service.</p>
+ *
+ * <p>File is append-only: each {@link #checkpoint()} appends only entities changed (or removed) since previous one, as
+ * records holding entity's ID and all of its cached fields (serialized by per-field {@link FieldCodec}s, fields without
+ * codec aren't persisted). Entities evicted from cache stay in file. Since file keeps growing, it should be
+ * {@link #compact() compacted} from time to time. Records are checksummed, and torn (or otherwise corrupted) tail of the
+ * file, as left by crash during checkpoint, is truncated on restore.</p>
+ *
+ * <p>Each checkpoint starts with header naming persisted fields, so that file written by previous version of
+ * application can be restored even if fields were added, removed or reordered since: fields which are not (or no longer)
+ * known, cacheable or persisted are skipped.</p>
+ *
+ * <p>Restored fields count as written at the time of restore (see {@link FieldsEntityCache.Builder#expireAfterWrite}).
+ * Entities must provide {@link HasFields#fieldAccessor() field accessor}. Cache can have only one snapshot.</p>
+ *
+ * <blockquote><pre>
+ * FieldsEntityCacheSnapshot&lt;String, Person, Person.Field&gt; snapshot = FieldsEntityCacheSnapshot.Builder.of(cache, path, Person::new, idCodec)
+ * 	.field(Person.Field.name, stringCodec)
+ * 	.field(Person.Field.email, stringCodec)
+ * 	.build();
+ * snapshot.restore();		// on startup
+ * ...
+ * snapshot.checkpoint();	// periodically
+ * </pre></blockquote>
+ *
+ * @param <I> ID type
+ * @param <C> concrete implementation of cached entity
+ * @param <F> field type
+ */
+public final class FieldsEntityCacheSnapshot<I, C extends HasEntityFields<I, C, F>, F extends Enum<F> & FieldEnum> {
+
+	public static class Builder<I, C extends HasEntityFields<I, C, F>, F extends Enum<F> & FieldEnum> {
+
+		/**
+		 * @param cache cache to persist
+		 * @param path file to persist cache to
+		 * @param entityFactory constructs empty entity (to restore fields into)
+		 * @param idCodec codec to (de)serialize entity IDs with
+		 * @param <I> ID type
+		 * @param <C> concrete implementation of cached entity
+		 * @param <F> field type
+		 * @return builder
+		 */
+		public static <I, C extends HasEntityFields<I, C, F>, F extends Enum<F> & FieldEnum> Builder<I, C, F> of(FieldsEntityCache<I, C, F> cache, Path path, Supplier<C> entityFactory, FieldCodec<I> idCodec) {
+			return new Builder<>(cache, path, entityFactory, idCodec);
+		}
+
+		private Builder(FieldsEntityCache<I, C, F> cache, Path path, Supplier<C> entityFactory, FieldCodec<I> idCodec) {
+			this.cache = cache;
+			this.path = path;
+			this.entityFactory = entityFactory;
+			this.idCodec = idCodec;
+		}
+
+		/**
+		 * Persists given (cacheable) field.
+		 *
+		 * @param field field to persist
+		 * @param codec codec to (de)serialize field's values with
+		 * @return this
+		 */
+		public Builder<I, C, F> field(F field, FieldCodec<?> codec) {
+			codecs.put(field, codec);
+			return this;
+		}
+
+		/**
+		 * Builds snapshot, starting to track changes of cached entities (see {@link #checkpoint()}).
+		 *
+		 * @return snapshot
+		 *
+		 * @throws IllegalStateException if cache already has snapshot
+		 */
+		public FieldsEntityCacheSnapshot<I, C, F> build() {
+			return new FieldsEntityCacheSnapshot<>(this);
+		}
+
+		private final FieldsEntityCache<I, C, F> cache;
+		private final Path path;
+		private final Supplier<C> entityFactory;
+		private final FieldCodec<I> idCodec;
+		private final Map<F, FieldCodec<?>> codecs = new LinkedHashMap<>();
+
+	}
+
+	private FieldsEntityCacheSnapshot(Builder<I, C, F> builder) {
+
+		if (builder.codecs.isEmpty())
+			throw new IllegalArgumentException("No field is persisted");
+		if (!builder.cache.getCacheableFields().containsAll(builder.codecs.keySet()))
+			throw new IllegalArgumentException("persisted fields not present in cacheableFields: " + Sets.difference(builder.codecs.keySet(), builder.cache.getCacheableFields()));
+
+		cache = builder.cache;
+		path = builder.path;
+		entityFactory = builder.entityFactory;
+		idCodec = builder.idCodec;
+		fields = new ArrayList<>(builder.codecs.keySet());
+		codecs = newCodecs(fields.size());
+		for (int i = 0; i < codecs.length; i++)
+			codecs[i] = codec(builder.codecs.get(fields.get(i)));
+
+		changes = cache.trackChanges();
+
+	}
+
+	/**
+	 * <p>Restores entities from file (if it exists) into cache, merging them with already cached ones. Should be called
+	 * before first {@link #checkpoint()}, since corrupted tail of the file is truncated.</p>
+	 *
+	 * <p>Restored entities don't count as changed (so they aren't appended by next checkpoint).</p>
+	 *
+	 * @return number of restored entities
+	 *
+	 * @throws IOException if file couldn't be read
+	 */
+	public synchronized int restore() throws IOException {
+
+		Map<I, C> restored = new LinkedHashMap<>();		// last record of each entity wins
+		long validLength = 0;
+
+		try (InputStream in = Files.newInputStream(path)) {
+
+			long fileLength = Files.size(path);
+			DataInputStream input = new DataInputStream(new BufferedInputStream(in));
+			int[] fileFields = null;	// indexes of persisted fields of current checkpoint, by their index in file
+
+			while (true) {
+
+				int type;
+				byte[] payload;
+				try {
+					type = input.read();
+					if (type < 0)
+						break;	// end of file
+					if (validLength == 0 && type != Header)
+						throw new IOException("Not a cache snapshot: " + path);	// don't truncate foreign file
+					int length = input.readInt();
+					if (length < 0 || length > fileLength - validLength - RecordOverhead)
+						break;	// torn (or corrupted) record
+					payload = new byte[length];
+					input.readFully(payload);
+					CRC32 crc = new CRC32();
+					crc.update(type);
+					crc.update(payload);
+					if (input.readInt() != (int) crc.getValue())
+						break;	// corrupted record
+				} catch (EOFException e) {
+					break;	// torn record
+				}
+
+				DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+
+				if (type == Header)
+					fileFields = readHeader(record);
+				else if (type == Entity && fileFields != null) {
+					C entity = readEntity(record, fileFields);
+					restored.put(entity.getId(), entity);
+				} else if (type == Removal && fileFields != null)
+					restored.remove(decode(idCodec, record));
+				else
+					break;	// corrupted record
+
+				validLength += RecordOverhead + payload.length;
+
+			}
+
+		} catch (NoSuchFileException e) {
+			return 0;
+		}
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			if (channel.size() > validLength)
+				channel.truncate(validLength);
+		}
+
+		restored.values().forEach(cache::restore);
+
+		return restored.size();
+
+	}
+
+	/**
+	 * Appends to file all entities changed (or removed) since previous checkpoint (or since this snapshot was built).
+	 * Entities evicted since they changed are skipped (their previous records stay in file).
+	 *
+	 * @return number of appended records
+	 *
+	 * @throws IOException if file couldn't be written
+	 */
+	public synchronized int checkpoint() throws IOException {
+
+		if (changes.isEmpty())
+			return 0;
+
+		Map<I, Boolean> taken = new HashMap<>();
+		int count = 0;
+
+		try (OutputStream out = Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+			RecordWriter writer = new RecordWriter(out);
+			writer.writeHeader();
+			for (I id : changes.keySet()) {
+				Boolean removed = changes.remove(id);	// before reading entity, so that its concurrent change gets tracked again
+				if (removed == null)
+					continue;
+				taken.put(id, removed);
+				C entity = cache.peek(id);
+				if (entity == null && !removed)
+					continue;	// evicted
+				writer.writeEntity(id, entity);
+				count++;
+			}
+			writer.flush();
+		} catch (IOException | RuntimeException e) {
+			taken.forEach(changes::putIfAbsent);	// so that they get appended by next checkpoint (unless they changed again)
+			throw e;
+		}
+
+		return count;
+
+	}
+
+	/**
+	 * Rewrites file (atomically, via temporary file) with all currently cached entities, dropping history of their
+	 * changes (and entities evicted since).
+	 *
+	 * @return number of written entities
+	 *
+	 * @throws IOException if file couldn't be written
+	 */
+	public synchronized int compact() throws IOException {
+
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+		int count = 0;
+
+		Map<I, Boolean> taken = new HashMap<>();
+		for (I id : changes.keySet()) {
+			Boolean removed = changes.remove(id);	// before reading entities, so that their concurrent changes get tracked again
+			if (removed != null)
+				taken.put(id, removed);
+		}
+
+		try {
+			try (OutputStream out = Files.newOutputStream(temp)) {
+				RecordWriter writer = new RecordWriter(out);
+				writer.writeHeader();
+				for (I id : cache.ids()) {
+					C entity = cache.peek(id);
+					if (entity != null) {
+						writer.writeEntity(id, entity);
+						count++;
+					}
+				}
+				writer.flush();
+			}
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException | RuntimeException e) {
+			taken.forEach(changes::putIfAbsent);	// so that they get appended by next checkpoint (unless they changed again)
+			throw e;
+		}
+
+		return count;
+
+	}
+
+	/**
+	 * @return path of the file cache is persisted to
+	 */
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * Reads header record.
+	 *
+	 * @return indexes of persisted fields of the checkpoint following header, by their index in file ({@code -1} for
+	 * unknown, non-cacheable or non-persisted fields)
+	 *
+	 * @throws IOException if header is not valid
+	 */
+	private int[] readHeader(DataInputStream record) throws IOException {
+
+		if (record.readInt() != Magic)
+			throw new IOException("Not a cache snapshot: " + path);
+		int formatVersion = record.readUnsignedByte();
+		if (formatVersion != FormatVersion)
+			throw new IOException("Unsupported cache snapshot format version " + formatVersion + ": " + path);
+
+		int[] fileFields = new int[record.readUnsignedShort()];
+
+		for (int i = 0; i < fileFields.length; i++) {
+			String name = record.readUTF();
+			fileFields[i] = -1;
+			for (int j = 0; j < fields.size(); j++)
+				if (fields.get(j).name().equals(name) && cache.getCacheableFields().contains(fields.get(j)))
+					fileFields[i] = j;
+		}
+
+		return fileFields;
+
+	}
+
+	/**
+	 * Reads entity record, skipping fields which aren't (or are no longer) persisted.
+	 */
+	private C readEntity(DataInputStream record, int[] fileFields) throws IOException {
+
+		C entity = entityFactory.get();
+		entity.setId(decode(idCodec, record));
+
+		FieldAccessor<C, F> accessor = entity.fieldAccessor();
+		int count = record.readUnsignedShort();
+
+		for (int i = 0; i < count; i++) {
+			int index = record.readUnsignedShort();
+			int persisted = index < fileFields.length ? fileFields[index] : -1;
+			if (persisted < 0) {
+				record.skipBytes(Math.max(record.readInt(), 0));
+				continue;
+			}
+			accessor.set(entity, fields.get(persisted), decode(codecs[persisted], record));
+		}
+
+		return entity;
+
+	}
+
+	/**
+	 * Reads length-prefixed value.
+	 *
+	 * @return decoded value ({@code null} if {@code null} was written)
+	 */
+	private static <T> T decode(FieldCodec<T> codec, DataInputStream record) throws IOException {
+		int length = record.readInt();
+		if (length < 0)
+			return null;
+		byte[] bytes = new byte[length];
+		record.readFully(bytes);
+		return codec.decode(ByteBuffer.wrap(bytes).asReadOnlyBuffer());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> FieldCodec<T>[] newCodecs(int size) {
+		return (FieldCodec<T>[]) new FieldCodec<?>[size];
+	}
+
+	@SuppressWarnings("unchecked")
+	private static FieldCodec<Object> codec(FieldCodec<?> codec) {
+		return (FieldCodec<Object>) codec;
+	}
+
+	/** Writes (framed and checksummed) records */
+	private class RecordWriter {
+
+		private RecordWriter(OutputStream out) {
+			this.out = new DataOutputStream(new BufferedOutputStream(out));
+		}
+
+		private void writeHeader() throws IOException {
+			record.writeInt(Magic);
+			record.writeByte(FormatVersion);
+			record.writeShort(fields.size());
+			for (F field : fields)
+				record.writeUTF(field.name());
+			write(Header);
+		}
+
+		/**
+		 * Writes entity (or its removal if it's {@code null}).
+		 */
+		private void writeEntity(I id, C entity) throws IOException {
+
+			encode(idCodec, id);
+
+			if (entity == null) {
+				write(Removal);
+				return;
+			}
+
+			int count = 0;
+			for (F field : fields)
+				if (entity.getFields().contains(field))
+					count++;
+
+			record.writeShort(count);
+
+			for (int i = 0; i < codecs.length; i++) {
+				F field = fields.get(i);
+				if (!entity.getFields().contains(field))
+					continue;
+				record.writeShort(i);
+				encode(codecs[i], entity.getFieldValue(field));
+			}
+
+			write(Entity);
+
+		}
+
+		private void flush() throws IOException {
+			out.flush();
+		}
+
+		/**
+		 * Writes length-prefixed value to current record.
+		 */
+		private <T> void encode(FieldCodec<T> codec, T value) throws IOException {
+			if (value == null) {
+				record.writeInt(-1);
+				return;
+			}
+			ByteBuffer buffer = codec.encode(value);
+			record.writeInt(buffer.remaining());
+			if (buffer.hasArray()) {
+				record.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			} else {
+				byte[] bytes = new byte[buffer.remaining()];
+				buffer.duplicate().get(bytes);
+				record.write(bytes);
+			}
+		}
+
+		/**
+		 * Writes current record (as type, length, payload and checksum of type and payload) and starts new one.
+		 */
+		private void write(int type) throws IOException {
+			record.flush();
+			CRC32 crc = new CRC32();
+			crc.update(type);
+			crc.update(buffer.toByteArray());
+			out.writeByte(type);
+			out.writeInt(buffer.size());
+			buffer.writeTo(out);
+			out.writeInt((int) crc.getValue());
+			buffer.reset();
+		}
+
+		private final DataOutputStream out;
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		private final DataOutputStream record = new DataOutputStream(buffer);		// current record's payload
+
+	}
+
+	private final FieldsEntityCache<I, C, F> cache;
+	private final Path path;
+	private final Supplier<C> entityFactory;
+	private final FieldCodec<I> idCodec;
+	private final List<F> fields;				// persisted fields, by their index in file
+	private final FieldCodec<Object>[] codecs;	// codecs of persisted fields, by their index in file
+	private final ConcurrentMap<I, Boolean> changes;		// whether entity was removed, by IDs of entities changed since last checkpoint
+
+	private static final int Magic = 0x46454353;		// "FECS"
+	private static final byte FormatVersion = 1;
+	private static final int Header = 0;
+	private static final int Entity = 1;
+	private static final int Removal = 2;
+	private static final int RecordOverhead = 1 + Integer.BYTES + Integer.BYTES;		// type, length and checksum
+
+}
@@ -0,0 +1,152 @@
+package com.parknav.common.fields;
+
+/**
+ * <p>Immutable snapshot of {@link FieldsEntityCache}'s statistics (see {@link FieldsEntityCache#getStats()}).</p>
+ *
+ * <p>All counters are cumulative since cache was constructed, so rates should be calculated from differences between
+ * two snapshots.</p>
+ *
+ * @param <F> field type
+ */
+public final class FieldsEntityCacheStats<F extends Enum<F> & FieldEnum> {
+
+	FieldsEntityCacheStats(
+		Class<F> fieldsClass,
+		long hitCount, long partialHitCount, long missCount,
+		long loadCount, long loadTime, long fetchedFieldCount,
+		long mergeCount, long clearCount, long evictionCount, long writeTime,
+		long[] fieldHitCounts, long[] fieldFetchCounts
+	) {
+		this.fieldsClass = fieldsClass;
+		this.hitCount = hitCount;
+		this.partialHitCount = partialHitCount;
+		this.missCount = missCount;
+		this.loadCount = loadCount;
+		this.loadTime = loadTime;
+		this.fetchedFieldCount = fetchedFieldCount;
+		this.mergeCount = mergeCount;
+		this.clearCount = clearCount;
+		this.evictionCount = evictionCount;
+		this.writeTime = writeTime;
+		this.fieldHitCounts = fieldHitCounts;
+		this.fieldFetchCounts = fieldFetchCounts;
+	}
+
+	/**
+	 * @return number of requests served completely from cache
+	 */
+	public long getHitCount() { return hitCount; }
+
+	/**
+	 * @return number of requests for cached entity which was missing some of requested fields (which were then fetched)
+	 */
+	public long getPartialHitCount() { return partialHitCount; }
+
+	/**
+	 * @return number of requests for entity which wasn't cached at all
+	 */
+	public long getMissCount() { return missCount; }
+
+	/**
+	 * @return total number of requests (hits, partial hits and misses)
+	 */
+	public long getRequestCount() { return hitCount + partialHitCount + missCount; }
+
+	/**
+	 * @return ratio of requests served completely from cache ({@code 1} if there were no requests)
+	 */
+	public double getHitRate() {
+		long requestCount = getRequestCount();
+		return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+	}
+
+	/**
+	 * @return number of entities (or their missing fields) fetched from service
+	 */
+	public long getLoadCount() { return loadCount; }
+
+	/**
+	 * @return total time (in nanoseconds) spent fetching entities (or their missing fields) from service (time of bulk
+	 * fetches is split evenly among fetched entities)
+	 */
+	public long getLoadTime() { return loadTime; }
+
+	/**
+	 * @return total number of (cacheable) fields fetched from service
+	 */
+	public long getFetchedFieldCount() { return fetchedFieldCount; }
+
+	/**
+	 * @return number of entities stored (put or merged) to cache
+	 */
+	public long getMergeCount() { return mergeCount; }
+
+	/**
+	 * @return number of entities removed from cache (or whose fields were cleared) by cache's user
+	 */
+	public long getClearCount() { return clearCount; }
+
+	/**
+	 * @return number of entities evicted from cache due to its size (or weight) limit
+	 */
+	public long getEvictionCount() { return evictionCount; }
+
+	/**
+	 * @return total time (in nanoseconds) spent (atomically) updating cached entities
+	 */
+	public long getWriteTime() { return writeTime; }
+
+	/**
+	 * @param field cacheable field
+	 * @return number of times requested field was served from cache
+	 */
+	public long getFieldHitCount(F field) { return fieldHitCounts[field.ordinal()]; }
+
+	/**
+	 * @param field cacheable field
+	 * @return number of times field was fetched from service (whether requested or precached), so that fetch counts of
+	 * all fields sum up to {@link #getFetchedFieldCount()}
+	 */
+	public long getFieldFetchCount(F field) { return fieldFetchCounts[field.ordinal()]; }
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder()
+			.append("hits=").append(hitCount)
+			.append(", partialHits=").append(partialHitCount)
+			.append(", misses=").append(missCount)
+			.append(", loads=").append(loadCount)
+			.append(", loadTime=").append(loadTime)
+			.append(", fetchedFields=").append(fetchedFieldCount)
+			.append(", merges=").append(mergeCount)
+			.append(", clears=").append(clearCount)
+			.append(", evictions=").append(evictionCount)
+			.append(", writeTime=").append(writeTime)
+			.append(", fields={");
+		boolean first = true;
+		for (F field : fieldsClass.getEnumConstants()) {
+			if (fieldHitCounts[field.ordinal()] == 0 && fieldFetchCounts[field.ordinal()] == 0)
+				continue;
+			if (!first)
+				sb.append(", ");
+			sb.append(field).append("=").append(fieldHitCounts[field.ordinal()]).append("/").append(fieldFetchCounts[field.ordinal()]);
+			first = false;
+		}
+		return sb.append("}").toString();
+	}
+
+	private final Class<F> fieldsClass;
+	private final long hitCount;
+	private final long partialHitCount;
+	private final long missCount;
+	private final long loadCount;
+	private final long loadTime;
+	private final long fetchedFieldCount;
+	private final long mergeCount;
+	private final long clearCount;
+	private final long evictionCount;
+	private final long writeTime;
+	private final long[] fieldHitCounts;		// by field ordinal
+	private final long[] fieldFetchCounts;		// by field ordinal
+
+}
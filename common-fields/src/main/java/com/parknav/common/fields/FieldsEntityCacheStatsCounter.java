@@ -0,0 +1,185 @@
+package com.parknav.common.fields;
+
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records statistics of {@link FieldsEntityCache} (see {@link FieldsEntityCache.Builder#recordStats()}), notifying
+ * {@link FieldsEntityCache.StatsListener} (if any).
+ *
+ * @param <I> ID type
+ * @param <C> entity type
+ * @param <F> field type
+ */
+final class FieldsEntityCacheStatsCounter<I, C extends HasFields<C, F>, F extends Enum<F> & FieldEnum> {
+
+	/**
+	 * @param fieldsClass field class
+	 * @param cacheableFields fields cache stores
+	 * @param listener listener to notify ({@code null} if none)
+	 */
+	FieldsEntityCacheStatsCounter(Class<F> fieldsClass, Set<F> cacheableFields, FieldsEntityCache.StatsListener<? super I> listener) {
+		this.fieldsClass = fieldsClass;
+		this.cacheableFields = cacheableFields;
+		this.listener = listener;
+		int size = FieldEnumRegistry.of(fieldsClass).size();
+		fieldHits = new LongAdder[size];
+		fieldFetches = new LongAdder[size];
+		for (int i = 0; i < size; i++) {
+			fieldHits[i] = new LongAdder();
+			fieldFetches[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Records lookup of cached entity (without fetching it).
+	 *
+	 * @param id entity's ID
+	 * @param found whether entity was found in cache
+	 */
+	void recordLookup(I id, boolean found) {
+		if (found) {
+			hits.increment();
+			if (listener != null)
+				listener.onHit(id);
+		} else {
+			misses.increment();
+			if (listener != null)
+				listener.onMiss(id, 0);
+		}
+	}
+
+	/**
+	 * Records request for entity which was found in cache.
+	 *
+	 * @param id entity's ID
+	 * @param graph requested fields
+	 * @param cachedFields fields found in cache
+	 * @param fetchedFields cacheable fields fetched from service ({@code null} if nothing was fetched)
+	 * @param loadTime time spent fetching
+	 */
+	void recordHit(I id, FieldGraph<F> graph, Set<F> cachedFields, Set<F> fetchedFields, long loadTime) {
+
+		for (F field : graph) {
+			if (cachedFields.contains(field))
+				fieldHits[field.ordinal()].increment();
+		}
+
+		if (fetchedFields == null) {
+			hits.increment();
+			if (listener != null)
+				listener.onHit(id);
+			return;
+		}
+
+		partialHits.increment();
+		loads.increment();
+		this.loadTime.add(loadTime);
+		for (F field : fetchedFields)
+			fieldFetches[field.ordinal()].increment();	// including precached fields, as counted by this.fetchedFields
+		this.fetchedFields.add(fetchedFields.size());
+		if (listener != null)
+			listener.onPartialHit(id, loadTime);
+
+	}
+
+	/**
+	 * Records request for entity which wasn't found in cache.
+	 *
+	 * @param id entity's ID
+	 * @param graph requested fields
+	 * @param entity entity fetched from service ({@code null} if it doesn't exist)
+	 * @param loadTime time spent fetching
+	 */
+	void recordMiss(I id, FieldGraph<F> graph, C entity, long loadTime) {
+
+		if (entity != null) {
+			for (F field : entity.getFields()) {
+				if (!cacheableFields.contains(field))
+					continue;
+				fetchedFields.increment();
+				fieldFetches[field.ordinal()].increment();	// including precached fields, as counted by fetchedFields
+			}
+		}
+
+		misses.increment();
+		loads.increment();
+		this.loadTime.add(loadTime);
+		if (listener != null)
+			listener.onMiss(id, loadTime);
+
+	}
+
+	/**
+	 * Records entity stored to cache.
+	 *
+	 * @param id entity's ID
+	 * @param writeTime time spent (atomically) updating cached entity
+	 */
+	void recordMerge(I id, long writeTime) {
+		merges.increment();
+		this.writeTime.add(writeTime);
+		if (listener != null)
+			listener.onMerge(id, writeTime);
+	}
+
+	/**
+	 * Records entity (or some of its fields) cleared from cache.
+	 *
+	 * @param id entity's ID
+	 */
+	void recordClear(I id) {
+		clears.increment();
+		if (listener != null)
+			listener.onClear(id);
+	}
+
+	/**
+	 * Records entity evicted from cache (which is counted by cache itself, even if stats aren't recorded).
+	 *
+	 * @param id entity's ID
+	 */
+	void recordEviction(I id) {
+		if (listener != null)
+			listener.onEviction(id);
+	}
+
+	/**
+	 * @param evictions number of evicted entities
+	 * @return snapshot of recorded statistics
+	 */
+	FieldsEntityCacheStats<F> snapshot(long evictions) {
+
+		long[] fieldHits = new long[this.fieldHits.length];
+		long[] fieldFetches = new long[this.fieldFetches.length];
+		for (int i = 0; i < fieldHits.length; i++) {
+			fieldHits[i] = this.fieldHits[i].sum();
+			fieldFetches[i] = this.fieldFetches[i].sum();
+		}
+
+		return new FieldsEntityCacheStats<>(
+			fieldsClass,
+			hits.sum(), partialHits.sum(), misses.sum(),
+			loads.sum(), loadTime.sum(), fetchedFields.sum(),
+			merges.sum(), clears.sum(), evictions, writeTime.sum(),
+			fieldHits, fieldFetches
+		);
+
+	}
+
+	private final Class<F> fieldsClass;
+	private final Set<F> cacheableFields;
+	private final FieldsEntityCache.StatsListener<? super I> listener;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder partialHits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder loads = new LongAdder();
+	private final LongAdder loadTime = new LongAdder();
+	private final LongAdder fetchedFields = new LongAdder();
+	private final LongAdder merges = new LongAdder();
+	private final LongAdder clears = new LongAdder();
+	private final LongAdder writeTime = new LongAdder();
+	private final LongAdder[] fieldHits;		// by field ordinal
+	private final LongAdder[] fieldFetches;		// by field ordinal
+
+}
@@ -1,10 +1,9 @@
 package com.parknav.common.fields;
 
-import java.util.EnumSet;
 import java.util.Set;
 
 /**
- * Vanilla implementation of {@link HasFields} interface.
+ * Vanilla implementation of {@link HasFields} interface, holding initialized fields in {@link FieldSet}.
  * @param <C> concrete implementation of FieldsObject
  * @param <F> field type
  */
@@ -12,7 +11,7 @@ public abstract class FieldsObject<C extends HasFields<C, F>, F extends Enum<F>
 
 	protected FieldsObject(Class<F> fieldsClass) {
 		this.fieldsClass = fieldsClass;
-		fields = EnumSet.noneOf(fieldsClass);
+		fields = FieldSet.noneOf(fieldsClass);
 	}
 	
 	@Override
@@ -22,7 +21,11 @@ public abstract class FieldsObject<C extends HasFields<C, F>, F extends Enum<F>
 	public Set<F> getFields() { return fields; }
 	
 	@Override
-	public void setFields(Set<F> fields) { this.fields = fields; }
+	public void setFields(Set<F> fields) {
+		if (isFrozen())
+			throw new UnsupportedOperationException("Fields are frozen (read-only)");
+		this.fields = fields;
+	}
 
 	//@Override	// GWT complains
 	@SuppressWarnings("MethodDoesntCallSuperMethod")
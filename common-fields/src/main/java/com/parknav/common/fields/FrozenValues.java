@@ -0,0 +1,84 @@
+package com.parknav.common.fields;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * <p>Unmodifiable views of field values, used by {@link HasFields#freeze()}.</p>
+ *
+ * <p>Collections and maps are wrapped (preserving their list, (navigable) set and (navigable) map semantics), unless
+ * they already are unmodifiable, so that re-freezing shared values doesn't stack wrappers. Arrays and elements of
+ * collections (other than {@link HasFields}, which are frozen on their own) are not wrapped.</p>
+ */
+final class FrozenValues {
+
+	private FrozenValues() {}
+
+	/**
+	 * @param value field's value (may be {@code null})
+	 * @return unmodifiable view of {@code value} if it's a (modifiable) collection or map, {@code value} itself otherwise
+	 */
+	@SuppressWarnings("unchecked")
+	static Object of(Object value) {
+
+		if (!(value instanceof Collection) && !(value instanceof Map) || Unmodifiable.contains(value.getClass()))
+			return value;
+
+		if (value instanceof List)
+			return Collections.unmodifiableList((List<Object>) value);
+		if (value instanceof NavigableSet)
+			return Collections.unmodifiableNavigableSet((NavigableSet<Object>) value);
+		if (value instanceof SortedSet)
+			return Collections.unmodifiableSortedSet((SortedSet<Object>) value);
+		if (value instanceof Set)
+			return Collections.unmodifiableSet((Set<Object>) value);
+		if (value instanceof Collection)
+			return Collections.unmodifiableCollection((Collection<Object>) value);
+		if (value instanceof NavigableMap)
+			return Collections.unmodifiableNavigableMap((NavigableMap<Object, Object>) value);
+		if (value instanceof SortedMap)
+			return Collections.unmodifiableSortedMap((SortedMap<Object, Object>) value);
+		return Collections.unmodifiableMap((Map<Object, Object>) value);
+
+	}
+
+	/** Classes of (JDK) collections and maps which are already unmodifiable */
+	private static final Set<Class<?>> Unmodifiable = new HashSet<>(Arrays.asList(
+		Collections.unmodifiableCollection(new ArrayList<>()).getClass(),
+		Collections.unmodifiableList(new ArrayList<>()).getClass(),
+		Collections.unmodifiableList(new LinkedList<>()).getClass(),
+		Collections.unmodifiableSet(new HashSet<>()).getClass(),
+		Collections.unmodifiableSortedSet(new TreeSet<>()).getClass(),
+		Collections.unmodifiableNavigableSet(new TreeSet<>()).getClass(),
+		Collections.unmodifiableMap(new HashMap<>()).getClass(),
+		Collections.unmodifiableSortedMap(new TreeMap<>()).getClass(),
+		Collections.unmodifiableNavigableMap(new TreeMap<>()).getClass(),
+		Collections.emptyList().getClass(),
+		Collections.emptySet().getClass(),
+		Collections.emptyMap().getClass(),
+		List.of().getClass(),
+		List.of(0).getClass(),
+		List.of(0, 1, 2).getClass(),
+		Set.of().getClass(),
+		Set.of(0).getClass(),
+		Set.of(0, 1, 2).getClass(),
+		Map.of().getClass(),
+		Map.of(0, 0).getClass(),
+		Map.of(0, 0, 1, 1).getClass()
+	));		// may hold same class more than once, so not Set.of
+
+}
@@ -0,0 +1,38 @@
+package com.parknav.common.fields;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>Instructs {@code common-fields-processor} annotation processor to generate {@link FieldAccessor} for annotated
+ * {@link HasFields} class.</p>
+ *
+ * <p>Accessor is generated in the same package, named after class with {@code FieldAccessor} suffix
+ * (e.g. {@code FooFieldAccessor} for class {@code Foo}), and exposes its (singleton) instance as {@code Instance}.
+ * Each field must have public getter and setter, named after field (case-insensitive), e.g. {@code getFooBar()} and
+ * {@code setFooBar(value)} for field {@code foobar}. Annotated class then implements
+ * {@link HasFields#pull(Enum, HasFields, FieldGraph)} by delegating to accessor, and exposes it via
+ * {@link HasFields#fieldAccessor()}:</p>
+ *
+ * <blockquote><pre>
+ * &#64;GenerateFieldAccessor
+ * public class Foo extends FieldsObject&lt;Foo, Foo.Field&gt; {
+ * 	...
+ * 	&#64;Override
+ * 	public Object pull(Field field, Foo other, FieldGraph&lt;Field&gt; graph) {
+ * 		return FooFieldAccessor.Instance.pull(field, this, other, graph);
+ * 	}
+ *
+ * 	&#64;Override
+ * 	public FieldAccessor&lt;Foo, Field&gt; fieldAccessor() {
+ * 		return FooFieldAccessor.Instance;
+ * 	}
+ * }
+ * </pre></blockquote>
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateFieldAccessor {
+}
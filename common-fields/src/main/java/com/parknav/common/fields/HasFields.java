@@ -2,14 +2,15 @@ package com.parknav.common.fields;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
 import com.google.common.collect.Sets;
 import com.parknav.common.fields.service.FieldsService;
@@ -36,6 +37,8 @@ public interface HasFields<C extends HasFields<C, F>, F extends Enum<F> & FieldE
 	 * Sets which fields are initialized within this object.
 	 *
 	 * @param fields fields initialized within this object
+	 *
+	 * @throws UnsupportedOperationException if object is {@link #freeze() frozen}
 	 */
 	void setFields(Set<F> fields);
 
@@ -48,7 +51,23 @@ public interface HasFields<C extends HasFields<C, F>, F extends Enum<F> & FieldE
 	 */
 	@SuppressWarnings("unchecked")
 	default boolean hasFields(F... fields) {
-		return hasFields(Arrays.asList(fields));
+		Set<F> thisFields = getFields();
+		for (F field : fields)
+			if (!thisFields.contains(field))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Checks if all requested fields are set. Prefer this method (with {@code mask} precomputed) on hot paths, since it
+	 * neither allocates nor iterates (for fields held in {@link FieldSet}).
+	 *
+	 * @param mask fields to check
+	 *
+	 * @return {@code true} if all requested fields are set, {@code false} otherwise.
+	 */
+	default boolean hasFields(FieldMask<F> mask) {
+		return mask.isContainedIn(getFields());
 	}
 
 	/**
@@ -85,7 +104,11 @@ public interface HasFields<C extends HasFields<C, F>, F extends Enum<F> & FieldE
 	 * @throws IllegalArgumentException if any of specified fields can't be parsed as enum of type returned by {@link #getFieldsClass()}
 	 */
 	default boolean hasFieldsAsString(Collection<String> fields) {
-		return hasFields(fields.stream().map(this::parseField).collect(Collectors.toSet()));
+		Set<F> thisFields = getFields();
+		boolean hasFields = true;
+		for (String field : fields)
+			hasFields &= thisFields.contains(parseField(field));	// parse all fields, so that unparsable ones are always reported
+		return hasFields;
 	}
 
 	/**
@@ -116,11 +139,14 @@ public interface HasFields<C extends HasFields<C, F>, F extends Enum<F> & FieldE
 	 * @throws IllegalArgumentException if specified value can't be parsed as enum of type returned by {@link #getFieldsClass()}
 	 */
 	default F parseField(String str) {
-		return Enum.valueOf(getFieldsClass(), str);
+		return FieldEnumRegistry.of(getFieldsClass()).parse(str);
 	}
 
 	/**
 	 * <p>Retrieves value for requested field.</p>
+	 *
+	 * <p>Uses {@link #fieldAccessor()} if provided, otherwise piggybacks on {@link #pull(Enum, HasFields, FieldGraph)}
+	 * (from self), so neither allocates.</p>
 	 * 
 	 * @param field field for which value is requested
 	 * 
@@ -128,6 +154,9 @@ public interface HasFields<C extends HasFields<C, F>, F extends Enum<F> & FieldE
 	*/
 	@SuppressWarnings("unchecked")
 	default Object getFieldValue(F field) {
+		FieldAccessor<C, F> accessor = fieldAccessor();
+		if (accessor != null)
+			return accessor.get((C) this, field);
 		// piggyback on pull (from self)
 		return pull(field, (C) this, FieldGraph.noneOf(getFieldsClass()));
 	}
@@ -144,7 +173,7 @@ public interface HasFields<C extends HasFields<C, F>, F extends Enum<F> & FieldE
 	 */
 	@SuppressWarnings("unchecked")
 	default <X> X getIfPresent(Supplier<X> supplier, F... fields) {
-		return getIfPresent(supplier, Arrays.asList(fields));
+		return hasFields(fields) ? supplier.get() : null;
 	}
 	
 	/**
@@ -161,6 +190,20 @@ public interface HasFields<C extends HasFields<C, F>, F extends Enum<F> & FieldE
 		return hasFields(fields) ? supplier.get() : null;
 	}
 
+	/**
+	 * <p>Retrieves value (via provided supplier) but only if all requested fields are set.
+	 * Circumvents {@link FieldUnavailableException} for uninitialized fields.</p>
+	 *
+	 * @param supplier supplier for given value
+	 * @param mask fields to check for presence
+	 * @param <X> value's type
+	 *
+	 * @return requested field's value.
+	 */
+	default <X> X getIfPresent(Supplier<X> supplier, FieldMask<F> mask) {
+		return hasFields(mask) ? supplier.get() : null;
+	}
+
 	/**
 	 * <p>Retrieves value (via provided supplier) as {@link Optional} but only if all requested fields are set.
 	 * Circumvents {@link FieldUnavailableException} for uninitialized fields.</p>
@@ -190,6 +233,20 @@ public interface HasFields<C extends HasFields<C, F>, F extends Enum<F> & FieldE
 		return Optional.ofNullable(getIfPresent(supplier, fields));
 	}
 
+	/**
+	 * <p>Retrieves value (via provided supplier) as {@link Optional} but only if all requested fields are set.
+	 * Circumvents {@link FieldUnavailableException} for uninitialized fields.</p>
+	 *
+	 * @param supplier supplier for given value
+	 * @param mask fields to check for presence
+	 * @param <X> value's type
+	 *
+	 * @return {@link Optional} holding requested field's value.
+	 */
+	default <X> Optional<X> getOptional(Supplier<X> supplier, FieldMask<F> mask) {
+		return Optional.ofNullable(getIfPresent(supplier, mask));
+	}
+
 	/**
 	 * <p>Helper method that throws {@link FieldUnavailableException} if field is not initialized.</p>
 	 * 
@@ -233,6 +290,8 @@ public interface HasFields<C extends HasFields<C, F>, F extends Enum<F> & FieldE
 	 * @param <V> value's type
 	 *
 	 * @return {@code value}
+	 *
+	 * @throws UnsupportedOperationException if object is {@link #freeze() frozen}
 	 */
 	default <V> V fieldSet(F field, V value) {
 		getFields().add(field);
@@ -258,7 +317,15 @@ public interface HasFields<C extends HasFields<C, F>, F extends Enum<F> & FieldE
 	 *
 	 * @return {@code true} if any field was cleared, {@code false} otherwise
 	 */
+	@SuppressWarnings("unchecked")
 	default boolean clearFields(Collection<F> fields) {
+		FieldAccessor<C, F> accessor = fieldAccessor();
+		if (accessor != null) {
+			for (F field : fields)
+				if (getFields().contains(field))
+					accessor.clear((C) this, field);
+			return getFields().removeAll(fields);
+		}
 		// nullify by pulling from dummy
 		C dummy = ref();
 		dummy.getFields().addAll(fields);	// initialize fields so that possible checks in getter do not fail
@@ -269,13 +336,104 @@ public interface HasFields<C extends HasFields<C, F>, F extends Enum<F> & FieldE
 	}
 	
 	/** Strips sub-objects to references */
+	@SuppressWarnings("unchecked")
 	default void flatten() {
 		FieldGraph<F> flatGraph = FieldGraph.of(getFields());
+		FieldAccessor<C, F> accessor = fieldAccessor();
+		if (accessor != null) {
+			// only values of fields which describe sub-objects have to be (flat) copied
+			for (F field : FieldEnumRegistry.of(getFieldsClass()).getSubgraphFields())
+				if (getFields().contains(field))
+					accessor.set((C) this, field, accessor.copy(field, accessor.get((C) this, field), flatGraph));
+			return;
+		}
 		C flatClone = cloneFlat();	// have to clone, because pull doesn't change value if pulling from self
 		for (F field : getFields())
 			pull(field, flatClone, flatGraph);
 	}
 	
+	/**
+	 * <p>Makes this object (and all its sub-objects, including ones held in collections, maps and arrays) read-only,
+	 * so it can be safely shared (e.g. by {@link FieldsEntityCache#getReadOnly(Object)}) without copying.</p>
+	 *
+	 * <p>Freezing relies on fields being held in {@link FieldSet} (fields held in any other set are replaced by one):
+	 * once frozen, modifying fields (and therefore calling any setter using {@link #fieldSet}) throws
+	 * {@link UnsupportedOperationException}. Collection and map values are replaced by their unmodifiable views (if
+	 * object provides {@link #fieldAccessor() field accessor}, through which they are replaced). Arrays (and collections
+	 * nested in collections) can't be wrapped, so they must not be modified. Use {@link #mutable()} to obtain
+	 * modifiable object.</p>
+	 *
+	 * @return this
+	 */
+	@SuppressWarnings("unchecked")
+	default C freeze() {
+		if (isFrozen())
+			return (C) this;	// also stops on cycles
+		Set<F> fields = getFields();
+		FieldSet<F> frozenFields = fields instanceof FieldSet ? (FieldSet<F>) fields : FieldSet.of(getFieldsClass(), fields);
+		if (frozenFields != fields)
+			setFields(frozenFields);
+		FieldAccessor<C, F> accessor = fieldAccessor();
+		if (accessor != null) {
+			// before fields are frozen, since setters initialize fields
+			for (F field : frozenFields) {
+				Object value = accessor.get((C) this, field);
+				Object frozenValue = FrozenValues.of(value);
+				if (frozenValue != value)
+					accessor.set((C) this, field, frozenValue);
+			}
+		}
+		frozenFields.freeze();
+		for (F field : FieldEnumRegistry.of(getFieldsClass()).getSubgraphFields())
+			if (frozenFields.contains(field))
+				_freezeRecursively(getFieldValue(field));
+		return (C) this;
+	}
+
+	/**
+	 * <p>Freezes all instances of {@link HasFields} in {@code value}, descending into collections, maps and arrays.</p>
+	 *
+	 * <p><b>INTERNAL</b></p>
+	 *
+	 * @param value value to freeze
+	 */
+	default void _freezeRecursively(Object value) {
+		if (value instanceof HasFields) {
+			((HasFields<?, ?>) value).freeze();
+		} else if (value instanceof Collection) {
+			for (Object item : (Collection<?>) value)
+				_freezeRecursively(item);
+		} else if (value instanceof Map) {
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				_freezeRecursively(entry.getKey());
+				_freezeRecursively(entry.getValue());
+			}
+		} else if (value instanceof Object[]) {
+			for (Object item : (Object[]) value)
+				_freezeRecursively(item);
+		}
+	}
+
+	/**
+	 * @return {@code true} if this object is {@link #freeze() frozen} (read-only)
+	 */
+	default boolean isFrozen() {
+		Set<F> fields = getFields();
+		return fields instanceof FieldSet && ((FieldSet<F>) fields).isFrozen();
+	}
+
+	/**
+	 * Returns modifiable object: this object itself, unless it's {@link #freeze() frozen}, in which case its
+	 * {@link #cloneAll() copy} is returned. Allows read-only callers to avoid copying altogether, while others copy
+	 * only just before (and if) they modify it.
+	 *
+	 * @return this object if it's modifiable, its copy otherwise
+	 */
+	@SuppressWarnings("unchecked")
+	default C mutable() {
+		return isFrozen() ? cloneAll() : (C) this;
+	}
+
 	/**
 	 * <p>Copies value represented by given field from another object.</p>
 	 *
@@ -285,6 +443,9 @@ public interface HasFields<C extends HasFields<C, F>, F extends Enum<F> & FieldE
 	 * 	<li>if {@code graph == null}, pull whole sub-tree for every sub-object</li>
 	 * </ul>
 	 *
+	 * <p>Classes which provide {@link #fieldAccessor()} can implement this method by simply delegating to
+	 * {@link FieldAccessor#pull(Enum, HasFields, HasFields, FieldGraph)} (see {@link GenerateFieldAccessor}).</p>
+	 *
 	 * <p>Implementations usually use {@link #pull(HasFields, Supplier, Consumer)} or {@link #pull(HasFields, Supplier, Consumer, Function)} when providing own functionality, like:</p>
 	 * <blockquote><pre>
 	 * &#64;Override
@@ -306,6 +467,17 @@ public interface HasFields<C extends HasFields<C, F>, F extends Enum<F> & FieldE
 	 */
 	Object pull(F field, C other, FieldGraph<F> graph);
 
+	/**
+	 * <p>Returns accessor for this object's fields, usually generated for classes annotated with {@link GenerateFieldAccessor}.</p>
+	 *
+	 * <p>If provided, accessor is used to pull, clear and flatten fields without capturing lambdas or temporary objects.</p>
+	 *
+	 * @return field accessor for this object's class, or {@code null} if class doesn't provide one
+	 */
+	default FieldAccessor<C, F> fieldAccessor() {
+		return null;
+	}
+
 	/**
 	 * <p>Utility method to implement {@link #pull(Enum, HasFields, FieldGraph)}.</p>
 	 * <p>NOTE: Doesn't invoke {@code consumer} if {@code other == this}.</p>
@@ -485,34 +657,35 @@ public interface HasFields<C extends HasFields<C, F>, F extends Enum<F> & FieldE
 		Object subObject = getFieldValue(field);
 		Object subExtension = extension.getFieldValue(field);
 
-		_extendRecursively(subObject, subExtension, field, graph);
+		// index extension's sub-objects once, so that each of (possibly many) sub-objects is matched in constant time
+		_extendRecursively(subObject, _index(subExtension), field, graph);
 		
 	}
 
 	/**
-	 * <p>Recursively extends {@code subObject} by pulling {@code field}'s value from {@code subExtension}. If {@code subObject}
-	 * represents {@link Collection}, descends extension to all members. If {@code subObject} represents {@link Map},
-	 * descends extension to all keys and values (if they implement {@link HasFields}).</p>
+	 * <p>Recursively extends {@code subObject} by pulling {@code field}'s value from matching instance in {@code subExtensions}.
+	 * If {@code subObject} represents {@link Collection}, descends extension to all members. If {@code subObject} represents
+	 * {@link Map}, descends extension to all keys and values (if they implement {@link HasFields}).</p>
 	 *
 	 * <p><b>INTERNAL</b></p>
 	 *
 	 * @param subObject object to extend
-	 * @param subExtension extension from which to pull values (may be instance of {@link HasFields}, but also {@link Collection}
-	 *                     or {@link Map} holding instance of required {@link HasFields}
+	 * @param subExtensions extensions from which to pull values, as built by {@link #_index(Object)} from field's value
+	 *                      in extension
 	 * @param field field describing value to pull
 	 * @param graph fields graph from which to extract subgraph for requested field
 	 *
 	 * @throws IllegalStateException if {@code subObject} doesn't represent instance/collection/map of {@link HasFields}
-	 * @throws EntityUnavailableException if {@code subExtension} doesn't equal to {@code subObject} or doesn't contain {@code subObject} (for collections and maps)
+	 * @throws EntityUnavailableException if {@code subExtensions} don't contain {@code subObject} (or any of its members, for collections and maps)
 	 */
-	default void _extendRecursively(Object subObject, Object subExtension, F field, FieldGraph<F> graph) throws EntityUnavailableException {
+	default void _extendRecursively(Object subObject, Map<Object, HasFields<?, ?>> subExtensions, F field, FieldGraph<F> graph) throws EntityUnavailableException {
 
 		if (subObject instanceof HasFields) {
 
 			// simple sub-object
 			
 			HasFields<?, ?> fieldSubObject = (HasFields<?, ?>) subObject;
-			HasFields<?, ?> fieldSubExtension = _search(fieldSubObject, subExtension);
+			HasFields<?, ?> fieldSubExtension = subExtensions.get(fieldSubObject);
 			
 			if (fieldSubExtension == null)
 				throw new EntityUnavailableException(fieldSubObject);
@@ -521,8 +694,6 @@ public interface HasFields<C extends HasFields<C, F>, F extends Enum<F> & FieldE
 			
 		} else if (subObject instanceof Collection) {
 
-			// BEWARE: O(n^m) (n - size of largest collection, m - levels of nested collections)
-
 			Collection<?> subCollection = (Collection<?>) subObject;
 
 			if (subCollection.isEmpty())
@@ -530,12 +701,10 @@ public interface HasFields<C extends HasFields<C, F>, F extends Enum<F> & FieldE
 
 			// append missing sub-graph for *every* member
 			for (Object subItem : subCollection)
-				_extendRecursively(subItem, subExtension, field, graph);
+				_extendRecursively(subItem, subExtensions, field, graph);
 
 		} else if (subObject instanceof Map) {
 
-			// BEWARE: O(n^2m) (n - size of largest collection, m - levels of nested collections)
-
 			Map<?, ?> subMap = (Map<?, ?>) subObject;
 
 			if (subMap.isEmpty())
@@ -550,13 +719,13 @@ public interface HasFields<C extends HasFields<C, F>, F extends Enum<F> & FieldE
 			for (Map.Entry<?, ?> subEntry : subMap.entrySet()) {
 				if (processKey)
 					try {
-						_extendRecursively(subEntry.getKey(), subExtension, field, graph);
+						_extendRecursively(subEntry.getKey(), subExtensions, field, graph);
 					} catch (IllegalStateException e) {
 						processKey = false;	// no need to try again
 					}
 				if (processValue)
 					try {
-						_extendRecursively(subEntry.getValue(), subExtension, field, graph);
+						_extendRecursively(subEntry.getValue(), subExtensions, field, graph);
 					} catch (IllegalStateException e) {
 						processValue = false;	// no need to try again
 					}
@@ -575,90 +744,89 @@ public interface HasFields<C extends HasFields<C, F>, F extends Enum<F> & FieldE
 	}
 
 	/**
-	 * <p>Recursively searches for instance of {@code object} inside {@code tree} (using {@link Object#equals}). If {@code tree}
-	 * represents {@link Collection}, descends search to all members. If {@code tree} represents {@link Map},
-	 * descends search to all keys and values (if they implement {@link HasFields}).</p>
+	 * <p>Indexes all instances of {@link HasFields} inside {@code tree}, so that each of them can be found (using
+	 * {@link Object#equals}, i.e. by ID for {@link FieldsEntity}) in constant time. If {@code tree} represents
+	 * {@link Collection}, descends to all members. If {@code tree} represents {@link Map}, descends to all keys and
+	 * values (if they implement {@link HasFields}).</p>
 	 *
-	 * <p>Performs DFS, but it will stop descending deeper after it encounters HasFields instance.
-	 * Since all instances in tree at same level contain same fields, it doesn't matter which instance is found.</p>
-	 *
-	 * <p>TODO use BFS</p>
+	 * <p>Doesn't descend into {@link HasFields} instances. Since all instances in tree at same level contain same
+	 * fields, it doesn't matter which one of equal instances is indexed (first one is).</p>
 	 *
 	 * <p><b>INTERNAL</b></p>
 
-	 * @param object object to search for
-	 * @param tree {@link HasFields}, {@link Collection} or {@link Map} where to search for {@code object}
+	 * @param tree {@link HasFields}, {@link Collection} or {@link Map} to index (may be {@code null})
 
-	 * @return found {@code object}
+	 * @return instances found in {@code tree}, mapped to themselves
 	 *
-	 * @throws IllegalStateException if {@code subObject} doesn't represent instance/collection/map of {@link HasFields}
+	 * @throws IllegalStateException if {@code tree} doesn't represent instance/collection/map of {@link HasFields}
 	 */
-	default HasFields<?, ?> _search(HasFields<?, ?> object, Object tree) {
-		
+	default Map<Object, HasFields<?, ?>> _index(Object tree) {
+
 		if (tree == null)
-			return null;
-		
+			return Collections.emptyMap();
+
+		if (tree instanceof HasFields)
+			return Collections.singletonMap(tree, (HasFields<?, ?>) tree);	// no need for hash table
+
+		Map<Object, HasFields<?, ?>> index = new HashMap<>();
+		_indexRecursively(tree, index);
+		return index;
+
+	}
+
+	/**
+	 * <p>Appends all instances of {@link HasFields} inside {@code tree} to {@code index}.</p>
+	 *
+	 * <p><b>INTERNAL</b></p>
+	 *
+	 * @param tree {@link HasFields}, {@link Collection} or {@link Map} to index (may be {@code null})
+	 * @param index index to append instances to
+	 *
+	 * @throws IllegalStateException if {@code tree} doesn't represent instance/collection/map of {@link HasFields}
+	 *
+	 * @see #_index(Object)
+	 */
+	default void _indexRecursively(Object tree, Map<Object, HasFields<?, ?>> index) {
+
+		if (tree == null)
+			return;
+
 		if (tree instanceof HasFields) {
-			
-			HasFields<?, ?> fieldTree = (HasFields<?, ?>) tree;
-			
-			if (object.equals(fieldTree))
-				return fieldTree;
-			
-			return null;
-		
-		} else if (tree instanceof Collection) {
 
-			Collection<?> treeCollection = (Collection<?>) tree;
+			index.putIfAbsent(tree, (HasFields<?, ?>) tree);
 
-			if (treeCollection.isEmpty())
-				return null;
+		} else if (tree instanceof Collection) {
+
+			for (Object treeItem : (Collection<?>) tree)
+				_indexRecursively(treeItem, index);
 
-			for (Object treeItem : treeCollection) {
-				HasFields<?, ?> item = _search(object, treeItem);
-				if (item != null)
-					return item;
-			}
-			
-			return null;
-				
 		} else if (tree instanceof Map) {
 
 			Map<?, ?> treeMap = (Map<?, ?>) tree;
 
-			if (treeMap.isEmpty())
-				return null;
-
-			// search both keys and values (ignoring IllegalStateException(s)),
+			// index both keys and values (ignoring IllegalStateException(s)),
 			// assuming either one is legal field-object
 			// throw IllegalStateException only if neither key nor value could be processed
 			boolean processKey = true;
 			boolean processValue = true;
 
 			for (Map.Entry<?, ?> treeEntry : treeMap.entrySet()) {
-				HasFields<?, ?> item;
 				if (processKey)
 					try {
-						item = _search(object, treeEntry.getKey());
-						if (item != null)
-							return item;
+						_indexRecursively(treeEntry.getKey(), index);
 					} catch (IllegalStateException e) {
 						processKey = false;	// no need to try again
 					}
 				if (processValue)
 					try {
-						item = _search(object, treeEntry.getValue());
-						if (item != null)
-							return item;
+						_indexRecursively(treeEntry.getValue(), index);
 					} catch (IllegalStateException e) {
 						processValue = false;	// no need to try again
 					}
 				if (!processKey && !processValue)
 					throw new IllegalStateException("Tree " + tree + " descends into a map whose nor key nor value doesn't support field access");
 			}
-			
-			return null;
-				
+
 		} else {
 
 			// TODO arrays
@@ -1,5 +1,9 @@
 package com.parknav.common.fields.service;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import com.parknav.common.fields.FieldEnum;
 import com.parknav.common.fields.FieldGraph;
 import com.parknav.common.fields.HasEntityFields;
@@ -58,5 +62,28 @@ public interface FieldsService<I, C extends HasEntityFields<I, C, F>, F extends
 	 * @return resolved entity or {@code null} if entity could not be found
 	 */
 	C get(I id, FieldGraph<F> graph);
-	
+
+	/**
+	 * <p>Resolves entities with given IDs with fields initialized as specified by {@code graph}.</p>
+	 *
+	 * <p>Default implementation resolves entities one by one, using {@link #get(Object, FieldGraph)}. Implementations
+	 * should override it to resolve all entities at once (e.g. using single query), whenever store allows it.</p>
+	 *
+	 * @param ids IDs of entities to resolve
+	 * @param graph field graph to initialize
+	 *
+	 * @return resolved entities by their IDs (in order of {@code ids}), without entities which could not be found
+	 */
+	default Map<I, C> getAll(Collection<I> ids, FieldGraph<F> graph) {
+		Map<I, C> entities = new LinkedHashMap<>();
+		for (I id : ids) {
+			if (entities.containsKey(id))
+				continue;
+			C entity = get(id, graph);
+			if (entity != null)
+				entities.put(id, entity);
+		}
+		return entities;
+	}
+
 }
@@ -0,0 +1,171 @@
+package com.parknav.common.fields.service.async;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * <p>Resolves multiple entities by resolving each one of them separately, notifying handler (with entities by their
+ * IDs) once all of them are resolved (see {@link FieldsAsyncService#getAll}).</p>
+ *
+ * <p>Aggregate request fails if any of entities fails to resolve (or gets cancelled by someone else), and cancelling it
+ * cancels all pending requests.</p>
+ *
+ * @param <I> ID type
+ * @param <C> entity type
+ */
+class AggregateFieldsRequest<I, C> implements FieldsRequest {
+
+	/**
+	 * Starts resolving entities with given IDs.
+	 *
+	 * @param ids IDs of entities to resolve (duplicates are resolved once)
+	 * @param resolver starts resolving entity with given ID
+	 * @param handler handler to notify with resolved entities by their IDs (in order of {@code ids}), without entities
+	 *                which could not be found
+	 * @param <I> ID type
+	 * @param <C> entity type
+	 *
+	 * @return request describing this asynchronous operation ({@code null} if there are no IDs)
+	 */
+	static <I, C> FieldsRequest start(Collection<I> ids, BiFunction<I, FieldsServiceHandler<C>, FieldsRequest> resolver, FieldsServiceHandler<Map<I, C>> handler) {
+
+		if (ids.isEmpty()) {
+			// short-circuit
+			handler.onSuccess(new LinkedHashMap<>());
+			handler.onFinish();
+			handler.onDestroy();
+			return null;
+		}
+
+		AggregateFieldsRequest<I, C> request = new AggregateFieldsRequest<>(new LinkedHashSet<>(ids), handler);
+
+		handler.onPreRequest(request);
+
+		for (I id : request.ids) {
+			synchronized (request) {
+				if (request.cancelled) {
+					request.pending--;
+					continue;
+				}
+			}
+			FieldsRequest subrequest = resolver.apply(id, request.new Handler(id));
+			if (subrequest != null) {
+				synchronized (request) {
+					request.subrequests.add(subrequest);
+				}
+			}
+		}
+
+		return request;
+
+	}
+
+	private AggregateFieldsRequest(Set<I> ids, FieldsServiceHandler<Map<I, C>> handler) {
+		this.ids = ids;
+		this.handler = handler;
+		pending = ids.size();
+	}
+
+	@Override
+	public void cancel() {
+
+		List<FieldsRequest> subrequests;
+
+		synchronized (this) {
+			if (cancelled || pending == 0)
+				return;	// already cancelled or finished
+			cancelled = true;
+			subrequests = new ArrayList<>(this.subrequests);
+		}
+
+		try {
+			for (FieldsRequest subrequest : subrequests)
+				subrequest.cancel();
+		} finally {
+			handler.onCancel();
+			handler.onDestroy();
+		}
+
+	}
+
+	/** Collects result of request resolving one entity */
+	private class Handler implements FieldsServiceHandler<C> {
+
+		private Handler(I id) {
+			this.id = id;
+		}
+
+		@Override
+		public void onSuccess(C entity) {
+			synchronized (AggregateFieldsRequest.this) {
+				if (entity != null)
+					entities.put(id, entity);
+			}
+		}
+
+		@Override
+		public void onCancel() {
+			synchronized (AggregateFieldsRequest.this) {
+				failed = true;	// unless cancelled by aggregate request, in which case it doesn't matter
+			}
+		}
+
+		@Override
+		public void onFail() {
+			synchronized (AggregateFieldsRequest.this) {
+				failed = true;
+			}
+		}
+
+		@Override
+		public void onDestroy() {
+
+			Map<I, C> result = null;
+
+			synchronized (AggregateFieldsRequest.this) {
+				if (--pending > 0 || cancelled)
+					return;
+				if (!failed) {
+					result = new LinkedHashMap<>();
+					for (I id : ids)
+						if (entities.containsKey(id))
+							result.put(id, entities.get(id));
+				}
+			}
+
+			try {
+				if (result != null)
+					handler.onSuccess(result);
+				else
+					handler.onFail();
+			} finally {
+				handler.onPostRequest(AggregateFieldsRequest.this);
+				try {
+					handler.onFinish();
+				} finally {
+					handler.onDestroy();
+				}
+			}
+
+		}
+
+		private final I id;
+
+	}
+
+	private final Set<I> ids;
+	private final FieldsServiceHandler<Map<I, C>> handler;
+	private final Map<I, C> entities = new HashMap<>();		// resolved entities (guarded by this)
+	private final List<FieldsRequest> subrequests = new ArrayList<>();		// started requests (guarded by this)
+	private int pending;				// number of requests not destroyed yet (guarded by this)
+	private boolean failed = false;		// guarded by this
+	private boolean cancelled = false;	// guarded by this
+
+}
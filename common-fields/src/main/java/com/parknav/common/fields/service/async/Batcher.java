@@ -1,18 +1,38 @@
 package com.parknav.common.fields.service.async;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
 
 import com.parknav.common.fields.FieldEnum;
 import com.parknav.common.fields.FieldGraph;
 import com.parknav.common.fields.HasEntityFields;
 
 /**
- * Batches operations on one {@link FieldsAsyncService}.
+ * <p>Batches operations on one {@link FieldsAsyncService}.</p>
+ *
+ * <p>Queued operations are executed when {@link #run()} is called, unless batcher is constructed with scheduler (see
+ * {@link #Batcher(FieldsAsyncService, ScheduledExecutorService, int, long, TimeUnit)}), in which case it executes them
+ * on its own, once enough distinct entities are queued or once the oldest queued operation waited long enough.</p>
+ *
+ * <p>Entities which are (after merging graphs of all their queued operations) requested with identical graphs are
+ * retrieved with one {@link FieldsAsyncService#getAll} call, so backing services which can retrieve multiple entities
+ * at once should implement it.</p>
+ *
+ * <p>Thread-safe. Operations are queued without locking (so that concurrent producers don't serialize), into batch
+ * which is atomically swapped for an empty one when executed.</p>
  *
  * @param <I> ID type
  * @param <C> concrete implementation of class implementing {@link HasEntityFields}
@@ -33,20 +53,147 @@ public class Batcher<I, C extends HasEntityFields<I, C, F>, F extends Enum<F> &
 		}
 		
 		public void queue(FieldGraph<F> graph, FieldsServiceHandler<C> handler) {
-			if (graphBuilder == null)
-				graphBuilder = FieldGraph.Builder.of(graph.getDeclaringClass());
-			graphBuilder.add(graph);
+			graphs.add(graph);
 			handlers.add(handler);
 		}
+
+		/**
+		 * @return union of all queued graphs
+		 */
+		public FieldGraph<F> getGraph() {
+			FieldGraph.Builder<F> graphBuilder = FieldGraph.Builder.of(graphs.peek().getDeclaringClass());
+			for (FieldGraph<F> graph : graphs)
+				graphBuilder.add(graph);
+			return graphBuilder.build();
+		}
 		
 		private final I id;
-		private final Queue<FieldsServiceHandler<C>> handlers = new LinkedList<>();
-		private FieldGraph.Builder<F> graphBuilder = null;
-		private FieldsRequest request = null;
-		private boolean finished = false;
+		private final Queue<FieldsServiceHandler<C>> handlers = new ConcurrentLinkedQueue<>();
+		private final Queue<FieldGraph<F>> graphs = new ConcurrentLinkedQueue<>();		// merged once job is executed
+		private volatile FieldsRequest request = null;
+		private volatile boolean finished = false;
 		
 	}
 
+	/** Jobs queued since batcher last executed them. */
+	private class Batch {
+
+		/**
+		 * Registers producer about to queue job into this batch.
+		 *
+		 * @return {@code false} if batch is already being executed (so job should be queued into next one)
+		 */
+		private boolean enter() {
+			while (true) {
+				int producers = this.producers.get();
+				if (producers < 0)
+					return false;
+				if (this.producers.compareAndSet(producers, producers + 1))
+					return true;
+			}
+		}
+
+		/** Unregisters producer, once it queued its job. */
+		private void exit() {
+			producers.decrementAndGet();
+		}
+
+		/**
+		 * Closes batch for producers (waiting for ones still queueing their jobs).
+		 *
+		 * @return queued jobs, in order of queueing
+		 */
+		private List<Job> drain() {
+
+			int producers;
+			do {
+				producers = this.producers.get();
+			} while (!this.producers.compareAndSet(producers, producers | Integer.MIN_VALUE));
+
+			while (this.producers.get() != Integer.MIN_VALUE)
+				Thread.onSpinWait();	// producers only queue their jobs (without calling handlers or scheduler), so they won't take long
+
+			if (timer != null)
+				timer.cancel(false);
+
+			return new ArrayList<>(order);
+
+		}
+
+		private final ConcurrentMap<I, Job> jobs = new ConcurrentHashMap<>();
+		private final Queue<Job> order = new ConcurrentLinkedQueue<>();		// jobs in order of queueing
+		private final AtomicInteger size = new AtomicInteger();		// number of jobs
+		private final AtomicInteger producers = new AtomicInteger();		// producers queueing jobs (with sign bit set once batch is closed)
+		private volatile ScheduledFuture<?> timer = null;		// pending execution of this batch after maxDelay
+
+	}
+
+	/**
+	 * Notifies handlers of given jobs about (single or bulk) request retrieving them.
+	 *
+	 * @param <T> result type of the request
+	 */
+	private class JobsHandler<T> implements FieldsServiceHandler<T> {
+
+		/**
+		 * @param jobs jobs retrieved by request
+		 * @param entityOf extracts entity with given ID from request's result
+		 */
+		private JobsHandler(List<Job> jobs, BiFunction<T, I, C> entityOf) {
+			this.jobs = jobs;
+			this.entityOf = entityOf;
+		}
+
+		// NOTE: we already called onPreRequest(FieldsRequest) when queuing jobs, so don't call again
+		@Override
+		public void onPostRequest(FieldsRequest request) {
+			for (Job job : jobs)
+				for (FieldsServiceHandler<C> handler : job.handlers)
+					handler.onPostRequest(request);
+		}
+		@Override
+		public void onSuccess(T value) {
+			for (Job job : jobs) {
+				job.finished = true;	// from now on, calling cancel() should be no-op
+				C entity = entityOf.apply(value, job.id);
+				for (FieldsServiceHandler<C> handler : job.handlers)
+					handler.onSuccess(entity);
+			}
+		}
+		@Override
+		public void onCancel() {
+			for (Job job : jobs) {
+				job.finished = true;	// from now on, calling cancel() should be no-op
+				for (FieldsServiceHandler<C> handler : job.handlers)
+					handler.onCancel();
+			}
+		}
+		@Override
+		public void onFail() {
+			for (Job job : jobs) {
+				job.finished = true;	// from now on, calling cancel() should be no-op
+				for (FieldsServiceHandler<C> handler : job.handlers)
+					handler.onFail();
+			}
+		}
+		@Override
+		public void onFinish() {
+			for (Job job : jobs)
+				for (FieldsServiceHandler<C> handler : job.handlers)
+					handler.onFinish();
+		}
+		@Override
+		public void onDestroy() {
+			for (Job job : jobs)
+				for (FieldsServiceHandler<C> handler : job.handlers)
+					handler.onDestroy();
+		}
+
+		private final List<Job> jobs;
+		private final BiFunction<T, I, C> entityOf;
+
+	}
+
 	/**
 	 * Constructs new instance using {@code service} as backing service.
 	 *
@@ -54,6 +201,31 @@ public class Batcher<I, C extends HasEntityFields<I, C, F>, F extends Enum<F> &
 	 */
 	public Batcher(FieldsAsyncService<I, C, F> service) {
 		this.service = service;
+		scheduler = null;
+		maxJobs = Integer.MAX_VALUE;
+		maxDelay = 0;
+	}
+
+	/**
+	 * Constructs new instance using {@code service} as backing service, executing queued operations (using
+	 * {@code scheduler}) as soon as {@code maxJobs} distinct entities are queued, when the oldest queued operation
+	 * waited for {@code maxDelay}, or when {@link #flush()} is called (whichever comes first).
+	 *
+	 * @param service backing service to delegate calls to
+	 * @param scheduler scheduler to execute queued operations with
+	 * @param maxJobs number of distinct entities that triggers execution
+	 * @param maxDelay maximum time operation may stay queued
+	 * @param unit unit of {@code maxDelay}
+	 */
+	public Batcher(FieldsAsyncService<I, C, F> service, ScheduledExecutorService scheduler, int maxJobs, long maxDelay, TimeUnit unit) {
+		if (maxJobs <= 0)
+			throw new IllegalArgumentException("maxJobs must be positive: " + maxJobs);
+		if (maxDelay < 0)
+			throw new IllegalArgumentException("maxDelay must not be negative: " + maxDelay);
+		this.service = service;
+		this.scheduler = scheduler;
+		this.maxJobs = maxJobs;
+		this.maxDelay = unit.toNanos(maxDelay);
 	}
 
 	@Override
@@ -62,103 +234,191 @@ public class Batcher<I, C extends HasEntityFields<I, C, F>, F extends Enum<F> &
 	}
 	
 	@Override
-	synchronized public FieldsRequest get(I id, FieldGraph<F> graph, FieldsServiceHandler<C> handler) {
-		
-		Job job = Jobs.get(id);
-		if (job == null)
-			Jobs.put(id, job = new Job(id));
+	public FieldsRequest get(I id, FieldGraph<F> graph, FieldsServiceHandler<C> handler) {
 
-		job.queue(graph, handler);
-		
-		final Job finalJob = job;
-		FieldsRequest request = new FieldsRequest() {
-			@Override
-			public void cancel() {
-				// calling cancel() on finished job should not trigger another onCancel
-				if (finalJob.finished)
-					return;
-				// can't cancel (cumulative) request, but we can remove handler from list of to-be-notified handlers
-				if (!finalJob.handlers.remove(handler))
-					return;	// not found, probably already cancelled
-				handler.onCancel();
-				handler.onDestroy();
-				// if there are no more handlers, cancel (cumulative) request
-				if (finalJob.handlers.isEmpty() && finalJob.request != null)
-					finalJob.request.cancel();
-			}
-		};
-		
+		// handler is notified before it's queued, so that job can't be executed before handler is notified
+		HandlerRequest request = new HandlerRequest(handler);
 		handler.onPreRequest(request);
 
+		Batch batch;
+		while (!(batch = this.batch.get()).enter())
+			Thread.onSpinWait();	// batch is being executed, so queue into next one (which will be there in a moment)
+
+		Job job;
+		int size = 0;	// number of jobs in batch, once new job was queued
+
+		try {
+			job = batch.jobs.get(id);
+			if (job == null) {
+				Job newJob = new Job(id);
+				job = batch.jobs.putIfAbsent(id, newJob);
+				if (job == null) {
+					job = newJob;
+					batch.order.add(job);
+					size = batch.size.incrementAndGet();
+				}
+			}
+			job.queue(graph, handler);
+		} finally {
+			batch.exit();
+		}
+
+		request.queued(job);
+
+		if (scheduler != null && size > 0)
+			schedule(batch, size);
+
 		return request;
 
 	}
 
+	/**
+	 * Request of one handler of a job, which removes handler on cancel (and cancels job's request once there are no more
+	 * handlers). May be cancelled (by handler) before handler is queued into job.
+	 */
+	private class HandlerRequest implements FieldsRequest {
+
+		private HandlerRequest(FieldsServiceHandler<C> handler) {
+			this.handler = handler;
+		}
+
+		/**
+		 * Sets job handler was queued into, cancelling it right away if request was cancelled in the meantime.
+		 */
+		private void queued(Job job) {
+			this.job = job;
+			if (cancelled)
+				cancel(job);
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			Job job = this.job;
+			if (job != null)
+				cancel(job);	// otherwise, it's cancelled once queued
+		}
+
+		private void cancel(Job job) {
+			// calling cancel() on finished job should not trigger another onCancel
+			if (job.finished)
+				return;
+			// can't cancel (cumulative) request, but we can remove handler from list of to-be-notified handlers
+			if (!job.handlers.remove(handler))
+				return;	// not found, probably already cancelled
+			handler.onCancel();
+			handler.onDestroy();
+			// if there are no more handlers, cancel (cumulative) request
+			FieldsRequest jobRequest = job.request;
+			if (job.handlers.isEmpty() && jobRequest != null)
+				jobRequest.cancel();
+		}
+
+		private final FieldsServiceHandler<C> handler;
+		private volatile Job job = null;		// job handler was queued into (null until it's queued)
+		private volatile boolean cancelled = false;
+
+	}
+
+	/**
+	 * Executes queued operations (asynchronously, using scheduler), without waiting for batch to fill up or for its
+	 * delay to pass. Same as {@link #run()} if batcher has no scheduler.
+	 */
+	public void flush() {
+		if (scheduler != null)
+			scheduler.execute(this::run);
+		else
+			run();
+	}
+
 	/** Executes queued operations. */
 	public void run() {
+		run(pullJobsBatch());
+	}
+
+	private void run(List<Job> batch) {
 
-		List<Job> batch = pullJobsBatch();
+		// jobs with identical graphs are retrieved together
+		Map<FieldGraph<F>, List<Job>> jobsByGraph = new LinkedHashMap<>();
 
 		for (Job job : batch) {
 			
 			if (job.handlers.isEmpty())
 				continue;	// all handlers are cancelled
 			
-			FieldGraph<F> graph = job.graphBuilder.build();
-
-			job.request = service.get(job.id, graph, new FieldsServiceHandler<>() {
-				// NOTE: we already called onPreRequest(FieldsRequest) when queuing this instance, so don't call again
-				@Override
-				public void onPostRequest(FieldsRequest request) {
-					for (FieldsServiceHandler<C> handler : job.handlers)
-						handler.onPostRequest(request);
-				}
-				@Override
-				public void onSuccess(C entity) {
-					job.finished = true;	// from now on, calling cancel() should be no-op
-					for (FieldsServiceHandler<C> handler : job.handlers)
-						handler.onSuccess(entity);
-				}
-				@Override
-				public void onCancel() {
-					job.finished = true;	// from now on, calling cancel() should be no-op
-					for (FieldsServiceHandler<C> handler : job.handlers)
-						handler.onCancel();
-				}
-				@Override
-				public void onFail() {
-					job.finished = true;	// from now on, calling cancel() should be no-op
-					for (FieldsServiceHandler<C> handler : job.handlers)
-						handler.onFail();
-				}
-				@Override
-				public void onFinish() {
-					for (FieldsServiceHandler<C> handler : job.handlers)
-						handler.onFinish();
-				}
-				@Override
-				public void onDestroy() {
-					for (FieldsServiceHandler<C> handler : job.handlers)
-						handler.onDestroy();
-				}
-			});
+			jobsByGraph.computeIfAbsent(job.getGraph(), graph -> new ArrayList<>()).add(job);
 				
 		}
+
+		jobsByGraph.forEach((graph, jobs) -> {
+
+			if (jobs.size() == 1) {
+				Job job = jobs.get(0);
+				job.request = service.get(job.id, graph, new JobsHandler<C>(jobs, (entity, id) -> entity));
+				return;
+			}
+
+			List<I> ids = new ArrayList<>(jobs.size());
+			for (Job job : jobs)
+				ids.add(job.id);
+
+			FieldsRequest request = service.getAll(ids, graph, new JobsHandler<Map<I, C>>(jobs, Map::get));
+
+			if (request == null)
+				return;
+
+			// (cumulative) request is cancelled once handlers of all its jobs are cancelled
+			FieldsRequest jobRequest = () -> {
+				for (Job job : jobs)
+					if (!job.handlers.isEmpty())
+						return;
+				request.cancel();
+			};
+			for (Job job : jobs)
+				job.request = jobRequest;
+
+		});
 		
 	}
 
-	synchronized private List<Job> pullJobsBatch() {
-		
-		List<Job> batch = new ArrayList<>(Jobs.values());
-		
-		Jobs.clear();
-		
-		return batch;
-		
+	private List<Job> pullJobsBatch() {
+		return pullJobsBatch(batch.get());
 	}
 
-	private final FieldsAsyncService<I, C, F> service;
+	/**
+	 * Pulls queued jobs (swapping batch for an empty one), unless given batch was already pulled.
+	 *
+	 * @param batch batch to pull
+	 *
+	 * @return queued jobs (empty if given batch was already pulled)
+	 */
+	private List<Job> pullJobsBatch(Batch batch) {
+
+		if (batch.size.get() == 0 || !this.batch.compareAndSet(batch, new Batch()))
+			return Collections.emptyList();	// nothing queued (yet) or already pulled
+
+		return batch.drain();
+
+	}
 
-	private final Map<I, Job> Jobs = new HashMap<>();
+	/**
+	 * Schedules execution of given batch after new job was queued into it: immediately if batch is full, or after
+	 * {@link #maxDelay} if it's the first job of the batch.
+	 *
+	 * @param batch batch job was queued into
+	 * @param size number of jobs in batch
+	 */
+	private void schedule(Batch batch, int size) {
+		if (size == maxJobs)
+			scheduler.execute(() -> run(pullJobsBatch(batch)));
+		else if (size == 1)
+			batch.timer = scheduler.schedule(() -> run(pullJobsBatch(batch)), maxDelay, TimeUnit.NANOSECONDS);
+	}
+
+	private final FieldsAsyncService<I, C, F> service;
+	private final ScheduledExecutorService scheduler;		// null unless operations are executed automatically
+	private final int maxJobs;
+	private final long maxDelay;		// nanos
+	private final AtomicReference<Batch> batch = new AtomicReference<>(new Batch());		// batch queueing jobs
 
 }
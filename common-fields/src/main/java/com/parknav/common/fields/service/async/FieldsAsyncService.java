@@ -1,5 +1,8 @@
 package com.parknav.common.fields.service.async;
 
+import java.util.Collection;
+import java.util.Map;
+
 import com.parknav.common.fields.FieldEnum;
 import com.parknav.common.fields.FieldGraph;
 import com.parknav.common.fields.HasEntityFields;
@@ -52,5 +55,23 @@ public interface FieldsAsyncService<I, C extends HasEntityFields<I, C, F>, F ext
 	 * @return {@link FieldsRequest} describing this asynchronous operation
 	 */
 	FieldsRequest get(I id, FieldGraph<F> graph, FieldsServiceHandler<C> handler);
+
+	/**
+	 * <p>Resolves entities with given IDs, all with fields initialized as specified by {@code graph}.</p>
+	 *
+	 * <p>Default implementation resolves each (distinct) entity separately (see {@link #get}), notifying {@code handler}
+	 * once all of them are resolved, and fails if any of them fails. Services which can resolve multiple entities at once
+	 * (e.g. with one remote call) should override it.</p>
+	 *
+	 * @param ids IDs of entities to resolve
+	 * @param graph field graph to initialize
+	 * @param handler asynchronous handler, notified with resolved entities by their IDs (in order of {@code ids}),
+	 *                without entities which could not be found
+	 *
+	 * @return {@link FieldsRequest} describing this asynchronous operation ({@code null} if there are no IDs)
+	 */
+	default FieldsRequest getAll(Collection<I> ids, FieldGraph<F> graph, FieldsServiceHandler<Map<I, C>> handler) {
+		return AggregateFieldsRequest.start(ids, (id, entityHandler) -> get(id, graph, entityHandler), handler);
+	}
 	
 }
@@ -0,0 +1,141 @@
+package com.parknav.common.fields.service.async;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.parknav.common.fields.EntityUnavailableException;
+import com.parknav.common.fields.FieldEnum;
+import com.parknav.common.fields.FieldGraph;
+import com.parknav.common.fields.HasEntityFields;
+
+/**
+ * <p>Service that can asynchronously resolve entities with requested ID, returning {@link CompletableFuture}s (instead
+ * of notifying {@link FieldsServiceHandler}s, as {@link FieldsAsyncService} does), so that lookups can be composed with
+ * standard tooling ({@link CompletableFuture#thenCompose}, {@link CompletableFuture#thenCombine},
+ * {@link CompletableFuture#allOf}...).</p>
+ *
+ * <p>Any {@link FieldsAsyncService} can be exposed as {@code FieldsFutureService} (see {@link #of(FieldsAsyncService)})
+ * and vice versa (see {@link #asAsyncService()}).</p>
+ *
+ * @param <I> ID type
+ * @param <C> concrete implementation of class implementing {@link HasEntityFields}
+ * @param <F> field type
+ */
+public interface FieldsFutureService<I, C extends HasEntityFields<I, C, F>, F extends Enum<F> & FieldEnum> {
+
+	/**
+	 * <p>Exposes given {@link FieldsAsyncService} as {@code FieldsFutureService}.</p>
+	 *
+	 * <p>Futures returned by it complete with {@code null} if entity doesn't exist, exceptionally with
+	 * {@link EntityUnavailableException} if request fails, and get cancelled if request is cancelled. Cancelling future
+	 * (see {@link CompletableFuture#cancel(boolean)}) cancels request.</p>
+	 *
+	 * @param service service to expose
+	 * @param <I> ID type
+	 * @param <C> concrete implementation of class implementing {@link HasEntityFields}
+	 * @param <F> field type
+	 * @return future service delegating to {@code service}
+	 */
+	static <I, C extends HasEntityFields<I, C, F>, F extends Enum<F> & FieldEnum> FieldsFutureService<I, C, F> of(FieldsAsyncService<I, C, F> service) {
+		return new FieldsFutureService<>() {
+			@Override
+			public C instance() {
+				return service.instance();
+			}
+			@Override
+			public CompletableFuture<C> get(I id, FieldGraph<F> graph) {
+				FieldsRequestFuture<C> future = new FieldsRequestFuture<>(id);
+				future.setRequest(service.get(id, graph, future.handler()));
+				return future;
+			}
+			@Override
+			public CompletableFuture<Map<I, C>> getAll(Collection<I> ids, FieldGraph<F> graph) {
+				FieldsRequestFuture<Map<I, C>> future = new FieldsRequestFuture<>(ids);
+				future.setRequest(service.getAll(ids, graph, future.handler()));
+				return future;
+			}
+		};
+	}
+
+	/**
+	 * @return new, uninitialized instance
+	 */
+	C instance();
+
+	/**
+	 * Resolves entity with given {@code id} with fields initialized as specified by {@code graph}.
+	 *
+	 * @param id entity's ID
+	 * @param graph field graph to initialize
+	 *
+	 * @return future completed with resolved entity (or {@code null} if entity doesn't exist)
+	 */
+	CompletableFuture<C> get(I id, FieldGraph<F> graph);
+
+	/**
+	 * <p>Resolves entities with given IDs, all with fields initialized as specified by {@code graph}.</p>
+	 *
+	 * <p>Default implementation resolves each (distinct) entity separately (see {@link #get}), and fails if any of them
+	 * fails. Cancelling returned future cancels futures of all entities.</p>
+	 *
+	 * @param ids IDs of entities to resolve
+	 * @param graph field graph to initialize
+	 *
+	 * @return future completed with resolved entities by their IDs (in order of {@code ids}), without entities which
+	 * could not be found
+	 */
+	default CompletableFuture<Map<I, C>> getAll(Collection<I> ids, FieldGraph<F> graph) {
+
+		Map<I, CompletableFuture<C>> futures = new LinkedHashMap<>();
+		for (I id : new LinkedHashSet<>(ids))
+			futures.put(id, get(id, graph));
+
+		CompletableFuture<Map<I, C>> result = CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+			Map<I, C> entities = new LinkedHashMap<>();
+			futures.forEach((id, future) -> {
+				C entity = future.join();
+				if (entity != null)
+					entities.put(id, entity);
+			});
+			return entities;
+		});
+
+		result.whenComplete((entities, e) -> {
+			if (result.isCancelled())
+				futures.values().forEach(future -> future.cancel(false));
+		});
+
+		return result;
+
+	}
+
+	/**
+	 * <p>Exposes this service as {@link FieldsAsyncService}.</p>
+	 *
+	 * <p>Handlers are notified with {@link FieldsServiceHandler#onFail()} if future completes exceptionally, and with
+	 * {@link FieldsServiceHandler#onCancel()} if it gets cancelled. Cancelling request (see {@link FieldsRequest#cancel()})
+	 * cancels future.</p>
+	 *
+	 * @return async service delegating to this service
+	 */
+	default FieldsAsyncService<I, C, F> asAsyncService() {
+		return new FieldsAsyncService<>() {
+			@Override
+			public C instance() {
+				return FieldsFutureService.this.instance();
+			}
+			@Override
+			public FieldsRequest get(I id, FieldGraph<F> graph, FieldsServiceHandler<C> handler) {
+				return FieldsRequestFuture.notify(FieldsFutureService.this.get(id, graph), handler);
+			}
+			@Override
+			public FieldsRequest getAll(Collection<I> ids, FieldGraph<F> graph, FieldsServiceHandler<Map<I, C>> handler) {
+				return FieldsRequestFuture.notify(FieldsFutureService.this.getAll(ids, graph), handler);
+			}
+		};
+	}
+
+}
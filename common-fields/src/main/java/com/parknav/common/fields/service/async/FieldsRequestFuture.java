@@ -0,0 +1,128 @@
+package com.parknav.common.fields.service.async;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.parknav.common.fields.EntityUnavailableException;
+
+/**
+ * Future completed by {@link FieldsServiceHandler} (see {@link #handler()}), cancelling {@link FieldsRequest} it
+ * represents when cancelled (see {@link FieldsFutureService#of(FieldsAsyncService)}).
+ *
+ * @param <T> result type
+ */
+class FieldsRequestFuture<T> extends CompletableFuture<T> {
+
+	/**
+	 * Notifies given handler once given future completes.
+	 *
+	 * @param future future to observe
+	 * @param handler handler to notify
+	 * @param <T> result type
+	 *
+	 * @return request cancelling {@code future}
+	 */
+	static <T> FieldsRequest notify(CompletableFuture<T> future, FieldsServiceHandler<T> handler) {
+
+		FieldsRequest request = () -> future.cancel(false);
+
+		handler.onPreRequest(request);
+
+		future.whenComplete((value, e) -> {
+			Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+			if (cause instanceof CancellationException) {
+				try {
+					handler.onCancel();
+				} finally {
+					handler.onDestroy();
+				}
+				return;
+			}
+			try {
+				if (cause == null)
+					handler.onSuccess(value);
+				else
+					handler.onFail();
+			} finally {
+				handler.onPostRequest(request);
+				try {
+					handler.onFinish();
+				} finally {
+					handler.onDestroy();
+				}
+			}
+		});
+
+		return request;
+
+	}
+
+	/**
+	 * @param id ID (or IDs) of requested entity (for exception thrown if request fails)
+	 */
+	FieldsRequestFuture(Object id) {
+		this.id = id;
+	}
+
+	/**
+	 * @return handler completing this future
+	 */
+	FieldsServiceHandler<T> handler() {
+		return new FieldsServiceHandler<>() {
+			@Override
+			public void onPreRequest(FieldsRequest request) {
+				setRequest(request);	// so that future can be cancelled before request method returns
+			}
+			@Override
+			public void onSuccess(T value) {
+				complete(value);
+			}
+			@Override
+			public void onFail() {
+				completeExceptionally(new EntityUnavailableException(id));
+			}
+			@Override
+			public void onCancel() {
+				requestCancelled.set(true);	// by someone else, so there's nothing to cancel anymore
+				FieldsRequestFuture.super.cancel(false);
+			}
+		};
+	}
+
+	/**
+	 * Sets request this future represents, cancelling it if future was already cancelled.
+	 *
+	 * @param request request ({@code null} if operation completed without request)
+	 */
+	void setRequest(FieldsRequest request) {
+		if (request == null)
+			return;
+		this.request = request;
+		if (isCancelled())
+			cancelRequest();	// cancelled before request was known
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		boolean cancelled = super.cancel(mayInterruptIfRunning);
+		if (cancelled)
+			cancelRequest();
+		return cancelled;
+	}
+
+	/**
+	 * Cancels request (if it's known), unless it was already cancelled.
+	 */
+	private void cancelRequest() {
+		FieldsRequest request = this.request;
+		if (request != null && requestCancelled.compareAndSet(false, true))
+			request.cancel();
+	}
+
+	private final Object id;
+	private volatile FieldsRequest request = null;
+	private final AtomicBoolean requestCancelled = new AtomicBoolean(false);
+
+}
@@ -1,6 +1,7 @@
 package com.parknav.common.fields.service.async.crud;
 
 import java.util.Set;
+import java.util.concurrent.Flow;
 import java.util.stream.Stream;
 
 import com.parknav.common.fields.service.crud.CRUDFieldsService;
@@ -114,6 +115,22 @@ public interface CRUDFieldsAsyncService<I, C extends HasEntityFields<I, C, F>, F
 	 */
 	FieldsRequest queryAllFieldValues(S selector, Set<F> fields, FieldsServiceHandler<Stream<C>> handler);
 
+	/**
+	 * <p>Same as {@link #queryAllFieldValues(Object, Set, FieldsServiceHandler)}, but publishes entities one by one, as
+	 * subscriber requests them. Each subscriber starts its own query (once it first requests entities), and cancelling
+	 * subscription cancels the query.</p>
+	 *
+	 * <p>Default implementation consumes delivered stream lazily, so it keeps memory bounded only if stream is lazy.</p>
+	 *
+	 * @param selector selector to filter entities
+	 * @param fields fields on which to determine distinctiveness
+	 *
+	 * @return publisher of entities
+	 */
+	default Flow.Publisher<C> queryAllFieldValues(S selector, Set<F> fields) {
+		return new QueryPublisher<>(handler -> queryAllFieldValues(selector, fields, handler));
+	}
+
 	/**
 	 * Counts entities matched by provided {@code selector}.
 	 *
@@ -136,4 +153,21 @@ public interface CRUDFieldsAsyncService<I, C extends HasEntityFields<I, C, F>, F
 	 */
 	FieldsRequest query(S selector, FieldGraph<F> graph, FieldsServiceHandler<Stream<C>> handler);
 
+	/**
+	 * <p>Same as {@link #query(Object, FieldGraph, FieldsServiceHandler)}, but publishes entities one by one, as
+	 * subscriber requests them (so that large number of entities can be streamed with bounded memory). Each subscriber
+	 * starts its own query (once it first requests entities), and cancelling subscription cancels the query.</p>
+	 *
+	 * <p>Default implementation consumes delivered stream lazily, so it keeps memory bounded only if stream is lazy
+	 * (e.g. backed by database cursor). Services which produce entities incrementally should override it.</p>
+	 *
+	 * @param selector selector to filter entities
+	 * @param graph fields graph to resolve
+	 *
+	 * @return publisher of entities
+	 */
+	default Flow.Publisher<C> query(S selector, FieldGraph<F> graph) {
+		return new QueryPublisher<>(handler -> query(selector, graph, handler));
+	}
+
 }
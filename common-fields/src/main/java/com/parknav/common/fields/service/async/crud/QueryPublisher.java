@@ -0,0 +1,213 @@
+package com.parknav.common.fields.service.async.crud;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import com.parknav.common.fields.service.async.FieldsRequest;
+import com.parknav.common.fields.service.async.FieldsServiceHandler;
+import com.parknav.common.fields.service.crud.CRUDException;
+
+/**
+ * <p>Publishes elements of stream delivered by asynchronous query (see
+ * {@link CRUDFieldsAsyncService#query}), one by one, as subscriber requests them.</p>
+ *
+ * <p>Publisher is cold: each subscriber starts its own query, once it first requests elements. Stream is consumed (and
+ * closed once consumed) lazily, so memory stays bounded as long as query produces lazy stream (e.g. backed by database
+ * cursor). Cancelling subscription cancels query's {@link FieldsRequest} (or closes the stream, if it was already
+ * delivered).</p>
+ *
+ * <p>Subscriber is notified with {@link CRUDException} if query fails, and with {@link CancellationException} if
+ * query is cancelled by someone else.</p>
+ *
+ * @param <T> element type
+ */
+class QueryPublisher<T> implements Flow.Publisher<T> {
+
+	/**
+	 * @param query starts query, notifying given handler
+	 */
+	QueryPublisher(Function<FieldsServiceHandler<Stream<T>>, FieldsRequest> query) {
+		this.query = query;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super T> subscriber) {
+		Objects.requireNonNull(subscriber, "subscriber");
+		subscriber.onSubscribe(new Subscription(subscriber));
+	}
+
+	/** Subscription to one query, handling its result */
+	private class Subscription implements Flow.Subscription, FieldsServiceHandler<Stream<T>> {
+
+		private Subscription(Flow.Subscriber<? super T> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long n) {
+
+			if (n <= 0) {
+				error = new IllegalArgumentException("Non-positive request: " + n);
+				drain();
+				return;
+			}
+
+			demand.getAndUpdate(demand -> demand + n < 0 ? Long.MAX_VALUE : demand + n);	// unbounded once it overflows
+
+			if (!started && error == null && !cancelled) {	// not after subscription reached terminal state
+				started = true;	// request(long) isn't invoked concurrently
+				setRequest(query.apply(this));
+			}
+
+			drain();
+
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			if (stream == null)
+				cancelRequest();	// still pending
+			drain();	// closes stream
+		}
+
+		@Override
+		public void onPreRequest(FieldsRequest request) {
+			setRequest(request);	// so that query can be cancelled before it returns
+		}
+
+		@Override
+		public void onSuccess(Stream<T> stream) {
+			this.stream = stream != null ? stream : Stream.empty();
+			drain();
+		}
+
+		@Override
+		public void onFail() {
+			error = new CRUDException("Query failed");
+			drain();
+		}
+
+		@Override
+		public void onCancel() {
+			requestCancelled.set(true);	// nothing to cancel anymore
+			if (!cancelled)
+				error = new CancellationException("Query cancelled");
+			drain();
+		}
+
+		private void setRequest(FieldsRequest request) {
+			if (request == null || request == this.request)
+				return;
+			this.request = request;
+			if (cancelled && stream == null)
+				cancelRequest();	// cancelled before request was known
+		}
+
+		/** Cancels request (if it's known), unless it was already cancelled. */
+		private void cancelRequest() {
+			FieldsRequest request = this.request;
+			if (request != null && requestCancelled.compareAndSet(false, true))
+				request.cancel();
+		}
+
+		/**
+		 * Emits requested elements (and terminal signal), unless other thread is already emitting them, in which case
+		 * it emits them instead (so that subscriber is never notified concurrently or reentrantly).
+		 */
+		private void drain() {
+
+			if (work.getAndIncrement() != 0)
+				return;
+
+			int missed = 1;
+
+			do {
+
+				if (!done)
+					emit();
+				else
+					closeStream();	// delivered after terminal state
+
+				missed = work.addAndGet(-missed);
+
+			} while (missed != 0);
+
+		}
+
+		private void emit() {
+
+			if (cancelled) {
+				finish();
+				return;
+			}
+
+			if (error != null) {
+				finish();
+				subscriber.onError(error);
+				return;
+			}
+
+			if (stream == null)
+				return;	// not delivered yet
+
+			try {
+				if (iterator == null)
+					iterator = stream.iterator();
+				while (demand.get() > 0 && !cancelled && iterator.hasNext()) {
+					subscriber.onNext(iterator.next());
+					demand.decrementAndGet();
+				}
+				if (cancelled) {
+					finish();
+				} else if (!iterator.hasNext()) {
+					finish();
+					subscriber.onComplete();
+				}
+			} catch (RuntimeException e) {
+				finish();
+				subscriber.onError(e);
+			}
+
+		}
+
+		/** Moves subscription to terminal state, closing stream (if it was delivered). */
+		private void finish() {
+			done = true;
+			closeStream();
+		}
+
+		/** Closes stream (if it was delivered), unless it was already closed. */
+		private void closeStream() {
+			Stream<T> stream = this.stream;
+			if (stream != null && !closed) {
+				closed = true;
+				stream.close();
+			}
+		}
+
+		private final Flow.Subscriber<? super T> subscriber;
+		private final AtomicLong demand = new AtomicLong();		// requested, but not yet emitted elements
+		private final AtomicInteger work = new AtomicInteger();		// pending drains (only the first one emits)
+		private boolean started = false;
+		private volatile boolean cancelled = false;
+		private volatile FieldsRequest request = null;
+		private final AtomicBoolean requestCancelled = new AtomicBoolean(false);
+		private volatile Stream<T> stream = null;		// delivered stream (null until delivered)
+		private volatile Throwable error = null;
+		private Iterator<T> iterator = null;			// guarded by work
+		private boolean done = false;					// guarded by work
+		private boolean closed = false;					// guarded by work
+
+	}
+
+	private final Function<FieldsServiceHandler<Stream<T>>, FieldsRequest> query;
+
+}
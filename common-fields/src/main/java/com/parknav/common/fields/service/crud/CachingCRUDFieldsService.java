@@ -5,12 +5,15 @@ import com.parknav.common.fields.FieldGraph;
 import com.parknav.common.fields.FieldsEntityCache;
 import com.parknav.common.fields.HasEntityFields;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.stream.Stream;
 
 /**
  * <p>{@link CRUDFieldsService} implementation that caches objects incrementally.</p>
  *
- * <p>Populates cache in every method, but uses it only in {@link #construct(Object, FieldGraph)} and {@link #get(Object, FieldGraph)}.
+ * <p>Populates cache in every method, but uses it only in {@link #construct(Object, FieldGraph)}, {@link #get(Object, FieldGraph)}
+ * and {@link #getAll(Collection, FieldGraph)}.
  * Causes very little overhead over {@code service} itself.</p>
 
  * @param <I> ID type
@@ -45,6 +48,11 @@ public class CachingCRUDFieldsService<I, C extends HasEntityFields<I, C, F>, F e
 		return cache.get(id, graph, service);
 	}
 
+	@Override
+	public Map<I, C> getAll(Collection<I> ids, FieldGraph<F> graph) {
+		return cache.getAll(ids, graph, service);
+	}
+
 	@Override
 	public Stream<C> query(S selector, FieldGraph<F> graph) {
 		return service.query(selector, graph).peek(cache::merge);
@@ -1,5 +1,7 @@
 package com.parknav.common.fields.service.crud;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Stream;
 
@@ -39,6 +41,11 @@ public class DelegatingCRUDFieldsService<I, C extends HasEntityFields<I, C, F>,
 		return delegate.get(id, graph);
 	}
 
+	@Override
+	public Map<I, C> getAll(Collection<I> ids, FieldGraph<F> graph) {
+		return delegate.getAll(ids, graph);
+	}
+
 	@Override
 	public int count(S selector) {
 		return delegate.count(selector);
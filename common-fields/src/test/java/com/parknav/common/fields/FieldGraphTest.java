@@ -1,12 +1,15 @@
 package com.parknav.common.fields;
 
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Set;
 
+import com.parknav.common.fields.demo.model.berth.Berth;
 import com.parknav.common.fields.demo.model.boat.Boat;
+import com.parknav.common.fields.demo.model.marina.Marina;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -219,6 +222,15 @@ public class FieldGraphTest {
 		Assert.assertEquals("Empty FieldSet should serialize to empty string", "", str);
 	}
 
+	@Test
+	public void testNoneOf_Shared() {
+		Assert.assertSame("empty graph should be shared", FieldGraph.noneOf(Person.Field.class), FieldGraph.noneOf(Person.Field.class));
+		Assert.assertSame("missing subgraph should be shared empty graph",
+			FieldGraph.noneOf(Boat.Field.class),
+			FieldGraph.of(Person.Field.name).getGraph(Person.Field.boat, Boat.Field.class)
+		);
+	}
+
 	@Test
 	public void testFromString_Null() throws ParseException {
 		FieldGraph<Person.Field> fields = FieldGraph.of(null, Person.Field.class);
@@ -370,6 +382,45 @@ public class FieldGraphTest {
 		}
 	}
 
+	@Test
+	public void testFromString_Error_NoSubfields() {
+		String str = "name,email{name}";
+		try {
+			FieldGraph.of(str, Person.Field.class);
+			Assert.fail("Should have throw ParseException");
+		} catch (ParseException e) {
+			Assert.assertEquals("ParseException reported wrong error offset", 10, e.getErrorOffset());
+		}
+	}
+
+	@Test
+	public void testFromString_Duplicates() throws ParseException {
+		FieldGraph<Person.Field> fields = FieldGraph.of("boat{name},name,boat{type},boat", Person.Field.class);
+		Assert.assertEquals("fields should contain only 'name' and 'boat' fields", EnumSet.of(Person.Field.name, Person.Field.boat), top(fields));
+		Assert.assertEquals("duplicate fields should merge subfields", EnumSet.of(Boat.Field.name, Boat.Field.type), top(fields.getGraph(Person.Field.boat, Boat.Field.class)));
+	}
+
+	@Test
+	public void testFromString_Cache() throws ParseException {
+		FieldGraphCache cache = new FieldGraphCache(2);
+		FieldGraph<Person.Field> fields1 = cache.get("name,boat{name}", Person.Field.class);
+		FieldGraph<Person.Field> fields2 = cache.get("name,boat{name}", Person.Field.class);
+		FieldGraph<Person.Field> fields3 = cache.get("boat{name},name", Person.Field.class);
+		Assert.assertSame("same string should return cached fields", fields1, fields2);
+		Assert.assertSame("equivalent string should return interned fields", fields1, fields3);
+		Assert.assertEquals("cache should report hits", 1, cache.getHitCount());
+		Assert.assertEquals("cache should report misses", 2, cache.getMissCount());
+		cache.get("email", Person.Field.class);
+		Assert.assertEquals("cache should report evictions", 1, cache.getEvictionCount());
+		Assert.assertEquals("cache should be bounded", 2, cache.size());
+		try {
+			cache.get("name,boat{foo}", Person.Field.class);
+			Assert.fail("UnknownFieldException not thrown");
+		} catch (UnknownFieldException e) {
+			Assert.assertEquals("UnknownFieldException reported wrong error offset", 10, e.getErrorOffset());
+		}
+	}
+
 	@Test
 	public void testEquals() {
 		FieldGraph<Person.Field> fields1 = FieldGraph.Builder.of(Person.Field.class)
@@ -398,6 +449,120 @@ public class FieldGraphTest {
 		Assert.assertEquals("fields 3 and 4 should be equal", fields3, fields4);
 	}
 
+	@Test
+	public void testHashCode() {
+		FieldGraph<Person.Field> fields1 = FieldGraph.Builder.of(Person.Field.class)
+			.add(Person.Field.email)
+			.add(Person.Field.boat, FieldGraph.of(Boat.Field.name, Boat.Field.type))
+			.build();
+		FieldGraph<Person.Field> fields2 = FieldGraph.Builder.of(Person.Field.class)
+			.add(Person.Field.boat, FieldGraph.of(Boat.Field.type, Boat.Field.name))
+			.add(Person.Field.email)
+			.build();
+		FieldGraph<Person.Field> fields3 = FieldGraph.Builder.of(Person.Field.class)
+			.add(Person.Field.email)
+			.add(Person.Field.boat, FieldGraph.noneOf(Boat.Field.class))
+			.build();
+		Assert.assertEquals("equal fields should have equal hash codes", fields1.hashCode(), fields2.hashCode());
+		Assert.assertEquals("empty subgraph should hash as no subgraph", FieldGraph.of(Person.Field.email, Person.Field.boat).hashCode(), fields3.hashCode());
+	}
+
+	@Test
+	public void testIntern() {
+		FieldGraph<Person.Field> fields1 = FieldGraph.Builder.of(Person.Field.class)
+			.add(Person.Field.email)
+			.add(Person.Field.boat, FieldGraph.of(Boat.Field.name, Boat.Field.type))
+			.build();
+		FieldGraph<Person.Field> fields2 = FieldGraph.Builder.of(Person.Field.class)
+			.add(Person.Field.boat, FieldGraph.of(Boat.Field.type, Boat.Field.name))
+			.add(Person.Field.email)
+			.build();
+		FieldGraph<Person.Field> fields3 = FieldGraph.Builder.of(Person.Field.class)
+			.add(Person.Field.name)
+			.add(Person.Field.boat, FieldGraph.of(Boat.Field.name, Boat.Field.type))
+			.build();
+		Assert.assertSame("interned equal fields should be same instance", fields1.intern(), fields2.intern());
+		Assert.assertSame("interning interned fields should return same instance", fields1.intern(), fields1.intern().intern());
+		Assert.assertEquals("interned fields should be equal to original", fields1, fields1.intern());
+		Assert.assertNotSame("interned different fields should NOT be same instance", fields1.intern(), fields3.intern());
+		Assert.assertSame("equal subgraphs of interned fields should be same instance",
+			fields1.intern().getGraph(Person.Field.boat, Boat.Field.class),
+			fields3.intern().getGraph(Person.Field.boat, Boat.Field.class)
+		);
+	}
+
+	@Test
+	public void testBuilder_ImmutableSource() {
+		FieldGraph<Boat.Field> boatFields = FieldGraph.of(Boat.Field.name);
+		FieldGraph<Person.Field> source = FieldGraph.Builder.of(Person.Field.class)
+			.add(Person.Field.boat, boatFields)
+			.build();
+		FieldGraph.Builder<Person.Field> builder = FieldGraph.Builder.of(source)
+			.add(Person.Field.boat, FieldGraph.of(Boat.Field.type));
+		FieldGraph<Person.Field> extended = builder.build();
+		builder.add(Person.Field.email);
+		Assert.assertEquals("extending builder should NOT modify subgraph", FieldGraph.of(Boat.Field.name), boatFields);
+		Assert.assertEquals("extending builder should NOT modify source fields", FieldGraph.of(Boat.Field.name), source.getGraph(Person.Field.boat, Boat.Field.class));
+		Assert.assertEquals("extended fields should contain merged subgraph", FieldGraph.of(Boat.Field.name, Boat.Field.type), extended.getGraph(Person.Field.boat, Boat.Field.class));
+		Assert.assertFalse("changing builder should NOT modify built fields", extended.contains(Person.Field.email));
+	}
+
+	@Test
+	public void testWide() {
+		FieldGraph<Wide> fields = FieldGraph.of(Wide.f00, Wide.f63, Wide.f64, Wide.f69);
+		Assert.assertEquals("fields should contain 4 fields", 4, fields.size());
+		Assert.assertTrue("fields should contain field 64", fields.contains(Wide.f64));
+		Assert.assertFalse("fields should NOT contain field 65", fields.contains(Wide.f65));
+		Assert.assertEquals("fields should iterate in declaration order", Arrays.asList(Wide.f00, Wide.f63, Wide.f64, Wide.f69), new ArrayList<>(fields));
+		Assert.assertEquals("fields should be converted to string", "f00,f63,f64,f69", fields.toString());
+		Assert.assertTrue("fields should contain subset", fields.containsAll(FieldGraph.of(Wide.f63, Wide.f69)));
+		Assert.assertFalse("fields should NOT contain superset", fields.containsAll(FieldGraph.of(Wide.f63, Wide.f68)));
+		Assert.assertEquals("equal wide fields should be equal", fields, FieldGraph.of(Arrays.asList(Wide.f69, Wide.f64, Wide.f63, Wide.f00)));
+		Assert.assertEquals("all wide fields should contain all fields", Wide.values().length, FieldGraph.allOf(Wide.class).size());
+	}
+
+	@Test
+	public void testWide_Mask() {
+		FieldSet<Wide> fields = FieldSet.of(Wide.class, FieldGraph.of(Wide.f00, Wide.f63, Wide.f64, Wide.f69));
+		Assert.assertEquals("set should iterate in declaration order", Arrays.asList(Wide.f00, Wide.f63, Wide.f64, Wide.f69), new ArrayList<>(fields));
+		Assert.assertTrue("set should contain mask subset", fields.containsAll(FieldMask.of(Wide.f63, Wide.f69)));
+		Assert.assertFalse("set should NOT contain mask superset", fields.containsAll(FieldMask.of(Wide.f63, Wide.f68)));
+		Assert.assertTrue("mask should be contained in graph", FieldMask.of(Wide.f64).isContainedIn(FieldGraph.of(Wide.f64)));
+		fields.remove(Wide.f64);
+		Assert.assertFalse("set should NOT contain removed field", fields.containsAll(FieldMask.of(Wide.f64)));
+	}
+
+	@Test
+	public void testRegistry() {
+		FieldEnumRegistry<Person.Field> registry = FieldEnumRegistry.of(Person.Field.class);
+		Assert.assertSame("registry should be shared", registry, FieldEnumRegistry.of(Person.Field.class));
+		Assert.assertEquals("registry should lookup field by name", Person.Field.email, registry.lookup("email"));
+		Assert.assertEquals("registry should lookup field by region", Person.Field.boat, registry.lookup("name,boat{name}", 5, 9));
+		Assert.assertNull("registry should NOT lookup unknown field", registry.lookup("foo"));
+		try {
+			registry.parse("foo");
+			Assert.fail("IllegalArgumentException not thrown");
+		} catch (IllegalArgumentException e) {
+		}
+		Assert.assertEquals("registry should return subobject's fields class", Boat.Field.class, registry.getFieldsClass(Person.Field.boat));
+		Assert.assertNull("registry should NOT return fields class for simple field", registry.getFieldsClass(Person.Field.name));
+		Assert.assertEquals("registry should return fields with subobjects", EnumSet.of(Person.Field.boat), registry.getSubgraphFields());
+		Assert.assertEquals("registry should return reachable classes",
+			new HashSet<>(Arrays.asList(Person.Field.class, Boat.Field.class, Marina.Field.class, Berth.Field.class)),
+			registry.getReachableClasses()
+		);
+	}
+
+	/** Field enum with more than 64 fields */
+	private enum Wide implements FieldEnum {
+		f00, f01, f02, f03, f04, f05, f06, f07, f08, f09, f10, f11, f12, f13, f14, f15, f16, f17, f18, f19,
+		f20, f21, f22, f23, f24, f25, f26, f27, f28, f29, f30, f31, f32, f33, f34, f35, f36, f37, f38, f39,
+		f40, f41, f42, f43, f44, f45, f46, f47, f48, f49, f50, f51, f52, f53, f54, f55, f56, f57, f58, f59,
+		f60, f61, f62, f63, f64, f65, f66, f67, f68, f69;
+		@Override
+		public <F extends Enum<F> & FieldEnum> Class<F> getFieldsClass() { return null; }
+	}
+
 	private <F extends Enum<F> & FieldEnum> Set<F> top(FieldGraph<F> fields) {
 		return new HashSet<>(fields);
 	}
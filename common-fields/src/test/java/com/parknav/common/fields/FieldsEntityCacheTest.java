@@ -1,8 +1,24 @@
 package com.parknav.common.fields;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.junit.Assert;
@@ -10,6 +26,12 @@ import org.junit.Test;
 
 import com.google.common.collect.Sets;
 
+import com.parknav.common.fields.demo.model.boat.Boat;
+import com.parknav.common.fields.demo.model.marina.Marina;
+import com.parknav.common.fields.demo.model.marina.MarinaDemoData;
+import com.parknav.common.fields.demo.model.marina.MarinaDemoService;
+import com.parknav.common.fields.demo.model.marina.MarinaDepthsCodec;
+import com.parknav.common.fields.demo.model.marina.MarinaService;
 import com.parknav.common.fields.demo.model.person.Person;
 import com.parknav.common.fields.demo.model.person.PersonDemoData;
 import com.parknav.common.fields.demo.model.person.PersonDemoService;
@@ -294,4 +316,664 @@ public class FieldsEntityCacheTest {
 
 	}
 	
+	@Test
+	public void testGetAll() {
+
+		List<FieldGraph<Person.Field>> fetchedGraphs = new ArrayList<>();
+		PersonService personService = new PersonDemoService() {
+			@Override
+			public Map<String, Person> getAll(Collection<String> ids, FieldGraph<Person.Field> graph) {
+				fetchedGraphs.add(graph);
+				return super.getAll(ids, graph);
+			}
+		};
+		FieldsEntityCache<String, Person, Person.Field> cache = new FieldsEntityCache<>(EnumSet.of(Person.Field.name, Person.Field.email, Person.Field.boat));
+
+		Map<String, Person> persons = cache.getAll(Arrays.asList(PersonDemoData.RonId, "nobody", PersonDemoData.CapoId, PersonDemoData.RonId), FieldGraph.of(Person.Field.name), personService);
+		Assert.assertEquals("persons mismatch", Arrays.asList(PersonDemoData.RonId, PersonDemoData.CapoId), new ArrayList<>(persons.keySet()));
+		Assert.assertEquals("missing persons should be fetched at once", Collections.singletonList(FieldGraph.of(Person.Field.name)), fetchedGraphs);
+
+		cache.get(PersonDemoData.RonId, FieldGraph.of(Person.Field.name, Person.Field.email), personService);
+		fetchedGraphs.clear();
+
+		persons = cache.getAll(Arrays.asList(PersonDemoData.RonId, PersonDemoData.CapoId, PersonDemoData.PirateId, PersonDemoData.JohnId), FieldGraph.of(Person.Field.name, Person.Field.email), personService);
+		Assert.assertEquals("persons mismatch", 4, persons.size());
+		persons.values().forEach(person -> Assert.assertEquals("fields mismatch", EnumSet.of(Person.Field.name, Person.Field.email), person.getFields()));
+		Assert.assertEquals("fetched graphs mismatch", new HashSet<>(Arrays.asList(FieldGraph.of(Person.Field.name, Person.Field.email), FieldGraph.of(Person.Field.email))), new HashSet<>(fetchedGraphs));
+		Assert.assertEquals("fetches mismatch", 2, fetchedGraphs.size());
+
+		fetchedGraphs.clear();
+		cache.getAll(Arrays.asList(PersonDemoData.RonId, PersonDemoData.CapoId), FieldGraph.of(Person.Field.email), personService);
+		Assert.assertTrue("cached persons should not be fetched", fetchedGraphs.isEmpty());
+
+	}
+
+	@Test
+	public void testGetAll_Deleted() {
+
+		PersonService personService = new PersonDemoService() {
+			@Override
+			public Map<String, Person> getAll(Collection<String> ids, FieldGraph<Person.Field> graph) {
+				Map<String, Person> persons = super.getAll(ids, graph);
+				persons.remove(PersonDemoData.RonId);	// deleted since it was cached
+				return persons;
+			}
+		};
+		FieldsEntityCache<String, Person, Person.Field> cache = new FieldsEntityCache<>(EnumSet.of(Person.Field.name, Person.Field.email, Person.Field.boat));
+
+		cache.put(Person.ref(PersonDemoData.RonId).setName("Ron"));
+		cache.put(Person.ref(PersonDemoData.CapoId).setName("Capo"));
+
+		Map<String, Person> persons = cache.getAll(Arrays.asList(PersonDemoData.RonId, PersonDemoData.CapoId), FieldGraph.of(Person.Field.name, Person.Field.email), personService);
+		Assert.assertEquals("deleted person should be omitted", Collections.singletonList(PersonDemoData.CapoId), new ArrayList<>(persons.keySet()));
+		Assert.assertTrue("person should be extended", persons.get(PersonDemoData.CapoId).hasFields(Person.Field.email));
+		Assert.assertNull("deleted person should be cleared from cache", cache.get(PersonDemoData.RonId));
+
+	}
+
+	@Test
+	public void testConcurrentMerge() throws InterruptedException {
+
+		FieldsEntityCache<String, Person, Person.Field> cache = new FieldsEntityCache<>(EnumSet.of(Person.Field.name, Person.Field.email, Person.Field.boat));
+
+		List<Person> updates = Arrays.asList(
+			Person.ref(PersonDemoData.RonId).setName("Ron"),
+			Person.ref(PersonDemoData.RonId).setEmail("ron@example.com"),
+			Person.ref(PersonDemoData.RonId).setBoat(Boat.ref("boat"))
+		);
+
+		List<Throwable> errors = new CopyOnWriteArrayList<>();
+		List<Thread> threads = new ArrayList<>();
+
+		for (Person update : updates)
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 1000; i++)
+					cache.merge(update);
+			}));
+		threads.add(new Thread(() -> {
+			for (int i = 0; i < 1000; i++) {
+				Person cached = cache.get(PersonDemoData.RonId);	// clones cached value, while it's being merged
+				if (cached != null)
+					cache.clear(PersonDemoData.RonId, EnumSet.of(Person.Field.permissions));	// not cached, so no-op
+			}
+		}));
+
+		threads.forEach(thread -> thread.setUncaughtExceptionHandler((t, e) -> errors.add(e)));
+		threads.forEach(Thread::start);
+		for (Thread thread : threads)
+			thread.join();
+
+		Assert.assertTrue("no errors expected, but got " + errors, errors.isEmpty());
+
+		Person person = cache.get(PersonDemoData.RonId);
+		Assert.assertNotNull("person should not be null", person);
+		Assert.assertEquals("all merged fields should be cached", EnumSet.of(Person.Field.name, Person.Field.email, Person.Field.boat), person.getFields());
+
+	}
+
+	@Test
+	public void testOffHeap() {
+
+		List<FieldGraph<Marina.Field>> fetchedGraphs = new ArrayList<>();
+		MarinaService marinaService = new MarinaDemoService() {
+			@Override
+			public Marina get(String id, FieldGraph<Marina.Field> graph) {
+				fetchedGraphs.add(graph);
+				return super.get(id, graph);
+			}
+		};
+		FieldsEntityCache<String, Marina, Marina.Field> cache = FieldsEntityCache.Builder.of(Marina.class, EnumSet.of(Marina.Field.name, Marina.Field.depths))
+			.offHeap(Marina.Field.depths, MarinaDepthsCodec.Instance)
+			.build();
+
+		Integer[][] depths = marinaService.get(MarinaDemoData.KornatiId, FieldGraph.of(Marina.Field.depths)).getDepths();
+		fetchedGraphs.clear();
+
+		Marina marina = cache.get(MarinaDemoData.KornatiId, FieldGraph.of(Marina.Field.name), marinaService);
+		Assert.assertEquals("fields mismatch", EnumSet.of(Marina.Field.name), marina.getFields());
+
+		marina = cache.get(MarinaDemoData.KornatiId, FieldGraph.of(Marina.Field.name, Marina.Field.depths), marinaService);
+		Assert.assertTrue("depths mismatch", Arrays.deepEquals(depths, marina.getDepths()));
+
+		marina = cache.get(MarinaDemoData.KornatiId, FieldGraph.of(Marina.Field.depths), marinaService);
+		Assert.assertEquals("fields mismatch", EnumSet.of(Marina.Field.depths), marina.getFields());
+		Assert.assertTrue("depths mismatch", Arrays.deepEquals(depths, marina.getDepths()));
+		Assert.assertEquals("cached depths should not be fetched again", Arrays.asList(FieldGraph.of(Marina.Field.name), FieldGraph.of(Marina.Field.depths)), fetchedGraphs);
+
+		Assert.assertTrue("depths mismatch", Arrays.deepEquals(depths, cache.get(MarinaDemoData.KornatiId).getDepths()));
+		Assert.assertTrue("depths mismatch", Arrays.deepEquals(depths, cache.getReadOnly(MarinaDemoData.KornatiId).getDepths()));
+
+		cache.clear(MarinaDemoData.KornatiId, EnumSet.of(Marina.Field.depths));
+		Assert.assertEquals("depths should be cleared", EnumSet.of(Marina.Field.name), cache.get(MarinaDemoData.KornatiId).getFields());
+
+	}
+
+	@Test
+	public void testSnapshot() throws IOException {
+
+		PersonService personService = new PersonDemoService();
+		Set<Person.Field> cacheableFields = EnumSet.of(Person.Field.name, Person.Field.email, Person.Field.boat);
+		Path path = Files.createTempFile("persons", ".snapshot");
+		Files.delete(path);
+
+		try {
+
+			FieldsEntityCache<String, Person, Person.Field> cache = new FieldsEntityCache<>(cacheableFields);
+			FieldsEntityCacheSnapshot<String, Person, Person.Field> snapshot = FieldsEntityCacheSnapshot.Builder.of(cache, path, Person::new, StringCodec)
+				.field(Person.Field.name, StringCodec)
+				.field(Person.Field.email, StringCodec)
+				.build();
+
+			Assert.assertEquals("nothing should be restored", 0, snapshot.restore());
+
+			cache.get(PersonDemoData.RonId, FieldGraph.of(Person.Field.name, Person.Field.email, Person.Field.boat), personService);
+			cache.get(PersonDemoData.JohnId, FieldGraph.of(Person.Field.name), personService);
+			Assert.assertEquals("checkpoint record count mismatch", 2, snapshot.checkpoint());
+			Assert.assertEquals("nothing should have changed", 0, snapshot.checkpoint());
+
+			cache.clear(PersonDemoData.JohnId);
+			cache.merge(Person.ref(PersonDemoData.RonId).setEmail("ron@example.com"));
+			Assert.assertEquals("checkpoint record count mismatch", 2, snapshot.checkpoint());
+
+			long length = Files.size(path);
+			Files.write(path, new byte[] { 1, 0, 0 }, StandardOpenOption.APPEND);	// torn record
+
+			FieldsEntityCache<String, Person, Person.Field> restoredCache = new FieldsEntityCache<>(cacheableFields);
+			FieldsEntityCacheSnapshot<String, Person, Person.Field> restoredSnapshot = FieldsEntityCacheSnapshot.Builder.of(restoredCache, path, Person::new, StringCodec)
+				.field(Person.Field.name, StringCodec)
+				.field(Person.Field.email, StringCodec)
+				.build();
+
+			Assert.assertEquals("restored entity count mismatch", 1, restoredSnapshot.restore());
+			Assert.assertEquals("torn record should be truncated", length, Files.size(path));
+			Assert.assertNull("removed person should not be restored", restoredCache.get(PersonDemoData.JohnId));
+			Person person = restoredCache.get(PersonDemoData.RonId);
+			Assert.assertEquals("fields mismatch", EnumSet.of(Person.Field.name, Person.Field.email), person.getFields());
+			Assert.assertEquals("name mismatch", cache.get(PersonDemoData.RonId).getName(), person.getName());
+			Assert.assertEquals("email mismatch", "ron@example.com", person.getEmail());
+			Assert.assertEquals("restored entities should not be checkpointed", 0, restoredSnapshot.checkpoint());
+
+			Assert.assertEquals("compacted entity count mismatch", 1, snapshot.compact());
+			Assert.assertTrue("compacted snapshot should be smaller", Files.size(path) < length);
+
+			// persisting only name
+			restoredCache = new FieldsEntityCache<>(cacheableFields);
+			restoredSnapshot = FieldsEntityCacheSnapshot.Builder.of(restoredCache, path, Person::new, StringCodec)
+				.field(Person.Field.name, StringCodec)
+				.build();
+
+			Assert.assertEquals("restored entity count mismatch", 1, restoredSnapshot.restore());
+			Assert.assertEquals("fields mismatch", EnumSet.of(Person.Field.name), restoredCache.get(PersonDemoData.RonId).getFields());
+
+			try {
+				FieldsEntityCacheSnapshot.Builder.of(restoredCache, path, Person::new, StringCodec).field(Person.Field.name, StringCodec).build();
+				Assert.fail("cache should have only one snapshot");
+			} catch (IllegalStateException e) {
+			}
+
+		} finally {
+			Files.deleteIfExists(path);
+		}
+
+	}
+
+	@Test
+	public void testSnapshot_Eviction() throws IOException {
+
+		// email is a "large blob", so that only one person fits
+		FieldsEntityCache.Weigher<Person> weigher = FieldsEntityCache.Weigher.perField(1, (person, field) -> field == Person.Field.email ? 100 : 1);
+		Path path = Files.createTempFile("persons", ".snapshot");
+		Files.delete(path);
+
+		try {
+
+			FieldsEntityCache<String, Person, Person.Field> cache = FieldsEntityCache.Builder.of(Person.class, EnumSet.of(Person.Field.name, Person.Field.email))
+				.maximumWeight(150, weigher)
+				.build();
+			FieldsEntityCacheSnapshot<String, Person, Person.Field> snapshot = FieldsEntityCacheSnapshot.Builder.of(cache, path, Person::new, StringCodec)
+				.field(Person.Field.name, StringCodec)
+				.field(Person.Field.email, StringCodec)
+				.build();
+
+			cache.put(Person.ref(PersonDemoData.RonId).setName("Ron").setEmail("ron@example.com"));
+			Assert.assertEquals("checkpoint record count mismatch", 1, snapshot.checkpoint());
+
+			cache.merge(Person.ref(PersonDemoData.RonId).setName("Ronald"));
+			cache.put(Person.ref(PersonDemoData.JohnId).setName("John").setEmail("john@example.com"));
+			Assert.assertNull("changed person should be evicted", cache.getReadOnly(PersonDemoData.RonId));
+			Assert.assertEquals("evicted person should not be checkpointed", 1, snapshot.checkpoint());
+
+			FieldsEntityCache<String, Person, Person.Field> restoredCache = new FieldsEntityCache<>(EnumSet.of(Person.Field.name, Person.Field.email));
+			FieldsEntityCacheSnapshot.Builder.of(restoredCache, path, Person::new, StringCodec)
+				.field(Person.Field.name, StringCodec)
+				.field(Person.Field.email, StringCodec)
+				.build()
+				.restore();
+			Assert.assertEquals("evicted person should stay in snapshot", "Ron", restoredCache.get(PersonDemoData.RonId).getName());
+			Assert.assertEquals("name mismatch", "John", restoredCache.get(PersonDemoData.JohnId).getName());
+
+		} finally {
+			Files.deleteIfExists(path);
+		}
+
+	}
+
+	@Test
+	public void testSnapshot_CompactFailure() throws IOException {
+
+		Path path = Files.createTempFile("persons", ".snapshot");
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+		Files.delete(path);
+
+		try {
+
+			FieldsEntityCache<String, Person, Person.Field> cache = new FieldsEntityCache<>(EnumSet.of(Person.Field.name));
+			FieldsEntityCacheSnapshot<String, Person, Person.Field> snapshot = FieldsEntityCacheSnapshot.Builder.of(cache, path, Person::new, StringCodec)
+				.field(Person.Field.name, StringCodec)
+				.build();
+
+			cache.put(Person.ref(PersonDemoData.RonId).setName("Ron"));
+			cache.put(Person.ref(PersonDemoData.JohnId).setName("John"));
+
+			Files.createDirectory(temp);	// so that temporary file can't be written
+			try {
+				snapshot.compact();
+				Assert.fail("compaction should fail");
+			} catch (IOException e) {
+			}
+			Files.delete(temp);
+
+			Assert.assertEquals("changes should be kept after failed compaction", 2, snapshot.checkpoint());
+
+		} finally {
+			Files.deleteIfExists(temp);
+			Files.deleteIfExists(path);
+		}
+
+	}
+
+	@Test
+	public void testConcurrentIndexing() throws InterruptedException {
+
+		FieldsEntityCache<String, Person, Person.Field> cache = FieldsEntityCache.Builder.of(Person.class, EnumSet.of(Person.Field.name, Person.Field.boat))
+			.index("boat", person -> person.hasFields(Person.Field.boat) && person.getBoat() != null ? person.getBoat().getId() : null)
+			.build();
+
+		List<String> ids = Arrays.asList(PersonDemoData.RonId, PersonDemoData.CapoId, PersonDemoData.PirateId, PersonDemoData.JohnId);
+		List<Throwable> errors = new CopyOnWriteArrayList<>();
+		List<Thread> threads = new ArrayList<>();
+
+		for (int t = 0; t < 4; t++) {
+			String boat = "boat" + t;
+			boolean put = t % 2 == 0;
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 5000; i++) {
+					Person person = Person.ref(ids.get(i % ids.size())).setName("Name").setBoat(Boat.ref(boat));
+					if (put)
+						cache.put(person);
+					else
+						cache.merge(person);
+				}
+			}));
+		}
+
+		threads.forEach(thread -> thread.setUncaughtExceptionHandler((t, e) -> errors.add(e)));
+		threads.forEach(Thread::start);
+		for (Thread thread : threads)
+			thread.join();
+
+		Assert.assertTrue("no errors expected, but got " + errors, errors.isEmpty());
+		Assert.assertEquals("all persons should be cached", ids.size(), cache.size());
+		Assert.assertEquals("index should hold only cached entries", ids.size(), cache.indexSize("boat"));
+
+		cache.clear();
+		Assert.assertEquals("index should be empty", 0, cache.indexSize("boat"));
+
+	}
+
+	@Test
+	public void testClearByIndex() {
+
+		FieldsEntityCache<String, Person, Person.Field> cache = FieldsEntityCache.Builder.of(Person.class, EnumSet.of(Person.Field.name, Person.Field.email, Person.Field.boat))
+			.index("boat", person -> person.hasFields(Person.Field.boat) && person.getBoat() != null ? person.getBoat().getId() : null)
+			.build();
+
+		cache.merge(Person.ref(PersonDemoData.RonId).setName("Ron").setBoat(Boat.ref("boat1")));
+		cache.merge(Person.ref(PersonDemoData.CapoId).setName("Capo").setBoat(Boat.ref("boat1")));
+		cache.merge(Person.ref(PersonDemoData.PirateId).setName("Pirate").setBoat(Boat.ref("boat2")));
+		cache.merge(Person.ref(PersonDemoData.JohnId).setName("John"));
+
+		cache.clearByIndex("boat", "boat1", EnumSet.of(Person.Field.boat));
+		Assert.assertEquals("boat should be cleared", EnumSet.of(Person.Field.name), cache.getReadOnly(PersonDemoData.RonId).getFields());
+		Assert.assertEquals("boat should be cleared", EnumSet.of(Person.Field.name), cache.getReadOnly(PersonDemoData.CapoId).getFields());
+		Assert.assertEquals("boat should not be cleared", EnumSet.of(Person.Field.name, Person.Field.boat), cache.getReadOnly(PersonDemoData.PirateId).getFields());
+
+		cache.merge(Person.ref(PersonDemoData.RonId).setBoat(Boat.ref("boat2")));
+		cache.merge(Person.ref(PersonDemoData.CapoId).setBoat(Boat.ref("boat3")));
+		cache.clearByIndex("boat", "boat1");	// nobody's on boat1 anymore
+		Assert.assertEquals("persons should not be cleared", 4, cache.size());
+
+		cache.clearByIndex("boat", "boat2");
+		Assert.assertNull("person should be cleared", cache.getReadOnly(PersonDemoData.RonId));
+		Assert.assertNull("person should be cleared", cache.getReadOnly(PersonDemoData.PirateId));
+		Assert.assertNotNull("person should not be cleared", cache.getReadOnly(PersonDemoData.CapoId));
+		Assert.assertNotNull("person should not be cleared", cache.getReadOnly(PersonDemoData.JohnId));
+
+		cache.clear(PersonDemoData.CapoId);
+		cache.clearByIndex("boat", "boat3");	// already cleared
+		Assert.assertEquals("only person without boat should be cached", 1, cache.size());
+
+		try {
+			cache.clearByIndex("email", "ron@example.com");
+			Assert.fail("Should have thrown IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+
+	}
+
+	@Test
+	public void testSingleFlight() throws InterruptedException {
+
+		CountDownLatch fetching = new CountDownLatch(1);
+		CountDownLatch joining = new CountDownLatch(9);
+		CountDownLatch release = new CountDownLatch(1);
+		List<FieldGraph<Person.Field>> fetchedGraphs = new CopyOnWriteArrayList<>();
+		PersonService personService = new PersonDemoService() {
+			@Override
+			public Person get(String id, FieldGraph<Person.Field> graph) {
+				fetchedGraphs.add(graph);
+				fetching.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+				return super.get(id, graph);
+			}
+		};
+		FieldsEntityCache<String, Person, Person.Field> cache = FieldsEntityCache.Builder.of(Person.class, EnumSet.of(Person.Field.name, Person.Field.email, Person.Field.boat))
+			.singleFlight()
+			.build();
+
+		List<Throwable> errors = new CopyOnWriteArrayList<>();
+		List<Person> persons = new CopyOnWriteArrayList<>();
+		List<Thread> threads = new ArrayList<>();
+
+		for (int i = 0; i < 10; i++) {
+			FieldGraph<Person.Field> graph = i < 5 ? FieldGraph.of(Person.Field.name) : i < 8 ? FieldGraph.of(Person.Field.name, Person.Field.email) : FieldGraph.of(Person.Field.boat);
+			boolean first = i == 0;
+			threads.add(new Thread(() -> {
+				if (!first)
+					joining.countDown();
+				persons.add(cache.get(PersonDemoData.RonId, graph, personService));
+			}));
+		}
+		threads.forEach(thread -> thread.setUncaughtExceptionHandler((t, e) -> errors.add(e)));
+
+		threads.get(0).start();
+		fetching.await();		// first thread is fetching, others should either wait for it or queue next fetch
+		threads.subList(1, threads.size()).forEach(Thread::start);
+		Assert.assertTrue("callers should start", joining.await(10, TimeUnit.SECONDS));
+		// callers only ever wait (instead of blocking or running) once they joined fetch in progress (or queued one)
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		for (Thread thread : threads.subList(1, threads.size())) {
+			while (thread.getState() != Thread.State.WAITING) {
+				Assert.assertTrue("caller should join fetch", System.nanoTime() < deadline);
+				Thread.yield();
+			}
+		}
+		release.countDown();
+		for (Thread thread : threads)
+			thread.join();
+
+		Assert.assertTrue("no errors expected, but got " + errors, errors.isEmpty());
+		Assert.assertEquals("persons mismatch", 10, persons.size());
+		Assert.assertEquals("fetched graphs mismatch", Arrays.asList(FieldGraph.of(Person.Field.name), FieldGraph.of(Person.Field.name, Person.Field.email, Person.Field.boat)), fetchedGraphs);
+		Assert.assertEquals("all fetched fields should be cached", EnumSet.of(Person.Field.name, Person.Field.email, Person.Field.boat), cache.getReadOnly(PersonDemoData.RonId).getFields());
+
+	}
+
+	@Test
+	public void testBounded_Size() {
+
+		List<FieldsEntityCache.RemovalCause> causes = new CopyOnWriteArrayList<>();
+
+		FieldsEntityCache<String, Person, Person.Field> cache = FieldsEntityCache.Builder.of(Person.class, EnumSet.of(Person.Field.name, Person.Field.email))
+			.maximumSize(2)
+			.removalListener((id, entity, cause) -> causes.add(cause))
+			.build();
+
+		for (int i = 0; i < 10; i++)
+			cache.put(Person.ref("person" + i).setName("Person " + i));
+
+		Assert.assertTrue("cache should hold at most 2 entities, but holds " + cache.size(), cache.size() <= 2);
+		Assert.assertEquals("evicted entities should be counted", 10 - cache.size(), cache.getEvictionCount());
+		Assert.assertEquals("evicted entities should be reported", 10 - cache.size(), causes.stream().filter(FieldsEntityCache.RemovalCause::wasEvicted).count());
+		Assert.assertNotNull("most recent entity should be cached", cache.get("person9"));
+
+		causes.clear();
+		cache.merge(Person.ref("person9").setEmail("person9@example.com"));
+		Assert.assertEquals("merged entity should be reported as replaced", Arrays.asList(FieldsEntityCache.RemovalCause.REPLACED), causes);
+
+	}
+
+	@Test
+	public void testBounded_Weight() {
+
+		// name weighs its length, email is a "large blob"
+		FieldsEntityCache.Weigher<Person> weigher = FieldsEntityCache.Weigher.perField(1, (person, field) -> field == Person.Field.email ? 100 : person.getName().length());
+
+		FieldsEntityCache<String, Person, Person.Field> cache = FieldsEntityCache.Builder.of(Person.class, EnumSet.of(Person.Field.name, Person.Field.email))
+			.maximumWeight(150, weigher)
+			.build();
+
+		cache.put(Person.ref("ron").setName("Ron"));
+		cache.put(Person.ref("harry").setName("Harry"));
+		Assert.assertEquals("light entities should all be cached", 2, cache.size());
+		Assert.assertEquals("nothing should be evicted", 0, cache.getEvictionCount());
+
+		cache.merge(Person.ref("ron").setEmail("ron@example.com"));
+		cache.merge(Person.ref("harry").setEmail("harry@example.com"));
+		Assert.assertEquals("heavy entity should be evicted", 1, cache.getEvictionCount());
+		Assert.assertEquals("only one heavy entity should be cached", 1, cache.size());
+
+	}
+
+	@Test
+	public void testExpireAfterWrite() {
+
+		AtomicLong clock = new AtomicLong();
+		List<Set<Person.Field>> requests = new ArrayList<>();
+
+		PersonService personService = new PersonDemoService() {
+			@Override
+			public Person get(String id, FieldGraph<Person.Field> graph) {
+				requests.add(EnumSet.copyOf(graph));
+				return super.get(id, graph);
+			}
+		};
+
+		FieldsEntityCache<String, Person, Person.Field> cache = FieldsEntityCache.Builder.of(Person.class, EnumSet.of(Person.Field.name, Person.Field.email, Person.Field.boat))
+			.expireAfterWrite(Person.Field.email, 10, TimeUnit.SECONDS)
+			.nanoClock(clock::get)
+			.build();
+
+		FieldGraph<Person.Field> graph = FieldGraph.of(Person.Field.name, Person.Field.email);
+
+		cache.get(PersonDemoData.RonId, graph, personService);
+		Assert.assertEquals("initial fetch", Arrays.asList(EnumSet.of(Person.Field.name, Person.Field.email)), requests);
+
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+		requests.clear();
+		Person person = cache.get(PersonDemoData.RonId, graph, personService);
+		Assert.assertTrue("nothing should be fetched before email expires", requests.isEmpty());
+		Assert.assertNotNull("email should not be null", person.getIfPresent(person::getEmail, Person.Field.email));
+
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+		Assert.assertEquals("expired email should be cleared from cached entity", EnumSet.of(Person.Field.name), cache.get(PersonDemoData.RonId).getFields());
+
+		person = cache.get(PersonDemoData.RonId, graph, personService);
+		Assert.assertEquals("only expired email should be fetched", Arrays.asList(EnumSet.of(Person.Field.email)), requests);
+		Assert.assertNotNull("email should not be null", person.getIfPresent(person::getEmail, Person.Field.email));
+
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+		requests.clear();
+		cache.get(PersonDemoData.RonId, graph, personService);
+		Assert.assertTrue("nothing should be fetched after email was re-fetched", requests.isEmpty());
+
+	}
+
+	@Test
+	public void testRefreshAfterWrite() {
+
+		AtomicLong clock = new AtomicLong();
+		List<Set<Person.Field>> requests = new ArrayList<>();
+
+		PersonService personService = new PersonDemoService() {
+			@Override
+			public Person get(String id, FieldGraph<Person.Field> graph) {
+				requests.add(EnumSet.copyOf(graph));
+				return super.get(id, graph);
+			}
+		};
+
+		FieldsEntityCache<String, Person, Person.Field> cache = FieldsEntityCache.Builder.of(Person.class, EnumSet.of(Person.Field.name, Person.Field.email, Person.Field.boat))
+			.refreshAfterWrite(Person.Field.name, 10, TimeUnit.SECONDS)
+			.refreshExecutor(Runnable::run)
+			.nanoClock(clock::get)
+			.build();
+
+		FieldGraph<Person.Field> graph = FieldGraph.of(Person.Field.name, Person.Field.email);
+
+		cache.get(PersonDemoData.RonId, graph, personService);
+
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+		requests.clear();
+		Person person = cache.get(PersonDemoData.RonId, graph, personService);
+		Assert.assertNotNull("name due for refresh should still be returned", person.getIfPresent(person::getName, Person.Field.name));
+		Assert.assertEquals("only name should be refreshed", Arrays.asList(EnumSet.of(Person.Field.name)), requests);
+
+		requests.clear();
+		cache.get(PersonDemoData.RonId, graph, personService);
+		Assert.assertTrue("nothing should be fetched after name was refreshed", requests.isEmpty());
+
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+		cache.get(PersonDemoData.RonId, FieldGraph.of(Person.Field.email), personService);
+		Assert.assertTrue("name shouldn't be refreshed unless requested", requests.isEmpty());
+
+	}
+
+	@Test
+	public void testGetReadOnly() {
+
+		PersonService personService = new PersonDemoService();
+		FieldsEntityCache<String, Person, Person.Field> cache = new FieldsEntityCache<>(EnumSet.of(Person.Field.name, Person.Field.email, Person.Field.boat));
+
+		Assert.assertNull("person should be null", cache.getReadOnly(PersonDemoData.RonId));
+
+		Person person = cache.getReadOnly(PersonDemoData.RonId, FieldGraph.of(Person.Field.name), personService);
+		Assert.assertNotNull("person should not be null", person);
+		Assert.assertTrue("person should be frozen", person.isFrozen());
+
+		person = cache.getReadOnly(PersonDemoData.RonId, FieldGraph.of(Person.Field.name), personService);
+		Assert.assertSame("cached person should be shared", person, cache.getReadOnly(PersonDemoData.RonId));
+		Assert.assertNotSame("get() should copy cached person", person, cache.get(PersonDemoData.RonId));
+		Assert.assertFalse("get() should return modifiable person", cache.get(PersonDemoData.RonId).isFrozen());
+
+		person = cache.getReadOnly(PersonDemoData.RonId, FieldGraph.of(Person.Field.name, Person.Field.email), personService);
+		Assert.assertNotNull("email should not be null", person.getIfPresent(person::getEmail, Person.Field.email));
+		Assert.assertSame("extended person should be cached", person.getEmail(), cache.getReadOnly(PersonDemoData.RonId).getEmail());
+
+		Person mutable = person.mutable();
+		mutable.setName("Dummy");
+		Assert.assertNotEquals("modifying copy should not modify cached person", "Dummy", cache.getReadOnly(PersonDemoData.RonId).getName());
+
+		// collections of shared person can't be modified
+		FieldsEntityCache<String, Person, Person.Field> permissionsCache = new FieldsEntityCache<>(EnumSet.of(Person.Field.name, Person.Field.permissions));
+		permissionsCache.merge(Person.ref(PersonDemoData.RonId).setName("Ron").setPermissions(new HashSet<>(Arrays.asList("read"))));
+		try {
+			permissionsCache.getReadOnly(PersonDemoData.RonId).getPermissions().add("write");
+			Assert.fail("UnsupportedOperationException not thrown");
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			permissionsCache.getReadOnly(PersonDemoData.RonId).setFields(EnumSet.of(Person.Field.name));
+			Assert.fail("UnsupportedOperationException not thrown");
+		} catch (UnsupportedOperationException e) {
+		}
+		Assert.assertEquals("cached permissions should not be modified", Collections.singleton("read"), permissionsCache.getReadOnly(PersonDemoData.RonId).getPermissions());
+		Assert.assertEquals("cached fields should not be modified", EnumSet.of(Person.Field.name, Person.Field.permissions), permissionsCache.getReadOnly(PersonDemoData.RonId).getFields());
+
+		Set<String> permissions = permissionsCache.getReadOnly(PersonDemoData.RonId).getPermissions();
+		permissionsCache.merge(Person.ref(PersonDemoData.RonId).setName("Ronald"));
+		Assert.assertEquals("name should be merged", "Ronald", permissionsCache.getReadOnly(PersonDemoData.RonId).getName());
+		Assert.assertSame("unchanged values should be shared, not copied, by merge", permissions, permissionsCache.getReadOnly(PersonDemoData.RonId).getPermissions());
+
+		Person mutablePermissions = permissionsCache.getReadOnly(PersonDemoData.RonId).mutable();
+		mutablePermissions.getPermissions().add("write");
+		Assert.assertEquals("copy's permissions should be modifiable", Sets.newHashSet("read", "write"), mutablePermissions.getPermissions());
+		Assert.assertEquals("cached permissions should not be modified", Collections.singleton("read"), permissionsCache.getReadOnly(PersonDemoData.RonId).getPermissions());
+
+	}
+
+	@Test
+	public void testStats() {
+
+		PersonService personService = new PersonDemoService();
+		List<String> events = new ArrayList<>();
+		FieldsEntityCache<String, Person, Person.Field> cache = FieldsEntityCache.Builder.of(Person.class, EnumSet.of(Person.Field.name, Person.Field.email, Person.Field.boat))
+			.statsListener(new FieldsEntityCache.StatsListener<String>() {
+				@Override public void onHit(String id) { events.add("hit"); }
+				@Override public void onPartialHit(String id, long loadTime) { events.add("partialHit"); }
+				@Override public void onMiss(String id, long loadTime) { events.add("miss"); }
+				@Override public void onClear(String id) { events.add("clear"); }
+			})
+			.build();
+
+		cache.get(PersonDemoData.RonId, FieldGraph.of(Person.Field.name), personService);
+		cache.get(PersonDemoData.RonId, FieldGraph.of(Person.Field.name), personService);
+		cache.get(PersonDemoData.RonId, FieldGraph.of(Person.Field.name, Person.Field.email), personService);
+		cache.clear(PersonDemoData.RonId);
+		cache.clear(PersonDemoData.RonId);	// not cached anymore
+
+		FieldsEntityCacheStats<Person.Field> stats = cache.getStats();
+		Assert.assertEquals("hit count mismatch", 1, stats.getHitCount());
+		Assert.assertEquals("partial hit count mismatch", 1, stats.getPartialHitCount());
+		Assert.assertEquals("miss count mismatch", 1, stats.getMissCount());
+		Assert.assertEquals("load count mismatch", 2, stats.getLoadCount());
+		Assert.assertEquals("fetched field count mismatch", 2, stats.getFetchedFieldCount());
+		Assert.assertEquals("merge count mismatch", 2, stats.getMergeCount());
+		Assert.assertEquals("clear count mismatch", 1, stats.getClearCount());
+		Assert.assertEquals("name hit count mismatch", 2, stats.getFieldHitCount(Person.Field.name));
+		Assert.assertEquals("name fetch count mismatch", 1, stats.getFieldFetchCount(Person.Field.name));
+		Assert.assertEquals("email fetch count mismatch", 1, stats.getFieldFetchCount(Person.Field.email));
+		Assert.assertEquals("boat fetch count mismatch", 0, stats.getFieldFetchCount(Person.Field.boat));
+		Assert.assertEquals("events mismatch", Arrays.asList("miss", "hit", "partialHit", "clear"), events);
+
+		FieldsEntityCache<String, Person, Person.Field> precachingCache = FieldsEntityCache.Builder.of(Person.class, EnumSet.of(Person.Field.name, Person.Field.email, Person.Field.boat))
+			.precachedFields(EnumSet.of(Person.Field.name, Person.Field.email))
+			.recordStats()
+			.build();
+		precachingCache.get(PersonDemoData.RonId, FieldGraph.of(Person.Field.name), personService);		// fetches precached email as well
+		precachingCache.get(PersonDemoData.RonId, FieldGraph.of(Person.Field.boat), personService);
+		precachingCache.clear(PersonDemoData.RonId, EnumSet.of(Person.Field.email));
+		precachingCache.get(PersonDemoData.RonId, FieldGraph.of(Person.Field.boat), personService);		// refetches precached email
+		stats = precachingCache.getStats();
+		long fieldFetchCount = 0;
+		for (Person.Field field : Person.Field.values())
+			fieldFetchCount += stats.getFieldFetchCount(field);
+		Assert.assertEquals("field fetch counts should sum up to fetched field count", stats.getFetchedFieldCount(), fieldFetchCount);
+		Assert.assertEquals("email fetch count mismatch", 2, stats.getFieldFetchCount(Person.Field.email));
+
+		Assert.assertEquals("stats should not be recorded by default", 0, new FieldsEntityCache<String, Person, Person.Field>(EnumSet.of(Person.Field.name)).getStats().getRequestCount());
+
+	}
+
+	private static final FieldCodec<String> StringCodec = new FieldCodec<>() {
+		@Override
+		public ByteBuffer encode(String value) { return StandardCharsets.UTF_8.encode(value); }
+		@Override
+		public String decode(ByteBuffer buffer) { return StandardCharsets.UTF_8.decode(buffer).toString(); }
+	};
+
 }
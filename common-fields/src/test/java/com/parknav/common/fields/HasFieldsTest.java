@@ -1,9 +1,12 @@
 package com.parknav.common.fields;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
 
+import com.parknav.common.fields.demo.model.berth.Berth;
 import com.parknav.common.fields.demo.model.boat.Boat;
 import com.parknav.common.fields.demo.model.boat.BoatDemoData;
 import com.parknav.common.fields.demo.model.marina.Marina;
@@ -94,6 +97,7 @@ public class HasFieldsTest {
 		Assert.assertTrue("homeport.name present", homeport.getOptional(homeport::getName, Marina.Field.name).isPresent());
 		Assert.assertNotNull("homeport.name", homeport.getIfPresent(homeport::getName, Marina.Field.name));
 		Assert.assertEquals("homeport.name should be \"Liverpool\"", "Liverpool", homeport.getIfPresent(homeport::getName, Marina.Field.name));
+		Assert.assertEquals("homeport.name value (via field accessor) should be \"Liverpool\"", "Liverpool", homeport.getFieldValue(Marina.Field.name));
 
 		Assert.assertTrue("wreck.name present", wreck.getOptional(wreck::getName, Boat.Field.name).isPresent());
 		Assert.assertNotNull("wreck.name", wreck.getIfPresent(wreck::getName, Boat.Field.name));
@@ -108,6 +112,38 @@ public class HasFieldsTest {
 
 	}
 	
+	@Test
+	public void testHasFields_Mask() {
+
+		FieldMask<Person.Field> nameAndEmail = FieldMask.of(Person.Field.name, Person.Field.email);
+		FieldMask<Person.Field> nameAndBoat = FieldMask.parse(Person.Field.class, "name", "boat");
+
+		Person person = new Person();
+		person.setName("Dummy");
+		person.setEmail("dummy@example.com");
+
+		Assert.assertTrue("person fields should be held in FieldSet", person.getFields() instanceof FieldSet);
+		Assert.assertTrue("person should have name and email", person.hasFields(nameAndEmail));
+		Assert.assertFalse("person shouldn't have boat", person.hasFields(nameAndBoat));
+		Assert.assertEquals("person.name (if present)", "Dummy", person.getIfPresent(person::getName, nameAndEmail));
+		Assert.assertFalse("person.name shouldn't be retrieved without boat", person.getOptional(person::getName, nameAndBoat).isPresent());
+
+		// masks must work against any other set, too
+		Assert.assertTrue("mask against HashSet", nameAndEmail.isContainedIn(Sets.newHashSet(Person.Field.name, Person.Field.email)));
+		Assert.assertFalse("mask against EnumSet", nameAndBoat.isContainedIn(EnumSet.of(Person.Field.name, Person.Field.email)));
+
+		// FieldSet must behave as any other set
+		FieldSet<Person.Field> fields = FieldSet.noneOf(Person.Field.class);
+		fields.addAll(person.getFields());
+		Assert.assertEquals("FieldSet should equal EnumSet", EnumSet.of(Person.Field.name, Person.Field.email), fields);
+		Assert.assertEquals("FieldSet hash code should equal EnumSet's", EnumSet.of(Person.Field.name, Person.Field.email).hashCode(), fields.hashCode());
+		Assert.assertTrue("FieldSet should contain all of other FieldSet", fields.containsAll(person.getFields()));
+		Assert.assertFalse("FieldSet shouldn't contain foreign enum", fields.contains(Boat.Field.name));
+		fields.removeIf(field -> field == Person.Field.name);
+		Assert.assertEquals("FieldSet after removal", EnumSet.of(Person.Field.email), fields);
+
+	}
+
 	@Test
 	public void testGetIfPresent() {
 		
@@ -284,6 +320,105 @@ public class HasFieldsTest {
 
 	}
 
+	@Test
+	public void testFlatten_FieldAccessor() {
+
+		Marina marina = new Marina();
+		marina.setId("liverpool");
+		marina.setName("Liverpool");
+		marina.setManager(buildDummy());
+		marina.setBerths(Arrays.asList(new Berth().setBoat(buildWreck()), null));
+		marina.setDepths(new Integer[][] { { 1, 2 }, { 3 } });
+
+		Assert.assertNotNull("marina should provide field accessor", marina.fieldAccessor());
+
+		Integer[][] depths = marina.getDepths();
+
+		marina.flatten();
+
+		Assert.assertEquals("flatten.name", "Liverpool", marina.getName());
+		Assert.assertEquals("flatten.manager", "dummy", marina.getManager().getId());
+		Assert.assertTrue("flatten.manager.fields", marina.getManager().getFields().isEmpty());
+		Assert.assertEquals("flatten.berths", 2, marina.getBerths().size());
+		Assert.assertTrue("flatten.berths.fields", marina.getBerths().get(0).getFields().isEmpty());
+		Assert.assertNull("flatten.berths.null", marina.getBerths().get(1));
+		Assert.assertSame("flatten shouldn't copy values of fields without subobjects", depths, marina.getDepths());
+
+		Marina clone = marina.clone();
+
+		Assert.assertNotSame("clone.depths should be copied", marina.getDepths(), clone.getDepths());
+		Assert.assertNotSame("clone.depths should be copied deeply", marina.getDepths()[0], clone.getDepths()[0]);
+		Assert.assertArrayEquals("clone.depths should be equal", marina.getDepths(), clone.getDepths());
+
+	}
+
+	@Test
+	public void testExtend_Indexed() {
+
+		int count = 500;
+
+		List<Berth> berths = new ArrayList<>();
+		List<Berth> extensionBerths = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			berths.add(Berth.ref("berth" + i));
+			Boat boat = new Boat();
+			boat.setId("boat" + i);
+			boat.setName("Boat " + i);
+			extensionBerths.add(0, Berth.ref("berth" + i).setBoat(boat));	// reversed order
+		}
+
+		Marina marina = new Marina();
+		marina.setBerths(berths);
+		Marina extension = new Marina();
+		extension.setBerths(extensionBerths);
+
+		FieldGraph<Marina.Field> graph = FieldGraph.Builder.of(Marina.Field.class)
+			.add(Marina.Field.berths, FieldGraph.Builder.of(Berth.Field.class)
+				.add(Berth.Field.boat, FieldGraph.of(Boat.Field.name))
+				.build()
+			)
+			.build();
+
+		marina._extend(extension, graph);
+
+		for (int i = 0; i < count; i++)
+			Assert.assertEquals("berth" + i + ".boat.name", "Boat " + i, marina.getBerths().get(i).getBoat().getName());
+
+		// extension lacking sub-entity
+		marina.getBerths().add(Berth.ref("missing"));
+		try {
+			marina._extend(extension, FieldGraph.Builder.of(graph).add(Marina.Field.berths, FieldGraph.of(Berth.Field.boat)).build());
+			Assert.fail("EntityUnavailableException not thrown");
+		} catch (EntityUnavailableException e) {
+		}
+
+	}
+
+	@Test
+	public void testFreeze() {
+
+		Boat wreck = buildWreck();
+		Assert.assertSame("modifiable object should be mutable itself", wreck, wreck.mutable());
+
+		wreck.freeze();
+		Assert.assertTrue("wreck should be frozen", wreck.isFrozen());
+		Assert.assertTrue("wreck.homeport should be frozen", wreck.getHomeport().isFrozen());
+		try {
+			wreck.setName("Titanic");
+			Assert.fail("UnsupportedOperationException not thrown");
+		} catch (UnsupportedOperationException e) {
+		}
+		Assert.assertEquals("frozen wreck should keep its name", buildWreck().getName(), wreck.getName());
+
+		Boat mutable = wreck.mutable();
+		Assert.assertNotSame("frozen object should be copied", wreck, mutable);
+		Assert.assertFalse("copy should not be frozen", mutable.isFrozen());
+		Assert.assertFalse("copy's sub-objects should not be frozen", mutable.getHomeport().isFrozen());
+		mutable.setName("Titanic");
+		Assert.assertEquals("copy should be modifiable", "Titanic", mutable.getName());
+
+	}
+
 	@Test
 	public void testClone() {
 
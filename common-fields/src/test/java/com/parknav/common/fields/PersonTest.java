@@ -1,14 +1,29 @@
 package com.parknav.common.fields;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import com.parknav.common.fields.demo.model.boat.Boat;
 import com.parknav.common.fields.demo.model.marina.Marina;
@@ -27,8 +42,11 @@ import com.parknav.common.fields.demo.model.person.PersonDemoData;
 import com.parknav.common.fields.demo.model.person.PersonDemoService;
 import com.parknav.common.fields.demo.model.person.PersonService;
 import com.parknav.common.fields.service.async.Batcher;
+import com.parknav.common.fields.service.async.FieldsFutureService;
 import com.parknav.common.fields.service.async.FieldsRequest;
 import com.parknav.common.fields.service.async.FieldsServiceHandler;
+import com.parknav.common.fields.service.async.crud.CRUDFieldsAsyncService;
+import com.parknav.common.fields.service.crud.CRUDException;
 
 public class PersonTest {
 
@@ -329,6 +347,396 @@ public class PersonTest {
 
 	}
 
+	@Test
+	public void testGetBatchedBulk() throws InterruptedException {
+
+		AtomicInteger realGetCount = new AtomicInteger(0);
+		Map<FieldGraph<Person.Field>, Collection<String>> retrievedIds = new ConcurrentHashMap<>();
+
+		Batcher<String, Person, Person.Field> testPersonBatcher = new Batcher<>(new PersonDemoAsyncService() {
+			@Override
+			public FieldsRequest get(String id, FieldGraph<Person.Field> graph, FieldsServiceHandler<Person> handler) {
+				realGetCount.incrementAndGet();
+				retrievedIds.put(graph, Collections.singleton(id));
+				return super.get(id, graph, handler);
+			}
+			@Override
+			public FieldsRequest getAll(Collection<String> ids, FieldGraph<Person.Field> graph, FieldsServiceHandler<Map<String, Person>> handler) {
+				realGetCount.incrementAndGet();
+				retrievedIds.put(graph, ids);
+				return super.getAll(ids, graph, handler);
+			}
+		});
+
+		final FieldGraph<Person.Field> PersonShortView = FieldGraph.of(Person.Field.name);
+		final FieldGraph<Person.Field> PersonLongView = FieldGraph.of(Person.Field.name, Person.Field.email);
+
+		CountDownLatch lock = new CountDownLatch(5);
+		Map<String, Person> persons = new ConcurrentHashMap<>();
+		FieldsServiceHandler<Person> handler = person -> {
+			persons.put(person.getId(), person);
+			lock.countDown();
+		};
+
+		testPersonBatcher.get(PersonDemoData.RonId, PersonShortView, handler);
+		testPersonBatcher.get(PersonDemoData.PirateId, PersonShortView, handler);
+		testPersonBatcher.get(PersonDemoData.RonId, PersonShortView, handler);
+		testPersonBatcher.get(PersonDemoData.CapoId, PersonLongView, handler);
+		testPersonBatcher.get(PersonDemoData.JohnId, PersonShortView, handler);
+
+		testPersonBatcher.run();
+
+		Assert.assertTrue("all handlers should be notified", lock.await(10, TimeUnit.SECONDS));
+
+		Assert.assertEquals("There should be exactly 2 calls to PersonService", 2, realGetCount.get());
+		Assert.assertEquals("Persons with same graph should be retrieved together", Arrays.asList(PersonDemoData.RonId, PersonDemoData.PirateId, PersonDemoData.JohnId), new ArrayList<>(retrievedIds.get(PersonShortView)));
+		Assert.assertEquals("Capo should be retrieved alone", Collections.singleton(PersonDemoData.CapoId), retrievedIds.get(PersonLongView));
+		Assert.assertEquals("persons mismatch", Sets.newHashSet(PersonDemoData.RonId, PersonDemoData.PirateId, PersonDemoData.CapoId, PersonDemoData.JohnId), persons.keySet());
+		Assert.assertEquals("Pirate fields mismatch", EnumSet.of(Person.Field.name), persons.get(PersonDemoData.PirateId).getFields());
+		Assert.assertEquals("Capo fields mismatch", EnumSet.of(Person.Field.name, Person.Field.email), persons.get(PersonDemoData.CapoId).getFields());
+
+		// default (per entity) implementation
+		CountDownLatch defaultLock = new CountDownLatch(1);
+		AtomicReference<Map<String, Person>> defaultRef = new AtomicReference<>();
+		PersonAsyncService defaultService = new PersonDemoAsyncService()::get;
+		defaultService.getAll(Arrays.asList(PersonDemoData.RonId, "nobody", PersonDemoData.PirateId), PersonShortView, entities -> {
+			defaultRef.set(entities);
+			defaultLock.countDown();
+		});
+		Assert.assertTrue("handler should be notified", defaultLock.await(10, TimeUnit.SECONDS));
+		Assert.assertEquals("persons mismatch", Arrays.asList(PersonDemoData.RonId, PersonDemoData.PirateId), new ArrayList<>(defaultRef.get().keySet()));
+
+	}
+
+	@Test
+	public void testGetBatchedConcurrent() throws InterruptedException {
+
+		int threadCount = 8;
+		int getCount = 200;
+		String[] ids = { PersonDemoData.RonId, PersonDemoData.PirateId, PersonDemoData.CapoId, PersonDemoData.JohnId };
+
+		Batcher<String, Person, Person.Field> testPersonBatcher = new Batcher<>(new PersonDemoAsyncService());
+
+		CountDownLatch lock = new CountDownLatch(threadCount * getCount);
+		AtomicInteger successCount = new AtomicInteger(0);
+		AtomicInteger cancelCount = new AtomicInteger(0);
+
+		Thread[] threads = new Thread[threadCount];
+		for (int t = 0; t < threadCount; t++) {
+			int thread = t;
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < getCount; i++) {
+					String id = ids[(thread + i) % ids.length];
+					FieldsRequest request = testPersonBatcher.get(id, FieldGraph.of(Person.Field.name), new FieldsServiceHandler<>() {
+						@Override
+						public void onSuccess(Person person) {
+							Assert.assertEquals("ID mismatch", id, person.getId());
+							successCount.incrementAndGet();
+						}
+						@Override
+						public void onCancel() {
+							cancelCount.incrementAndGet();
+						}
+						@Override
+						public void onDestroy() {
+							lock.countDown();
+						}
+					});
+					if (i % 10 == 0)
+						request.cancel();	// may already be finished, in which case it's no-op
+				}
+			});
+			threads[t].start();
+		}
+
+		// execute batches while they are being queued
+		while (!lock.await(10, TimeUnit.MILLISECONDS))
+			testPersonBatcher.run();
+
+		for (Thread thread : threads)
+			thread.join();
+
+		Assert.assertEquals("every handler should be notified exactly once", threadCount * getCount, successCount.get() + cancelCount.get());
+		Assert.assertTrue("some handlers should be cancelled", cancelCount.get() > 0);
+
+	}
+
+	@Test
+	public void testGetBatchedPreRequest() throws InterruptedException {
+
+		Batcher<String, Person, Person.Field> testPersonBatcher = new Batcher<>(new PersonDemoAsyncService());
+
+		// handler executing batcher when notified should neither hang nor be executed before it's notified
+		CountDownLatch lock = new CountDownLatch(2);
+		List<String> events = new CopyOnWriteArrayList<>();
+		testPersonBatcher.get(PersonDemoData.PirateId, FieldGraph.of(Person.Field.name), person -> lock.countDown());
+		testPersonBatcher.get(PersonDemoData.RonId, FieldGraph.of(Person.Field.name), new FieldsServiceHandler<>() {
+			@Override
+			public void onPreRequest(FieldsRequest request) {
+				events.add("preRequest");
+				testPersonBatcher.run();
+			}
+			@Override
+			public void onSuccess(Person person) {
+				events.add("success");
+				lock.countDown();
+			}
+		});
+		testPersonBatcher.run();
+		Assert.assertTrue("all handlers should be notified", lock.await(10, TimeUnit.SECONDS));
+		Assert.assertEquals("handler should be notified before its job is executed", Arrays.asList("preRequest", "success"), events);
+
+		// handler cancelling its request when notified should not be executed
+		AtomicInteger cancelCount = new AtomicInteger(0);
+		AtomicInteger successCount = new AtomicInteger(0);
+		testPersonBatcher.get(PersonDemoData.RonId, FieldGraph.of(Person.Field.name), new FieldsServiceHandler<>() {
+			@Override
+			public void onPreRequest(FieldsRequest request) {
+				request.cancel();
+			}
+			@Override
+			public void onSuccess(Person person) {
+				successCount.incrementAndGet();
+			}
+			@Override
+			public void onCancel() {
+				cancelCount.incrementAndGet();
+			}
+		});
+		testPersonBatcher.run();
+		Assert.assertEquals("handler should be cancelled once", 1, cancelCount.get());
+		Assert.assertEquals("cancelled handler should not be notified", 0, successCount.get());
+
+	}
+
+	@Test
+	public void testGetBatchedScheduled() throws InterruptedException {
+
+		AtomicInteger realGetCount = new AtomicInteger(0);
+		PersonAsyncService countingService = new PersonDemoAsyncService() {
+			@Override
+			public FieldsRequest get(String id, FieldGraph<Person.Field> graph, FieldsServiceHandler<Person> handler) {
+				realGetCount.incrementAndGet();
+				return super.get(id, graph, handler);
+			}
+		};
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+		try {
+
+			// full batch should be executed right away
+			Batcher<String, Person, Person.Field> sizeBatcher = new Batcher<>(countingService, scheduler, 2, 1, TimeUnit.HOURS);
+			CountDownLatch sizeLock = new CountDownLatch(3);
+			sizeBatcher.get(PersonDemoData.RonId, FieldGraph.of(Person.Field.name), person -> sizeLock.countDown());
+			sizeBatcher.get(PersonDemoData.RonId, FieldGraph.of(Person.Field.email), person -> sizeLock.countDown());
+			Assert.assertEquals("batch of one entity should not be executed", 0, realGetCount.get());
+			sizeBatcher.get(PersonDemoData.PirateId, FieldGraph.of(Person.Field.name), person -> sizeLock.countDown());
+			Assert.assertTrue("full batch should be executed", sizeLock.await(10, TimeUnit.SECONDS));
+			Assert.assertEquals("There should be exactly 2 calls to PersonService.get", 2, realGetCount.get());
+
+			// batch should be executed once its oldest operation waited long enough
+			Batcher<String, Person, Person.Field> delayBatcher = new Batcher<>(countingService, scheduler, 100, 50, TimeUnit.MILLISECONDS);
+			CountDownLatch delayLock = new CountDownLatch(1);
+			delayBatcher.get(PersonDemoData.RonId, FieldGraph.of(Person.Field.name), person -> delayLock.countDown());
+			Assert.assertTrue("delayed batch should be executed", delayLock.await(10, TimeUnit.SECONDS));
+
+			// batch should be executed when flushed
+			Batcher<String, Person, Person.Field> flushBatcher = new Batcher<>(countingService, scheduler, 100, 1, TimeUnit.HOURS);
+			CountDownLatch flushLock = new CountDownLatch(1);
+			flushBatcher.get(PersonDemoData.RonId, FieldGraph.of(Person.Field.name), person -> flushLock.countDown());
+			flushBatcher.flush();
+			Assert.assertTrue("flushed batch should be executed", flushLock.await(10, TimeUnit.SECONDS));
+			Assert.assertEquals("There should be exactly 4 calls to PersonService.get", 4, realGetCount.get());
+
+		} finally {
+			scheduler.shutdownNow();
+		}
+
+	}
+
+	@Test
+	public void testGetFuture() throws Exception {
+
+		AtomicBoolean isCancelled = new AtomicBoolean(false);
+		FieldsFutureService<String, Person, Person.Field> futureService = FieldsFutureService.of(new PersonDemoAsyncService() {
+			@Override
+			public FieldsRequest get(String id, FieldGraph<Person.Field> graph, FieldsServiceHandler<Person> handler) {
+				FieldsRequest request = super.get(id, graph, handler);
+				return () -> {
+					isCancelled.set(true);
+					request.cancel();
+				};
+			}
+		});
+
+		// composition
+		String names = futureService.get(PersonDemoData.RonId, FieldGraph.of(Person.Field.name))
+			.thenCombine(futureService.get(PersonDemoData.PirateId, FieldGraph.of(Person.Field.name)), (ron, pirate) -> ron.getName() + ", " + pirate.getName())
+			.get(10, TimeUnit.SECONDS);
+		Assert.assertEquals("names mismatch", personService.get(PersonDemoData.RonId, FieldGraph.of(Person.Field.name)).getName() + ", " + personService.get(PersonDemoData.PirateId, FieldGraph.of(Person.Field.name)).getName(), names);
+
+		Assert.assertNull("missing person should be null", futureService.get("nobody", FieldGraph.of(Person.Field.name)).get(10, TimeUnit.SECONDS));
+
+		Map<String, Person> persons = futureService.getAll(Arrays.asList(PersonDemoData.RonId, PersonDemoData.PirateId), FieldGraph.of(Person.Field.name)).get(10, TimeUnit.SECONDS);
+		Assert.assertEquals("persons mismatch", Arrays.asList(PersonDemoData.RonId, PersonDemoData.PirateId), new ArrayList<>(persons.keySet()));
+
+		// cancelling future should cancel request
+		CompletableFuture<Person> future = futureService.get(PersonDemoData.RonId, FieldGraph.of(Person.Field.name));
+		Assert.assertTrue("future should be cancelled", future.cancel(false));
+		Assert.assertTrue("request should be cancelled", isCancelled.get());
+
+		// failed request should fail future
+		PersonAsyncService failingService = (id, graph, handler) -> {
+			handler.onFail();
+			handler.onFinish();
+			handler.onDestroy();
+			return null;
+		};
+		try {
+			FieldsFutureService.of(failingService).get(PersonDemoData.RonId, FieldGraph.of(Person.Field.name)).join();
+			Assert.fail("future should fail");
+		} catch (CompletionException e) {
+			Assert.assertTrue("cause should be EntityUnavailableException", e.getCause() instanceof EntityUnavailableException);
+		}
+
+		// and back: futures exposed as (batched) async service
+		Batcher<String, Person, Person.Field> batcher = new Batcher<>(futureService.asAsyncService());
+		CountDownLatch lock = new CountDownLatch(2);
+		AtomicReference<Person> ronRef = new AtomicReference<>(null);
+		batcher.get(PersonDemoData.RonId, FieldGraph.of(Person.Field.name), person -> {
+			ronRef.set(person);
+			lock.countDown();
+		});
+		batcher.get(PersonDemoData.PirateId, FieldGraph.of(Person.Field.name), person -> lock.countDown());
+		batcher.run();
+		Assert.assertTrue("handlers should be notified", lock.await(10, TimeUnit.SECONDS));
+		Assert.assertEquals("ID mismatch", PersonDemoData.RonId, ronRef.get().getId());
+
+		// cancelling request should cancel future
+		CompletableFuture<Person> pending = new CompletableFuture<>();
+		AtomicBoolean isHandlerCancelled = new AtomicBoolean(false);
+		FieldsFutureService<String, Person, Person.Field> pendingService = new FieldsFutureService<>() {
+			@Override
+			public Person instance() { return new Person(); }
+			@Override
+			public CompletableFuture<Person> get(String id, FieldGraph<Person.Field> graph) { return pending; }
+		};
+		pendingService.asAsyncService().get(PersonDemoData.RonId, FieldGraph.of(Person.Field.name), new FieldsServiceHandler<>() {
+			@Override
+			public void onSuccess(Person person) {}
+			@Override
+			public void onCancel() { isHandlerCancelled.set(true); }
+		}).cancel();
+		Assert.assertTrue("future should be cancelled", pending.isCancelled());
+		Assert.assertTrue("handler should be cancelled", isHandlerCancelled.get());
+
+		// cancelling future of (default) getAll should cancel futures of all entities
+		List<CompletableFuture<Person>> pendingFutures = new CopyOnWriteArrayList<>();
+		FieldsFutureService<String, Person, Person.Field> pendingAllService = new FieldsFutureService<>() {
+			@Override
+			public Person instance() { return new Person(); }
+			@Override
+			public CompletableFuture<Person> get(String id, FieldGraph<Person.Field> graph) {
+				CompletableFuture<Person> pendingFuture = new CompletableFuture<>();
+				pendingFutures.add(pendingFuture);
+				return pendingFuture;
+			}
+		};
+		Assert.assertTrue("future should be cancelled", pendingAllService.getAll(Arrays.asList(PersonDemoData.RonId, PersonDemoData.PirateId), FieldGraph.of(Person.Field.name)).cancel(false));
+		Assert.assertEquals("entity futures count mismatch", 2, pendingFutures.size());
+		for (CompletableFuture<Person> pendingFuture : pendingFutures)
+			Assert.assertTrue("entity's future should be cancelled", pendingFuture.isCancelled());
+
+	}
+
+	@Test
+	public void testQueryPublisher() {
+
+		AtomicReference<FieldsServiceHandler<Stream<Person>>> queryHandler = new AtomicReference<>(null);
+		AtomicBoolean isRequestCancelled = new AtomicBoolean(false);
+		CRUDFieldsAsyncService<String, Person, Person.Field, Void> crudService = new CRUDFieldsAsyncService<>() {
+			@Override
+			public Person instance() { return new Person(); }
+			@Override
+			public FieldsRequest get(String id, FieldGraph<Person.Field> graph, FieldsServiceHandler<Person> handler) { throw new UnsupportedOperationException(); }
+			@Override
+			public FieldsRequest create(Person entity, FieldGraph<Person.Field> graph, FieldsServiceHandler<Person> handler) { throw new UnsupportedOperationException(); }
+			@Override
+			public FieldsRequest modify(Person entity, Person patch, FieldGraph<Person.Field> graph, FieldsServiceHandler<Person> handler) { throw new UnsupportedOperationException(); }
+			@Override
+			public FieldsRequest delete(Person entity, FieldsServiceHandler<Void> handler) { throw new UnsupportedOperationException(); }
+			@Override
+			public FieldsRequest queryAllFieldValues(Void selector, Set<Person.Field> fields, FieldsServiceHandler<Stream<Person>> handler) { throw new UnsupportedOperationException(); }
+			@Override
+			public FieldsRequest count(Void selector, FieldsServiceHandler<Integer> handler) { throw new UnsupportedOperationException(); }
+			@Override
+			public FieldsRequest query(Void selector, FieldGraph<Person.Field> graph, FieldsServiceHandler<Stream<Person>> handler) {
+				isRequestCancelled.set(false);
+				queryHandler.set(handler);
+				return () -> isRequestCancelled.set(true);
+			}
+		};
+
+		List<String> ids = Arrays.asList(PersonDemoData.RonId, PersonDemoData.PirateId, PersonDemoData.JohnId);
+		AtomicInteger closed = new AtomicInteger(0);
+		Supplier<Stream<Person>> persons = () -> ids.stream()
+			.map(id -> personService.get(id, FieldGraph.of(Person.Field.name)))
+			.onClose(closed::incrementAndGet);
+
+		// nothing is queried until subscriber requests entities, then one entity per request is published
+		QuerySubscriber subscriber = new QuerySubscriber();
+		crudService.query(null, FieldGraph.of(Person.Field.name)).subscribe(subscriber);
+		Assert.assertNull("query shouldn't start before request", queryHandler.get());
+		subscriber.subscription.request(1);
+		Assert.assertNotNull("query should start on request", queryHandler.get());
+		queryHandler.get().onSuccess(persons.get());
+		Assert.assertEquals("only requested persons should be published", 1, subscriber.ids.size());
+		subscriber.subscription.request(2);
+		Assert.assertEquals("ids mismatch", ids, subscriber.ids);
+		Assert.assertTrue("publisher should complete once stream is exhausted", subscriber.completed);
+		Assert.assertEquals("stream should be closed", 1, closed.get());
+
+		// cancelling subscription should close stream
+		subscriber = new QuerySubscriber();
+		crudService.query(null, FieldGraph.of(Person.Field.name)).subscribe(subscriber);
+		subscriber.subscription.request(2);
+		queryHandler.get().onSuccess(persons.get());
+		subscriber.subscription.cancel();
+		subscriber.subscription.request(1);
+		Assert.assertEquals("ids mismatch", ids.subList(0, 2), subscriber.ids);
+		Assert.assertFalse("cancelled publisher shouldn't complete", subscriber.completed);
+		Assert.assertEquals("stream should be closed", 2, closed.get());
+
+		// cancelling subscription before stream is delivered should cancel request
+		subscriber = new QuerySubscriber();
+		crudService.query(null, FieldGraph.of(Person.Field.name)).subscribe(subscriber);
+		subscriber.subscription.request(1);
+		subscriber.subscription.cancel();
+		Assert.assertTrue("request should be cancelled", isRequestCancelled.get());
+
+		// stream delivered after subscription was cancelled should be closed
+		queryHandler.get().onSuccess(persons.get());
+		Assert.assertEquals("late stream should be closed", 3, closed.get());
+		Assert.assertEquals("cancelled publisher shouldn't publish", 0, subscriber.ids.size());
+
+		// failed query should fail subscriber
+		subscriber = new QuerySubscriber();
+		crudService.query(null, FieldGraph.of(Person.Field.name)).subscribe(subscriber);
+		subscriber.subscription.request(1);
+		queryHandler.get().onFail();
+		Assert.assertTrue("error should be CRUDException", subscriber.error instanceof CRUDException);
+
+		// non-positive request is an error
+		subscriber = new QuerySubscriber();
+		crudService.query(null, FieldGraph.of(Person.Field.name)).subscribe(subscriber);
+		queryHandler.set(null);
+		subscriber.subscription.request(0);
+		Assert.assertTrue("error should be IllegalArgumentException", subscriber.error instanceof IllegalArgumentException);
+		subscriber.subscription.request(1);
+		Assert.assertNull("query shouldn't start after error", queryHandler.get());
+
+	}
+
 	@Test
 	public void testExtendWithService() {
 
@@ -613,6 +1021,36 @@ public class PersonTest {
 		
 	}
 	
+	/** Records entities (and terminal signals) published by query */
+	private static class QuerySubscriber implements Flow.Subscriber<Person> {
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(Person person) {
+			ids.add(person.getId());
+		}
+
+		@Override
+		public void onError(Throwable error) {
+			this.error = error;
+		}
+
+		@Override
+		public void onComplete() {
+			completed = true;
+		}
+
+		private Flow.Subscription subscription = null;
+		private final List<String> ids = new ArrayList<>();
+		private Throwable error = null;
+		private boolean completed = false;
+
+	}
+
 	private PersonService personService;
 	private PersonAsyncService personAsyncService;
 	
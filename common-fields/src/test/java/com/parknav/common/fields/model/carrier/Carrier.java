@@ -1,6 +1,5 @@
 package com.parknav.common.fields.model.carrier;
 
-import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -8,15 +7,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 
+import com.parknav.common.fields.FieldAccessor;
 import com.parknav.common.fields.FieldEnum;
 import com.parknav.common.fields.FieldGraph;
-import com.parknav.common.fields.FieldUnavailableException;
 import com.parknav.common.fields.FieldsEntity;
+import com.parknav.common.fields.GenerateFieldAccessor;
 import com.parknav.common.fields.demo.model.person.Person;
 
 /** Complete entity with many levels of nested subentites */
+@GenerateFieldAccessor
 public class Carrier extends FieldsEntity<String, Carrier, Carrier.Field> {
 
 	public enum Field implements FieldEnum {
@@ -87,20 +87,12 @@ public class Carrier extends FieldsEntity<String, Carrier, Carrier.Field> {
 
 	@Override
 	public Object pull(Field field, Carrier other, FieldGraph<Field> graph) {
-		switch (field) {
-			case name:			return pull(other, other::getName,			this::setName);
-			case entity:		return pull(other, other::getEntity,		this::setEntity,		value -> value.clone(field, graph));
-			case list:			return pull(other, other::getList,			this::setList,			value -> value.stream().map(object -> object.clone(field, graph)).collect(Collectors.toList()));
-			case set:			return pull(other, other::getSet,			this::setSet,			value -> value.stream().map(object -> object.clone(field, graph)).collect(Collectors.toSet()));
-			case map:			return pull(other, other::getMap,			this::setMap,			value -> value.entrySet().stream().map(entry -> new AbstractMap.SimpleEntry<>(entry.getKey(), entry.getValue().clone(field, graph))).collect(Collectors.toMap(AbstractMap.SimpleEntry::getKey, AbstractMap.SimpleEntry::getValue)));
-			case listlist:		return pull(other, other::getListList,		this::setListList,		value -> value.stream().map(list -> list.stream().map(object -> object.clone(field, graph)).collect(Collectors.toList())).collect(Collectors.toList()));
-			case setset:		return pull(other, other::getSetSet,		this::setSetSet,		value -> value.stream().map(set -> set.stream().map(object -> object.clone(field, graph)).collect(Collectors.toSet())).collect(Collectors.toSet()));
-			case maplist:		return pull(other, other::getMapList,		this::setMapList,		value -> value.entrySet().stream().map(entry -> new AbstractMap.SimpleEntry<>(entry.getKey(), entry.getValue().stream().map(object -> object.clone(field, graph)).collect(Collectors.toList()))).collect(Collectors.toMap(AbstractMap.SimpleEntry::getKey, AbstractMap.SimpleEntry::getValue)));
-			case mapset:		return pull(other, other::getMapSet,		this::setMapSet,		value -> value.entrySet().stream().map(entry -> new AbstractMap.SimpleEntry<>(entry.getKey(), entry.getValue().stream().map(object -> object.clone(field, graph)).collect(Collectors.toSet()))).collect(Collectors.toMap(AbstractMap.SimpleEntry::getKey, AbstractMap.SimpleEntry::getValue)));
-			case mapmap:		return pull(other, other::getMapMap,		this::setMapMap,		value -> value.entrySet().stream().map(entry -> new AbstractMap.SimpleEntry<>(entry.getKey(), entry.getValue().entrySet().stream().map(entry2 -> new AbstractMap.SimpleEntry<>(entry2.getKey(), entry2.getValue().clone(field, graph))).collect(Collectors.toMap(AbstractMap.SimpleEntry::getKey, AbstractMap.SimpleEntry::getValue)))).collect(Collectors.toMap(AbstractMap.SimpleEntry::getKey, AbstractMap.SimpleEntry::getValue)));
-			case mapentitylist:	return pull(other, other::getMapEntityList,	this::setMapEntityList,	value -> value.entrySet().stream().map(entry -> new AbstractMap.SimpleEntry<>(entry.getKey().clone(field, graph), entry.getValue().stream().map(object -> object.clone(field, graph)).collect(Collectors.toList()))).collect(Collectors.toMap(AbstractMap.SimpleEntry::getKey, AbstractMap.SimpleEntry::getValue)));
-		}
-		throw new FieldUnavailableException(field);
+		return CarrierFieldAccessor.Instance.pull(field, this, other, graph);
+	}
+
+	@Override
+	public FieldAccessor<Carrier, Field> fieldAccessor() {
+		return CarrierFieldAccessor.Instance;
 	}
 
 	public Carrier ref() {